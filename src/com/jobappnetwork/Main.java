@@ -1,16 +1,64 @@
 package com.jobappnetwork;
 
+import com.jobappnetwork.server.DataManager;
+import com.jobappnetwork.server.NioServer;
 import com.jobappnetwork.server.Server;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.InetAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * Main class for the Job Application Network.
  * This class starts the server on port 8080.
+ *
+ * Usage: java com.jobappnetwork.Main [--engine=thread|nio] [--workers=N]
+ * [--mode=thread|virtual|bounded] [--max-connections=N] [--data-dir=DIR]
+ *
+ * --workers sizes the NIO worker pool and the thread engine's bounded pool;
+ * --mode and --max-connections apply to the thread engine. --data-dir is
+ * where job postings, applications and resumes are saved between runs.
  */
 public class Main {
     public static void main(String[] args) {
         int port = 8080; // Server port
+        String engine = "thread"; // Server engine (thread-per-connection by default)
+        int workers = Runtime.getRuntime().availableProcessors(); // Worker threads
+        Server.ExecutionMode mode = Server.ExecutionMode.THREAD_PER_CONNECTION;
+        int maxConnections = 0; // No admission limit
+        Path dataDirectory = Paths.get(DataManager.DEFAULT_DATA_DIRECTORY);
+
+        for (String arg : args) {
+            try {
+                if (arg.startsWith("--engine=")) {
+                    engine = arg.substring("--engine=".length());
+                } else if (arg.startsWith("--workers=")) {
+                    workers = Integer.parseInt(arg.substring("--workers=".length()));
+                } else if (arg.startsWith("--max-connections=")) {
+                    maxConnections = Integer.parseInt(arg.substring("--max-connections=".length()));
+                } else if (arg.startsWith("--data-dir=")) {
+                    dataDirectory = Paths.get(arg.substring("--data-dir=".length()));
+                } else if (arg.equals("--mode=thread")) {
+                    mode = Server.ExecutionMode.THREAD_PER_CONNECTION;
+                } else if (arg.equals("--mode=virtual")) {
+                    mode = Server.ExecutionMode.VIRTUAL;
+                } else if (arg.equals("--mode=bounded")) {
+                    mode = Server.ExecutionMode.BOUNDED;
+                } else {
+                    System.err.println("Unknown argument: " + arg);
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid number in argument: " + arg);
+                return;
+            }
+        }
+
+        if (!engine.equals("thread") && !engine.equals("nio")) {
+            System.err.println("Unknown engine: " + engine + " (expected thread or nio)");
+            return;
+        }
 
         try {
             // Get local IP address
@@ -21,12 +69,22 @@ public class Main {
             System.out.println("Starting Job Application Network Server...");
             System.out.println("Server IP: " + ipAddress);
             System.out.println("Server Port: " + port);
+            System.out.println("Server Engine: " + engine);
+            System.out.println("Data Directory: " + dataDirectory.toAbsolutePath());
             System.out.println("Server is ready to accept connections");
             System.out.println("==================================================");
 
-            Server server = new Server(port);
-            server.start();
-        } catch (IOException e) {
+            if (engine.equals("nio")) {
+                NioServer server = new NioServer(port, workers, workers * 64, dataDirectory);
+                Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+                server.start();
+            } else {
+                Server server = new Server(port, mode, workers, maxConnections, dataDirectory);
+                // Let in-flight commands finish on Ctrl-C
+                Runtime.getRuntime().addShutdownHook(new Thread(server::stop));
+                server.start();
+            }
+        } catch (IOException | UncheckedIOException | IllegalStateException | IllegalArgumentException e) {
             System.err.println("Could not start server: " + e.getMessage());
         }
     }
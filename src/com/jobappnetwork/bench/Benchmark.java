@@ -0,0 +1,296 @@
+package com.jobappnetwork.bench;
+
+import com.jobappnetwork.server.LatencyHistogram;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A small benchmark runner in the spirit of JMH, for code paths that are
+ * measured inside one JVM without a separate build module.
+ *
+ * A benchmark runs for a number of warmup iterations, whose results are
+ * thrown away so the JIT compiler can settle, and then for a number of
+ * measured iterations of fixed length. Every operation is timed on its own, so
+ * besides the mean time per operation the result carries latency percentiles.
+ * Timing an operation costs a few tens of nanoseconds, which matters only for
+ * the very cheapest operations.
+ *
+ * Where the JVM can count the bytes each thread allocates, the result also
+ * carries the heap allocated per operation, as JMH's GC profiler reports it.
+ */
+public class Benchmark {
+    // Never equal to a result, but the JIT can't know that
+    private static volatile Object trap = new Object();
+    private static volatile Object sink;
+    // Counts each thread's allocations, or null if the JVM can't
+    private static final com.sun.management.ThreadMXBean ALLOCATIONS = allocationCounter();
+
+    private final int warmupIterations;
+    private final int iterations;
+    private final long iterationMillis;
+    private final int threads;
+
+    /**
+     * An operation to measure. Its result is consumed so the JIT can't remove
+     * the work that produced it.
+     */
+    public interface Operation {
+        /**
+         * Runs the operation once.
+         *
+         * @param n The operation's number, unique across threads and
+         *          increasing within each thread
+         * @return The operation's result
+         * @throws Exception If the operation fails, which ends the benchmark
+         */
+        Object run(long n) throws Exception;
+    }
+
+    /**
+     * What one benchmark measured.
+     */
+    public static final class Result {
+        private final String name;
+        private final long size;
+        private final int threads;
+        private final double nanosPerOp;
+        private final double error;
+        private final LatencyHistogram latency;
+        private final double bytesPerOp;
+
+        Result(String name, long size, int threads, double nanosPerOp, double error, LatencyHistogram latency,
+                double bytesPerOp) {
+            this.name = name;
+            this.size = size;
+            this.threads = threads;
+            this.nanosPerOp = nanosPerOp;
+            this.error = error;
+            this.latency = latency;
+            this.bytesPerOp = bytesPerOp;
+        }
+
+        /**
+         * Gets the benchmark's name.
+         *
+         * @return The name
+         */
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Gets the size of the data set the benchmark ran against.
+         *
+         * @return The number of records
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Gets the number of threads that ran the operation.
+         *
+         * @return The number of threads
+         */
+        public int getThreads() {
+            return threads;
+        }
+
+        /**
+         * Gets the mean time per operation over the measured iterations. With
+         * several threads this is wall-clock time per operation on each
+         * thread.
+         *
+         * @return The time per operation in nanoseconds
+         */
+        public double getNanosPerOp() {
+            return nanosPerOp;
+        }
+
+        /**
+         * Gets the standard deviation of the time per operation between
+         * iterations.
+         *
+         * @return The deviation in nanoseconds
+         */
+        public double getError() {
+            return error;
+        }
+
+        /**
+         * Gets the latencies of the measured operations.
+         *
+         * @return The latency histogram, in nanoseconds
+         */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        /**
+         * Gets the heap allocated per operation over the measured
+         * iterations, including what timing the operation allocates (nothing
+         * once the latency histogram is warm).
+         *
+         * @return The bytes allocated per operation, or -1 if the JVM can't
+         *         count allocations
+         */
+        public double getBytesPerOp() {
+            return bytesPerOp;
+        }
+    }
+
+    /**
+     * Creates a runner.
+     *
+     * @param warmupIterations The iterations run before measuring
+     * @param iterations       The iterations measured
+     * @param iterationMillis  How long each iteration runs
+     * @param threads          The threads running the operation at once
+     */
+    public Benchmark(int warmupIterations, int iterations, long iterationMillis, int threads) {
+        if (iterations <= 0 || iterationMillis <= 0 || threads <= 0 || warmupIterations < 0) {
+            throw new IllegalArgumentException("Iterations, iteration time and threads must be positive");
+        }
+        this.warmupIterations = warmupIterations;
+        this.iterations = iterations;
+        this.iterationMillis = iterationMillis;
+        this.threads = threads;
+    }
+
+    /**
+     * Keeps a result alive so the work that produced it isn't optimized away.
+     *
+     * @param value The result
+     */
+    public static void consume(Object value) {
+        if (value == trap) {
+            sink = value;
+        }
+    }
+
+    /**
+     * Runs and measures one benchmark.
+     *
+     * @param name      The benchmark's name
+     * @param size      The size of the data set it runs against
+     * @param operation The operation to measure
+     * @return The measurements
+     * @throws Exception If the operation fails
+     */
+    public Result run(String name, long size, Operation operation) throws Exception {
+        long[] next = new long[threads];
+        for (int t = 0; t < threads; t++) {
+            next[t] = t;
+        }
+        for (int i = 0; i < warmupIterations; i++) {
+            iteration(operation, next, new LatencyHistogram(), new LongAdder());
+        }
+
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder allocated = new LongAdder();
+        List<Double> scores = new ArrayList<>(iterations);
+        for (int i = 0; i < iterations; i++) {
+            scores.add(iteration(operation, next, latency, allocated));
+        }
+
+        double mean = 0;
+        for (double score : scores) {
+            mean += score;
+        }
+        mean /= scores.size();
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean);
+        }
+        double error = scores.size() > 1 ? Math.sqrt(variance / (scores.size() - 1)) : 0;
+        double bytesPerOp = ALLOCATIONS == null || latency.getCount() == 0 ? -1
+                : (double) allocated.sum() / latency.getCount();
+        return new Result(name, size, threads, mean, error, latency, bytesPerOp);
+    }
+
+    /**
+     * Runs the operation on every thread until the iteration ends.
+     *
+     * @param next    Each thread's next operation number, advanced in place
+     * @param latency   Where operation latencies are recorded
+     * @param allocated Where the bytes the operations allocate are added
+     * @return The wall-clock time per operation on each thread, in nanoseconds
+     */
+    private double iteration(Operation operation, long[] next, LatencyHistogram latency, LongAdder allocated)
+            throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        long[] counts = new long[threads];
+        Thread[] workers = new Thread[threads];
+        long[] elapsed = new long[threads];
+
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                    long allocatedBefore = allocatedBytes();
+                    long began = System.nanoTime();
+                    long deadline = began + iterationMillis * 1_000_000L;
+                    long n = next[thread];
+                    long now = began;
+                    while (now < deadline && failure.get() == null) {
+                        long opStart = now;
+                        consume(operation.run(n));
+                        now = System.nanoTime();
+                        latency.record(now - opStart);
+                        n += threads;
+                        counts[thread]++;
+                    }
+                    next[thread] = n;
+                    elapsed[thread] = now - began;
+                    allocated.add(allocatedBytes() - allocatedBefore);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Exception e) {
+                    failure.compareAndSet(null, e);
+                }
+            }, "benchmark-" + t);
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        double nanos = 0;
+        long ops = 0;
+        for (int t = 0; t < threads; t++) {
+            nanos += elapsed[t];
+            ops += counts[t];
+        }
+        return ops == 0 ? 0 : nanos / ops;
+    }
+
+    /**
+     * Gets the bytes the current thread has allocated so far.
+     */
+    private static long allocatedBytes() {
+        return ALLOCATIONS == null ? 0 : ALLOCATIONS.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static com.sun.management.ThreadMXBean allocationCounter() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+            return null;
+        }
+        com.sun.management.ThreadMXBean counter = (com.sun.management.ThreadMXBean) threads;
+        if (!counter.isThreadAllocatedMemorySupported()) {
+            return null;
+        }
+        counter.setThreadAllocatedMemoryEnabled(true);
+        return counter;
+    }
+}
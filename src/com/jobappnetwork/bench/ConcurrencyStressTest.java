@@ -0,0 +1,383 @@
+package com.jobappnetwork.bench;
+
+import com.jobappnetwork.protocol.Protocol;
+import com.jobappnetwork.server.CommandProcessor;
+import com.jobappnetwork.server.DataManager;
+import com.jobappnetwork.server.Session;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Checks that concurrent writes lose nothing.
+ *
+ * Many threads post jobs, then submit applications while others accept and
+ * reject them, all through the same commands the server dispatches. Half the
+ * status changes go to applications that may still be being submitted, so a
+ * change can't overtake the record it changes. Then
+ * every ID handed out must be unique, the IDs must run from 1 to the number
+ * of writes with no gaps, and every record must be listed once, and with its
+ * final status, in the full listings and in the by-job, by-seeker and
+ * by-status indexes. Finally the data is reopened from disk and must list
+ * the same again.
+ *
+ * Usage: java com.jobappnetwork.bench.ConcurrencyStressTest [--threads=N]
+ * [--jobs=N] [--applications=N] [--status-changes=N]
+ *
+ * Exits with status 1 if any check fails.
+ */
+public class ConcurrencyStressTest {
+    private static final String[] STATUS_TEXTS = { "Pending", "Accepted", "Rejected" };
+
+    // Problems found, printed at the end; added to by the writer threads
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * An application as one of the listings shows it.
+     */
+    private static final class Listed {
+        String jobSeekerId;
+        String jobId;
+        String status;
+    }
+
+    /**
+     * Runs the stress test.
+     *
+     * @param args Command line arguments, see the class description
+     */
+    public static void main(String[] args) throws Exception {
+        int threads = 64;
+        int jobs = 1000;
+        int applications = 20000;
+        int statusChanges = 10000;
+
+        for (String arg : args) {
+            try {
+                if (arg.startsWith("--threads=")) {
+                    threads = Integer.parseInt(arg.substring("--threads=".length()));
+                } else if (arg.startsWith("--jobs=")) {
+                    jobs = Integer.parseInt(arg.substring("--jobs=".length()));
+                } else if (arg.startsWith("--applications=")) {
+                    applications = Integer.parseInt(arg.substring("--applications=".length()));
+                } else if (arg.startsWith("--status-changes=")) {
+                    statusChanges = Integer.parseInt(arg.substring("--status-changes=".length()));
+                } else {
+                    System.err.println("Unknown argument: " + arg);
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid number in argument: " + arg);
+                return;
+            }
+        }
+        if (threads < 1 || jobs < 1 || applications < 1 || statusChanges < 0) {
+            System.err.println("Threads, jobs and applications must be positive");
+            return;
+        }
+
+        ConcurrencyStressTest test = new ConcurrencyStressTest();
+        test.run(threads, jobs, applications, statusChanges);
+        if (!test.failures.isEmpty()) {
+            System.out.println("\nFAILED (" + test.failures.size() + " problems):");
+            for (String failure : test.failures.subList(0, Math.min(50, test.failures.size()))) {
+                System.out.println("  " + failure);
+            }
+            System.exit(1);
+        }
+        System.out.println("\nPASSED");
+    }
+
+    private void run(int threads, int jobs, int applications, int statusChanges) throws Exception {
+        Path directory = Files.createTempDirectory("jobapp-stress");
+        try {
+            DataManager dataManager = new DataManager(directory, false);
+            CommandProcessor commandProcessor = new CommandProcessor(dataManager);
+            String jobListing;
+            String applicationListing;
+            try {
+                // Step 1: Post every job at once
+                long started = System.nanoTime();
+                List<String> jobIds = write(threads, jobs, n -> commandProcessor.processCommandWithFields(
+                        Protocol.POST_JOB, jobFields(n), new Session(true)), "Job posted successfully with ID: ");
+                checkDense("Job", "JOB", jobIds, jobs);
+                System.out.printf("Posted %d jobs on %d threads in %d ms%n", jobs, threads,
+                        (System.nanoTime() - started) / 1_000_000);
+
+                // Step 2: Apply while other writers accept and reject what has been applied for
+                started = System.nanoTime();
+                AtomicInteger applying = new AtomicInteger();
+                AtomicInteger submitted = new AtomicInteger();
+                AtomicInteger statusUpdates = new AtomicInteger();
+                long total = (long) applications + statusChanges;
+                List<String> applicationIds = write(threads, total, n -> {
+                    if (n * statusChanges / total == (n + 1) * statusChanges / total) {
+                        applying.incrementAndGet();
+                        String response = commandProcessor.processCommandWithFields(Protocol.APPLY_TO_JOB,
+                                new String[] { "JOB" + (1 + n % jobs), "JS" + (1 + n % 97), "Resume " + n },
+                                new Session(true));
+                        submitted.incrementAndGet();
+                        return response;
+                    }
+                    // Half go to an application that may still be being submitted
+                    int done = submitted.get();
+                    int target = n % 4 < 2
+                            ? done + 1 + ThreadLocalRandom.current().nextInt(Math.max(1, applying.get() - done))
+                            : 1 + ThreadLocalRandom.current().nextInt(Math.max(1, done));
+                    int command = n % 2 == 0 ? Protocol.ACCEPT_APPLICATION : Protocol.REJECT_APPLICATION;
+                    String response = commandProcessor.processCommandWithFields(command,
+                            new String[] { "APP" + target }, new Session(true));
+                    if (!response.startsWith("Application status updated")
+                            && !response.equals("Error: Application not found")) {
+                        failures.add("Status change on APP" + target + " failed: " + response);
+                    }
+                    statusUpdates.incrementAndGet();
+                    return null;
+                }, "Application submitted successfully with ID: ");
+                checkDense("Application", "APP", applicationIds, applications);
+                System.out.printf("Submitted %d applications alongside %d status changes in %d ms%n",
+                        applications, statusUpdates.get(), (System.nanoTime() - started) / 1_000_000);
+
+                // Step 3: Every record must be in the listings and each index exactly once
+                jobListing = dataManager.getAllJobPostings();
+                applicationListing = dataManager.getAllApplications();
+                checkJobListing(jobListing, jobs);
+                Map<String, Listed> listed = checkApplicationListing(applicationListing, applications);
+                checkIndexes(dataManager, listed, jobs);
+                System.out.println("Checked the listings and the by-job, by-seeker and by-status indexes");
+            } finally {
+                dataManager.close();
+            }
+
+            // Step 4: What was acknowledged must survive a restart
+            DataManager reopened = new DataManager(directory, false);
+            try {
+                if (!jobListing.equals(reopened.getAllJobPostings())) {
+                    failures.add("Job postings differ after reopening the data");
+                }
+                if (!applicationListing.equals(reopened.getAllApplications())) {
+                    failures.add("Applications differ after reopening the data");
+                }
+                System.out.println("Checked the data after reopening it");
+            } finally {
+                reopened.close();
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Runs count writes on the given number of threads, each write striped
+     * by its number, and collects the IDs of the ones that created a record.
+     *
+     * @return The IDs, in no particular order
+     */
+    private List<String> write(int threads, long count, LongFunction<String> write, String created)
+            throws Exception {
+        ConcurrentLinkedQueue<String> ids = new ConcurrentLinkedQueue<>();
+        ExecutorService writers = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> stripes = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int stripe = t;
+                stripes.add(writers.submit(() -> {
+                    for (long n = stripe; n < count; n += threads) {
+                        String response = write.apply(n);
+                        if (response == null) {
+                            continue;
+                        }
+                        if (response.startsWith(created)) {
+                            ids.add(response.substring(created.length()).trim());
+                        } else {
+                            failures.add("Write " + n + " failed: " + response);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> stripe : stripes) {
+                stripe.get();
+            }
+        } finally {
+            writers.shutdown();
+        }
+        return new ArrayList<>(ids);
+    }
+
+    /**
+     * Checks that the IDs handed out are unique and run from 1 to count.
+     */
+    private void checkDense(String kind, String prefix, List<String> ids, int count) {
+        boolean[] seen = new boolean[count + 1];
+        for (String id : ids) {
+            int number = number(id, prefix);
+            if (number < 1 || number > count) {
+                failures.add(kind + " ID out of range: " + id);
+            } else if (seen[number]) {
+                failures.add(kind + " ID handed out twice: " + id);
+            } else {
+                seen[number] = true;
+            }
+        }
+        for (int number = 1; number <= count; number++) {
+            if (!seen[number]) {
+                failures.add(kind + " ID never handed out: " + prefix + number);
+            }
+        }
+    }
+
+    private void checkJobListing(String listing, int jobs) {
+        List<String> ids = new ArrayList<>();
+        for (String line : listing.split("\n")) {
+            if (line.startsWith("ID: JOB")) {
+                ids.add(line.substring("ID: ".length()));
+            }
+        }
+        checkDense("Listed job", "JOB", ids, jobs);
+    }
+
+    /**
+     * Checks that the full application listing holds every application once.
+     *
+     * @return Each application as listed, by ID
+     */
+    private Map<String, Listed> checkApplicationListing(String listing, int applications) {
+        Map<String, Listed> listed = parseApplications(listing, "ID: ");
+        checkDense("Listed application", "APP", new ArrayList<>(listed.keySet()), applications);
+        return listed;
+    }
+
+    /**
+     * Checks that every application is in the index for its job, its job
+     * seeker and its status exactly once, with the same details as in the
+     * full listing.
+     */
+    private void checkIndexes(DataManager dataManager, Map<String, Listed> listed, int jobs) {
+        Map<String, Integer> byJob = new HashMap<>();
+        for (int job = 1; job <= jobs; job++) {
+            String jobId = "JOB" + job;
+            for (Map.Entry<String, Listed> application : parseApplications(
+                    dataManager.getApplicationsForJob(jobId), "ID: ").entrySet()) {
+                byJob.merge(application.getKey(), 1, Integer::sum);
+                if (!jobId.equals(application.getValue().jobId)) {
+                    failures.add(application.getKey() + " is indexed under " + jobId);
+                }
+            }
+        }
+
+        Set<String> seekers = new LinkedHashSet<>();
+        for (Listed application : listed.values()) {
+            seekers.add(application.jobSeekerId);
+        }
+        Map<String, Integer> bySeeker = new HashMap<>();
+        for (String jobSeekerId : seekers) {
+            for (Map.Entry<String, Listed> application : parseApplications(
+                    dataManager.getJobSeekerApplications(jobSeekerId), "Application ID: ").entrySet()) {
+                bySeeker.merge(application.getKey(), 1, Integer::sum);
+                Listed expected = listed.get(application.getKey());
+                if (expected == null || !jobSeekerId.equals(expected.jobSeekerId)) {
+                    failures.add(application.getKey() + " is indexed under " + jobSeekerId);
+                }
+            }
+        }
+
+        Map<String, Integer> byStatus = new HashMap<>();
+        for (int status = Protocol.STATUS_PENDING; status <= Protocol.STATUS_REJECTED; status++) {
+            for (Map.Entry<String, Listed> application : parseApplications(
+                    dataManager.getApplicationsByStatus(Integer.toString(status)), "ID: ").entrySet()) {
+                byStatus.merge(application.getKey(), 1, Integer::sum);
+                Listed expected = listed.get(application.getKey());
+                String statusText = STATUS_TEXTS[status - Protocol.STATUS_PENDING];
+                if (expected == null || !statusText.equals(expected.status)) {
+                    failures.add(application.getKey() + " is indexed as " + statusText + " but listed as "
+                            + (expected == null ? "missing" : expected.status));
+                }
+            }
+        }
+
+        for (String applicationId : listed.keySet()) {
+            checkOnce("job", applicationId, byJob);
+            checkOnce("job seeker", applicationId, bySeeker);
+            checkOnce("status", applicationId, byStatus);
+        }
+    }
+
+    private void checkOnce(String index, String applicationId, Map<String, Integer> counts) {
+        int count = counts.getOrDefault(applicationId, 0);
+        if (count != 1) {
+            failures.add(applicationId + " is in the " + index + " index " + count + " times");
+        }
+    }
+
+    /**
+     * Reads the applications from a listing, where each starts with a line
+     * holding its ID after the given label. An application listed twice is
+     * reported.
+     */
+    private Map<String, Listed> parseApplications(String listing, String idLabel) {
+        Map<String, Listed> applications = new HashMap<>();
+        Listed current = null;
+        for (String line : listing.split("\n")) {
+            if (line.startsWith(idLabel + "APP")) {
+                String applicationId = line.substring(idLabel.length()).trim();
+                current = new Listed();
+                if (applications.put(applicationId, current) != null) {
+                    failures.add(applicationId + " is listed twice in one listing");
+                }
+            } else if (current == null) {
+                continue;
+            } else if (line.startsWith("Job Seeker ID: ")) {
+                current.jobSeekerId = line.substring("Job Seeker ID: ".length());
+            } else if (line.startsWith("Job Posting ID: ")) {
+                current.jobId = line.substring("Job Posting ID: ".length());
+            } else if (line.startsWith("Status: ")) {
+                current.status = line.substring("Status: ".length());
+            }
+        }
+        return applications;
+    }
+
+    private static int number(String id, String prefix) {
+        if (!id.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            return Integer.parseInt(id.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String[] jobFields(long n) {
+        return new String[] { "Engineer " + n, "Company " + (n % 50), "Remote", "Build services for team " + n,
+                "Java, SQL", "$" + (60 + n % 90) + ",000" };
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted((a, b) -> b.compareTo(a)).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    System.err.println("Could not delete " + path + ": " + e.getMessage());
+                }
+            });
+        }
+    }
+}
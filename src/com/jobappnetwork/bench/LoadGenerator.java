@@ -0,0 +1,575 @@
+package com.jobappnetwork.bench;
+
+import com.jobappnetwork.client.ClientConnectionPool;
+import com.jobappnetwork.client.ClientInteraction;
+import java.io.IOException;
+import com.jobappnetwork.protocol.Protocol;
+import com.jobappnetwork.server.LatencyHistogram;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives a running server with simulated job seekers and hiring managers and
+ * reports the throughput and latency it sees, to find the load at which the
+ * server saturates.
+ *
+ * Every simulated user has its own connection, or with --connections a
+ * stream of one of a few pooled connections, logs in, and sends commands
+ * picked at random from its role's command mix. In the closed model each user
+ * sends its next command once the last one was answered, after an optional
+ * think time, so the load adapts to the server's speed. In the open model
+ * commands arrive at a fixed rate whatever the server's speed, and latency is
+ * measured from when a command was due rather than when it was sent, so a
+ * server falling behind shows up as growing latency instead of being hidden.
+ * Given several rates, the open model runs one step per rate.
+ *
+ * Usage: java com.jobappnetwork.bench.LoadGenerator [--host=HOST]
+ * [--port=N] [--seekers=N] [--managers=N] [--model=closed|open]
+ * [--rate=N,N,...] [--think=MILLIS] [--duration=SECONDS] [--warmup=SECONDS]
+ * [--seeker-mix=MIX] [--manager-mix=MIX] [--protocol=binary|text]
+ * [--connections=N] [--compress]
+ *
+ * A mix lists commands with their weights, such as
+ * "VIEW_JOBS=70,APPLY_TO_JOB=30". The commands are VIEW_JOBS, APPLY_TO_JOB,
+ * POST_JOB, ACCEPT_APPLICATION, REJECT_APPLICATION and VIEW_MY_APPLICATIONS.
+ */
+public class LoadGenerator {
+    private static final int[] SUPPORTED_COMMANDS = { Protocol.VIEW_JOBS, Protocol.APPLY_TO_JOB, Protocol.POST_JOB,
+            Protocol.ACCEPT_APPLICATION, Protocol.REJECT_APPLICATION, Protocol.VIEW_MY_APPLICATIONS };
+    // Job postings made before the load starts, so seekers have jobs to apply to
+    private static final int SEED_JOBS = 20;
+    // Recent job and application IDs that users pick from
+    private static final int RECENT_IDS = 4096;
+    private static final String RESUME = "Load test resume";
+
+    private final List<VirtualUser> users = new ArrayList<>();
+    // Shared by every user when --connections is given
+    private ClientConnectionPool pool;
+    private final RecentIds jobIds = new RecentIds();
+    private final RecentIds applicationIds = new RecentIds();
+    private final boolean openModel;
+    private final long thinkMillis;
+    private volatile boolean running;
+    private volatile Stats stats = new Stats();
+
+    /**
+     * Recently created IDs, overwritten oldest first.
+     */
+    private static final class RecentIds {
+        private final AtomicReferenceArray<String> ids = new AtomicReferenceArray<>(RECENT_IDS);
+        private final AtomicLong added = new AtomicLong();
+
+        void add(String id) {
+            ids.set((int) (added.getAndIncrement() % RECENT_IDS), id);
+        }
+
+        /**
+         * Picks a recent ID at random.
+         *
+         * @return The ID, or null if none was added yet
+         */
+        String pick(Random random) {
+            long count = Math.min(added.get(), RECENT_IDS);
+            return count == 0 ? null : ids.get(random.nextInt((int) count));
+        }
+    }
+
+    /**
+     * Commands with weights, picked at random in proportion to their weight.
+     */
+    private static final class Mix {
+        private final int[] commands;
+        private final int[] cumulativeWeights;
+
+        Mix(int[] commands, int[] cumulativeWeights) {
+            this.commands = commands;
+            this.cumulativeWeights = cumulativeWeights;
+        }
+
+        int pick(Random random) {
+            int value = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+            for (int i = 0; i < commands.length; i++) {
+                if (value < cumulativeWeights[i]) {
+                    return commands[i];
+                }
+            }
+            return commands[commands.length - 1];
+        }
+
+        /**
+         * Parses a mix such as "VIEW_JOBS=70,APPLY_TO_JOB=30".
+         *
+         * @throws IllegalArgumentException If a command or weight isn't valid
+         */
+        static Mix parse(String text) {
+            String[] entries = text.split(",");
+            int[] commands = new int[entries.length];
+            int[] cumulativeWeights = new int[entries.length];
+            int total = 0;
+            for (int i = 0; i < entries.length; i++) {
+                String[] entry = entries[i].split("=");
+                commands[i] = commandCode(entry[0].trim());
+                int weight = entry.length == 2 ? Integer.parseInt(entry[1].trim()) : 1;
+                if (weight <= 0) {
+                    throw new IllegalArgumentException("Weight must be positive: " + entries[i]);
+                }
+                total += weight;
+                cumulativeWeights[i] = total;
+            }
+            return new Mix(commands, cumulativeWeights);
+        }
+    }
+
+    /**
+     * Latencies and errors of one measurement period.
+     */
+    private static final class Stats {
+        final Map<Integer, LatencyHistogram> latencies = new ConcurrentHashMap<>();
+        final Map<Integer, LongAdder> errors = new ConcurrentHashMap<>();
+        final LatencyHistogram all = new LatencyHistogram();
+        final LongAdder allErrors = new LongAdder();
+        final LongAdder unsent = new LongAdder();
+
+        void record(int command, long nanos, boolean failed) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+            latencies.computeIfAbsent(command, c -> new LatencyHistogram()).record(micros);
+            all.record(micros);
+            if (failed) {
+                errors.computeIfAbsent(command, c -> new LongAdder()).increment();
+                allErrors.increment();
+            }
+        }
+    }
+
+    /**
+     * One simulated user with its own connection.
+     */
+    private final class VirtualUser implements Runnable {
+        private final ClientInteraction client;
+        private final String userId;
+        private final Mix mix;
+        // Due times of commands in the open model, in System.nanoTime() terms
+        private final BlockingQueue<Long> arrivals = new LinkedBlockingQueue<>();
+        private final Random random = new Random();
+
+        VirtualUser(ClientInteraction client, String userId, Mix mix) {
+            this.client = client;
+            this.userId = userId;
+            this.mix = mix;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    long due;
+                    if (openModel) {
+                        Long arrival = arrivals.poll(100, TimeUnit.MILLISECONDS);
+                        if (arrival == null) {
+                            continue;
+                        }
+                        due = arrival;
+                    } else {
+                        due = System.nanoTime();
+                    }
+
+                    Stats current = stats;
+                    int command = mix.pick(random);
+                    String response = execute(command);
+                    current.record(command, System.nanoTime() - due,
+                            response.regionMatches(true, 0, "ERROR", 0, 5));
+
+                    if (!openModel && thinkMillis > 0) {
+                        // Exponential think times, so users don't move in lockstep
+                        Thread.sleep((long) (-thinkMillis * Math.log(1 - random.nextDouble())));
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Sends one command, filling in its fields.
+         */
+        private String execute(int command) {
+            switch (command) {
+                case Protocol.APPLY_TO_JOB: {
+                    String jobId = jobIds.pick(random);
+                    String response = client.sendCommandWithFields(Protocol.APPLY_TO_JOB, jobId, userId, RESUME);
+                    String applicationId = idFrom(response, "Application submitted");
+                    if (applicationId != null) {
+                        applicationIds.add(applicationId);
+                    }
+                    return response;
+                }
+                case Protocol.POST_JOB: {
+                    String response = postJob(client, random);
+                    String jobId = idFrom(response, "Job posted");
+                    if (jobId != null) {
+                        jobIds.add(jobId);
+                    }
+                    return response;
+                }
+                case Protocol.ACCEPT_APPLICATION:
+                case Protocol.REJECT_APPLICATION: {
+                    String applicationId = applicationIds.pick(random);
+                    if (applicationId == null) {
+                        // Nothing to decide on yet; counts as a failed command
+                        return "ERROR: No applications yet";
+                    }
+                    return client.sendCommandWithFields(command, applicationId);
+                }
+                default:
+                    return client.sendCommand(command);
+            }
+        }
+    }
+
+    private LoadGenerator(boolean openModel, long thinkMillis) {
+        this.openModel = openModel;
+        this.thinkMillis = thinkMillis;
+    }
+
+    /**
+     * Runs the load generator.
+     *
+     * @param args Command line arguments, see the class description
+     */
+    public static void main(String[] args) throws InterruptedException {
+        String host = "localhost";
+        int port = 8080;
+        int seekers = 50;
+        int managers = 5;
+        boolean openModel = false;
+        List<Double> rates = new ArrayList<>();
+        long think = 0;
+        int duration = 30;
+        int warmup = 5;
+        String seekerMix = "VIEW_JOBS=60,APPLY_TO_JOB=30,VIEW_MY_APPLICATIONS=10";
+        String managerMix = "POST_JOB=20,VIEW_JOBS=20,ACCEPT_APPLICATION=30,REJECT_APPLICATION=30";
+        boolean binary = true;
+        int connections = 0;
+        boolean compress = false;
+
+        for (String arg : args) {
+            try {
+                if (arg.startsWith("--host=")) {
+                    host = arg.substring("--host=".length());
+                } else if (arg.startsWith("--port=")) {
+                    port = Integer.parseInt(arg.substring("--port=".length()));
+                } else if (arg.startsWith("--seekers=")) {
+                    seekers = Integer.parseInt(arg.substring("--seekers=".length()));
+                } else if (arg.startsWith("--managers=")) {
+                    managers = Integer.parseInt(arg.substring("--managers=".length()));
+                } else if (arg.equals("--model=open")) {
+                    openModel = true;
+                } else if (arg.equals("--model=closed")) {
+                    openModel = false;
+                } else if (arg.startsWith("--rate=")) {
+                    for (String rate : arg.substring("--rate=".length()).split(",")) {
+                        rates.add(Double.parseDouble(rate.trim()));
+                    }
+                } else if (arg.startsWith("--think=")) {
+                    think = Long.parseLong(arg.substring("--think=".length()));
+                } else if (arg.startsWith("--duration=")) {
+                    duration = Integer.parseInt(arg.substring("--duration=".length()));
+                } else if (arg.startsWith("--warmup=")) {
+                    warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+                } else if (arg.startsWith("--seeker-mix=")) {
+                    seekerMix = arg.substring("--seeker-mix=".length());
+                } else if (arg.startsWith("--manager-mix=")) {
+                    managerMix = arg.substring("--manager-mix=".length());
+                } else if (arg.equals("--protocol=text")) {
+                    binary = false;
+                } else if (arg.equals("--protocol=binary")) {
+                    binary = true;
+                } else if (arg.equals("--compress")) {
+                    compress = true;
+                } else if (arg.startsWith("--connections=")) {
+                    connections = Integer.parseInt(arg.substring("--connections=".length()));
+                } else {
+                    System.err.println("Unknown argument: " + arg);
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid number in argument: " + arg);
+                return;
+            }
+        }
+
+        Mix seekerCommands;
+        Mix managerCommands;
+        try {
+            seekerCommands = Mix.parse(seekerMix);
+            managerCommands = Mix.parse(managerMix);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Invalid command mix: " + e.getMessage());
+            return;
+        }
+        if (seekers + managers <= 0 || duration <= 0) {
+            System.err.println("Need at least one user and a positive duration");
+            return;
+        }
+        if ((connections > 0 || compress) && !binary) {
+            System.err.println("Pooled connections and compression require the binary protocol");
+            return;
+        }
+        if (openModel && rates.isEmpty()) {
+            System.err.println("The open model needs --rate=N (commands per second)");
+            return;
+        }
+
+        LoadGenerator generator = new LoadGenerator(openModel, think);
+        try {
+            if (!generator.connect(host, port, binary, connections, compress, seekers, seekerCommands, managers, managerCommands)) {
+                return;
+            }
+            generator.run(rates, warmup, duration);
+        } finally {
+            generator.disconnect();
+        }
+    }
+
+    /**
+     * Connects and logs in every user, then seeds the server with job postings.
+     *
+     * @return false if a connection failed
+     */
+    private boolean connect(String host, int port, boolean binary, int connections, boolean compress, int seekers,
+            Mix seekerMix, int managers, Mix managerMix) {
+        if (connections > 0) {
+            try {
+                pool = new ClientConnectionPool(host, port, connections, 0);
+            } catch (IOException e) {
+                System.err.println("Could not connect to " + host + ":" + port + ": " + e.getMessage());
+                return false;
+            }
+        }
+        // Distinct per run, so applications from earlier runs don't collide
+        String run = Long.toString(System.currentTimeMillis() % 100000, 36).toUpperCase(Locale.ROOT);
+        for (int i = 0; i < seekers + managers; i++) {
+            boolean seeker = i < seekers;
+            ClientInteraction client = pool != null ? pool.openSession() : new ClientInteraction(host, port);
+            if (!client.isConnected()) {
+                System.err.println("Could not connect user " + (i + 1) + " to " + host + ":" + port);
+                client.close();
+                return false;
+            }
+            if (binary && !client.useBinaryProtocol()) {
+                System.err.println("Server does not support the binary protocol; use --protocol=text");
+                client.close();
+                return false;
+            }
+            if (compress && !client.useCompression()) {
+                System.err.println("Server does not support compression");
+                client.close();
+                return false;
+            }
+            String userId = (seeker ? "LOADJS" : "LOADHM") + run + "-" + (i + 1);
+            client.login(userId, seeker ? Protocol.ROLE_JOB_SEEKER : Protocol.ROLE_HIRING_MANAGER);
+            users.add(new VirtualUser(client, userId, seeker ? seekerMix : managerMix));
+        }
+
+        Random random = new Random();
+        for (int i = 0; i < SEED_JOBS; i++) {
+            String jobId = idFrom(postJob(users.get(0).client, random), "Job posted");
+            if (jobId == null) {
+                System.err.println("Could not post seed job postings");
+                return false;
+            }
+            jobIds.add(jobId);
+        }
+        System.out.println("Connected " + seekers + " job seekers and " + managers + " hiring managers to " + host
+                + ":" + port + (binary ? " (binary protocol)" : " (text protocol)")
+                + (pool != null ? " over " + connections + " pooled connections" : "")
+                + (compress ? " with compression" : ""));
+        return true;
+    }
+
+    /**
+     * Runs the load, one step per rate in the open model, and reports it.
+     */
+    private void run(List<Double> rates, int warmup, int duration) throws InterruptedException {
+        running = true;
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < users.size(); i++) {
+            Thread thread = new Thread(users.get(i), "load-user-" + (i + 1));
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+
+        List<String> summary = new ArrayList<>();
+        if (openModel) {
+            for (double rate : rates) {
+                System.out.printf(Locale.ROOT, "%nOpen model at %.1f commands/s%n", rate);
+                Stats measured = step(rate, warmup, duration);
+                summary.add(summaryLine(String.format(Locale.ROOT, "%.1f", rate), measured, duration));
+            }
+        } else {
+            System.out.printf(Locale.ROOT, "%nClosed model, %d users, %d ms think time%n", users.size(),
+                    thinkMillis);
+            Stats measured = step(0, warmup, duration);
+            summary.add(summaryLine("closed", measured, duration));
+        }
+        running = false;
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+
+        System.out.printf(Locale.ROOT, "%n%-10s %12s %9s %10s %10s %10s %10s%n", "Offered", "Throughput", "Errors",
+                "p50 ms", "p99 ms", "p99.9 ms", "Max ms");
+        for (String line : summary) {
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * Runs one measurement step: a warmup whose results are discarded, then
+     * the measured period.
+     *
+     * @param rate The open model's arrival rate, in commands per second
+     * @return The measured period's stats
+     */
+    private Stats step(double rate, int warmup, int duration) throws InterruptedException {
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmup);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(duration);
+        stats = new Stats();
+        boolean measuring = warmup == 0;
+        long nextReport = start + TimeUnit.SECONDS.toNanos(1);
+        long lastCount = 0;
+
+        // Exponential gaps between arrivals make them a Poisson process
+        Random random = ThreadLocalRandom.current();
+        long due = start;
+        int nextUser = 0;
+        while (true) {
+            long now = System.nanoTime();
+            if (now >= end) {
+                break;
+            }
+            if (!measuring && now >= measureFrom) {
+                stats = new Stats();
+                lastCount = 0;
+                measuring = true;
+            }
+            if (now >= nextReport) {
+                long count = stats.all.getCount();
+                System.out.printf(Locale.ROOT, "%s %6d s: %8d commands/s, p99 %.3f ms%n",
+                        measuring ? "measure" : "warmup ", TimeUnit.NANOSECONDS.toSeconds(now - start),
+                        count - lastCount, stats.all.getValueAtPercentile(99) / 1000.0);
+                lastCount = count;
+                nextReport += TimeUnit.SECONDS.toNanos(1);
+            }
+
+            if (openModel) {
+                while (due <= now) {
+                    users.get(nextUser).arrivals.add(due);
+                    nextUser = (nextUser + 1) % users.size();
+                    due += (long) (-1e9 / rate * Math.log(1 - random.nextDouble()));
+                }
+                LockSupport.parkNanos(Math.min(due, nextReport) - now);
+            } else {
+                LockSupport.parkNanos(nextReport - now);
+            }
+        }
+
+        Stats measured = stats;
+        // Commands that were due but never sent count against the server
+        for (VirtualUser user : users) {
+            measured.unsent.add(user.arrivals.size());
+            user.arrivals.clear();
+        }
+        report(measured, duration);
+        return measured;
+    }
+
+    private void report(Stats measured, int duration) {
+        System.out.printf(Locale.ROOT, "%-22s %9s %7s %10s %10s %10s %10s %10s%n", "Command", "Count", "Errors",
+                "Mean ms", "p50 ms", "p90 ms", "p99 ms", "Max ms");
+        Map<Integer, LatencyHistogram> ordered = new LinkedHashMap<>();
+        for (int command : SUPPORTED_COMMANDS) {
+            if (measured.latencies.containsKey(command)) {
+                ordered.put(command, measured.latencies.get(command));
+            }
+        }
+        for (Map.Entry<Integer, LatencyHistogram> entry : ordered.entrySet()) {
+            LongAdder errors = measured.errors.get(entry.getKey());
+            printRow(Protocol.getCommandName(entry.getKey()), entry.getValue(), errors == null ? 0 : errors.sum());
+        }
+        printRow("ALL", measured.all, measured.allErrors.sum());
+        System.out.printf(Locale.ROOT, "Throughput: %.1f commands/s over %d s", (double) measured.all.getCount()
+                / duration, duration);
+        if (measured.unsent.sum() > 0) {
+            System.out.print(", " + measured.unsent.sum() + " due commands never sent");
+        }
+        System.out.println();
+    }
+
+    private static void printRow(String name, LatencyHistogram latency, long errors) {
+        System.out.printf(Locale.ROOT, "%-22s %9d %7d %10.3f %10.3f %10.3f %10.3f %10.3f%n", name,
+                latency.getCount(), errors, latency.getMean() / 1000.0, latency.getValueAtPercentile(50) / 1000.0,
+                latency.getValueAtPercentile(90) / 1000.0, latency.getValueAtPercentile(99) / 1000.0,
+                latency.getMax() / 1000.0);
+    }
+
+    private static String summaryLine(String offered, Stats measured, int duration) {
+        return String.format(Locale.ROOT, "%-10s %12.1f %9d %10.3f %10.3f %10.3f %10.3f", offered,
+                (double) measured.all.getCount() / duration, measured.allErrors.sum(),
+                measured.all.getValueAtPercentile(50) / 1000.0, measured.all.getValueAtPercentile(99) / 1000.0,
+                measured.all.getValueAtPercentile(99.9) / 1000.0, measured.all.getMax() / 1000.0);
+    }
+
+    private void disconnect() {
+        running = false;
+        for (VirtualUser user : users) {
+            user.client.close();
+        }
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    private static String postJob(ClientInteraction client, Random random) {
+        int n = random.nextInt(100000);
+        return client.sendCommandWithFields(Protocol.POST_JOB, "Load Test Engineer " + n, "Company " + n % 50,
+                "City " + n % 20, "Generated by the load generator", "Java, SQL", "$" + (60 + n % 90) + ",000");
+    }
+
+    /**
+     * Gets the ID at the end of a successful create response.
+     *
+     * @return The ID, or null if the response isn't the expected success
+     */
+    private static String idFrom(String response, String successPrefix) {
+        String text = response.trim();
+        if (!text.startsWith(successPrefix)) {
+            return null;
+        }
+        return text.substring(text.lastIndexOf(' ') + 1);
+    }
+
+    private static int commandCode(String name) {
+        for (int command : SUPPORTED_COMMANDS) {
+            if (Protocol.getCommandName(command).equals(name)) {
+                return command;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported command: " + name);
+    }
+}
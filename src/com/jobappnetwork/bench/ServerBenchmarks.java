@@ -0,0 +1,303 @@
+package com.jobappnetwork.bench;
+
+import com.jobappnetwork.protocol.BinaryCodec;
+import com.jobappnetwork.protocol.Protocol;
+import com.jobappnetwork.server.CommandProcessor;
+import com.jobappnetwork.server.DataManager;
+import com.jobappnetwork.server.LatencyHistogram;
+import com.jobappnetwork.server.ResponseEncoder;
+import com.jobappnetwork.server.Session;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks of the server's hot paths against data sets of realistic size.
+ *
+ * For every size, a fresh data set is built in a temporary directory through
+ * the same durable writes the server makes: size applications, from size / 5
+ * job seekers, to size / 10 job postings. Reads are measured first, then
+ * writes, which grow the data set as they run.
+ *
+ * Usage: java com.jobappnetwork.bench.ServerBenchmarks [--sizes=N,N,...]
+ * [--threads=N] [--warmup=N] [--iterations=N] [--time=MILLIS]
+ * [--benchmarks=TEXT] [--save=FILE] [--compare=FILE]
+ *
+ * --benchmarks runs only the benchmarks whose name contains the text. --save
+ * writes the results to a file, and --compare prints the change from results
+ * saved earlier, so a performance change can be shown with before and after
+ * numbers. The B/op column is the heap allocated per operation, where the JVM
+ * can count it.
+ */
+public class ServerBenchmarks {
+    // Writers building a data set; more writers share more of each journal sync
+    private static final int BUILD_THREADS = 64;
+    private static final String RESUME = "Five years of Java and distributed systems experience";
+    private static final String[] SKILLS = { "Java, SQL", "Python, AWS", "Go, Kubernetes", "React, TypeScript" };
+    private static final String[] LOCATIONS = { "New York", "Austin", "Remote", "Seattle", "Chicago" };
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args Command line arguments, see the class description
+     */
+    public static void main(String[] args) throws Exception {
+        List<Long> sizes = new ArrayList<>();
+        int threads = 1;
+        int warmup = 2;
+        int iterations = 5;
+        long time = 1000;
+        String filter = "";
+        Path save = null;
+        Path compare = null;
+
+        for (String arg : args) {
+            try {
+                if (arg.startsWith("--sizes=")) {
+                    for (String size : arg.substring("--sizes=".length()).split(",")) {
+                        sizes.add(Long.parseLong(size.trim()));
+                    }
+                } else if (arg.startsWith("--threads=")) {
+                    threads = Integer.parseInt(arg.substring("--threads=".length()));
+                } else if (arg.startsWith("--warmup=")) {
+                    warmup = Integer.parseInt(arg.substring("--warmup=".length()));
+                } else if (arg.startsWith("--iterations=")) {
+                    iterations = Integer.parseInt(arg.substring("--iterations=".length()));
+                } else if (arg.startsWith("--time=")) {
+                    time = Long.parseLong(arg.substring("--time=".length()));
+                } else if (arg.startsWith("--benchmarks=")) {
+                    filter = arg.substring("--benchmarks=".length());
+                } else if (arg.startsWith("--save=")) {
+                    save = Paths.get(arg.substring("--save=".length()));
+                } else if (arg.startsWith("--compare=")) {
+                    compare = Paths.get(arg.substring("--compare=".length()));
+                } else {
+                    System.err.println("Unknown argument: " + arg);
+                    return;
+                }
+            } catch (NumberFormatException e) {
+                System.err.println("Invalid number in argument: " + arg);
+                return;
+            }
+        }
+        if (sizes.isEmpty()) {
+            sizes.add(10_000L);
+            sizes.add(100_000L);
+        }
+
+        Map<String, Double> baseline = compare == null ? null : load(compare);
+        Benchmark benchmark = new Benchmark(warmup, iterations, time, threads);
+        List<Benchmark.Result> results = new ArrayList<>();
+        for (long size : sizes) {
+            results.addAll(runSize(benchmark, size, filter, baseline));
+        }
+        if (save != null) {
+            save(save, results);
+            System.out.println("Saved results to " + save);
+        }
+    }
+
+    /**
+     * Builds a data set of the given size and runs every selected benchmark
+     * against it.
+     */
+    private static List<Benchmark.Result> runSize(Benchmark benchmark, long size, String filter,
+            Map<String, Double> baseline) throws Exception {
+        if (size < 10 || size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Size must be between 10 and " + Integer.MAX_VALUE + ": " + size);
+        }
+        int applications = (int) size;
+        int jobs = applications / 10;
+        int seekers = applications / 5;
+
+        Path directory = Files.createTempDirectory("jobapp-bench");
+        DataManager dataManager = new DataManager(directory, false);
+        List<Benchmark.Result> results = new ArrayList<>();
+        try {
+            long started = System.nanoTime();
+            build(jobs, n -> dataManager.createJobPosting(jobFields(n)), "Job posted");
+            build(applications, n -> dataManager.createApplication(applicationFields(n, jobs, seekers)),
+                    "Application submitted");
+            System.out.printf(Locale.ROOT, "%nData set: %d applications, %d job postings, %d job seekers"
+                    + " (built in %d ms)%n", applications, jobs, seekers, (System.nanoTime() - started) / 1_000_000);
+            printHeader(baseline != null);
+
+            CommandProcessor commandProcessor = new CommandProcessor(dataManager);
+            Session session = new Session(true);
+            String page = dataManager.getJobPostingsPage(new String[] { "0", "20" });
+            byte[] commandLine = (Protocol.VIEW_JOBS_PAGE + "\n").getBytes(StandardCharsets.US_ASCII);
+            byte[] pageRequest = BinaryCodec.encodeRequest(1, 0, Protocol.VIEW_JOBS_PAGE, "0", "20");
+
+            Map<String, Benchmark.Operation> operations = new LinkedHashMap<>();
+            // ClientHandler's text path: parse the command line and data, frame the response
+            operations.put("ClientHandler.textParseEncode", n -> {
+                int command = Protocol.parseCommand(commandLine, 0, commandLine.length - 1);
+                String[] fields = Protocol.splitFields("0|20");
+                return command + fields.length + ResponseEncoder.encode(page).length;
+            });
+            // Dispatch alone: a command that does no work, so what's left is the
+            // cost and allocation of the path itself
+            operations.put("CommandProcessor.processCommandEncoded",
+                    n -> commandProcessor.processCommandEncoded(Protocol.PING, session));
+            // ClientHandler's binary path: decode the request frame, encode the response frame
+            operations.put("ClientHandler.binaryDecodeEncode", n -> {
+                BinaryCodec.Request request = BinaryCodec.decodeRequest(
+                        ByteBuffer.wrap(pageRequest, 4, pageRequest.length - 4));
+                return BinaryCodec.encodeResponse(request.correlationId, request.streamId, Protocol.SUCCESS, page);
+            });
+            operations.put("DataManager.getAllJobPostings", n -> dataManager.getAllJobPostings());
+            // A client ten changes behind, against fetching the whole listing above
+            String recentSequence = Long.toString(dataManager.getChangeLog().getSequence() - 10);
+            operations.put("DataManager.getChangesSince", n -> dataManager.getChangesSince(recentSequence, null));
+            operations.put("DataManager.getJobSeekerApplications",
+                    n -> dataManager.getJobSeekerApplications("JS" + (1 + n % seekers)));
+            operations.put("CommandProcessor.processCommandWithData", n -> commandProcessor.processCommandWithData(
+                    Protocol.VIEW_SEEKER_APPLICATIONS, "JS" + (1 + n % seekers), session));
+            operations.put("CommandProcessor.processRequestFrame", n -> commandProcessor.processRequestFrame(
+                    BinaryCodec.decodeRequest(ByteBuffer.wrap(pageRequest, 4, pageRequest.length - 4)), session));
+            // The same request on a connection that sent USE_COMPRESSION
+            operations.put("CommandProcessor.deflatedRequestFrame", n -> commandProcessor.processRequestFrame(
+                    BinaryCodec.decodeRequest(ByteBuffer.wrap(pageRequest, 4, pageRequest.length - 4)), session,
+                    true));
+            operations.put("DataManager.updateApplicationStatus", n -> expect(dataManager.updateApplicationStatus(
+                    "APP" + (1 + n % applications),
+                    (n / applications) % 2 == 0 ? Protocol.STATUS_ACCEPTED : Protocol.STATUS_REJECTED),
+                    "Application status updated"));
+            operations.put("DataManager.createApplication", n -> expect(dataManager.createApplication(
+                    applicationFields(n, jobs, seekers)), "Application submitted"));
+            operations.put("DataManager.createJobPosting",
+                    n -> expect(dataManager.createJobPosting(jobFields(n)), "Job posted"));
+
+            for (Map.Entry<String, Benchmark.Operation> operation : operations.entrySet()) {
+                if (operation.getKey().contains(filter)) {
+                    Benchmark.Result result = benchmark.run(operation.getKey(), size, operation.getValue());
+                    print(result, baseline);
+                    results.add(result);
+                }
+            }
+        } finally {
+            dataManager.close();
+            delete(directory);
+        }
+        return results;
+    }
+
+    /**
+     * Runs count writes on the build threads, each write striped by its number.
+     */
+    private static void build(int count, Benchmark.Operation write, String expected) throws Exception {
+        ExecutorService builders = Executors.newFixedThreadPool(BUILD_THREADS);
+        try {
+            List<Future<?>> stripes = new ArrayList<>();
+            for (int t = 0; t < BUILD_THREADS; t++) {
+                int stripe = t;
+                stripes.add(builders.submit(() -> {
+                    for (long n = stripe; n < count; n += BUILD_THREADS) {
+                        expect(write.run(n), expected);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> stripe : stripes) {
+                stripe.get();
+            }
+        } finally {
+            builders.shutdownNow();
+        }
+    }
+
+    private static String[] jobFields(long n) {
+        return new String[] { "Engineer " + n, "Company " + (n % 500), LOCATIONS[(int) (n % LOCATIONS.length)],
+                "Build and run services for team " + n, SKILLS[(int) (n % SKILLS.length)],
+                "$" + (60 + n % 90) + ",000" };
+    }
+
+    private static String[] applicationFields(long n, int jobs, int seekers) {
+        return new String[] { "JOB" + (1 + n % jobs), "JS" + (1 + n % seekers), RESUME };
+    }
+
+    /**
+     * Fails the benchmark if a write didn't succeed, so errors aren't
+     * measured as fast writes.
+     */
+    private static Object expect(Object response, String prefix) {
+        if (!String.valueOf(response).startsWith(prefix)) {
+            throw new IllegalStateException("Unexpected response: " + response);
+        }
+        return response;
+    }
+
+    private static void printHeader(boolean comparing) {
+        System.out.printf(Locale.ROOT, "%-42s %7s %13s %11s %11s %11s %11s%s%n", "Benchmark", "Threads", "ns/op",
+                "Error", "p50 us", "p99 us", "B/op", comparing ? "     Change" : "");
+    }
+
+    private static void print(Benchmark.Result result, Map<String, Double> baseline) {
+        LatencyHistogram latency = result.getLatency();
+        String change = "";
+        if (baseline != null) {
+            Double before = baseline.get(key(result));
+            change = before == null ? "        new"
+                    : String.format(Locale.ROOT, " %+9.1f%%", (result.getNanosPerOp() - before) * 100 / before);
+        }
+        String bytes = result.getBytesPerOp() < 0 ? "n/a"
+                : String.format(Locale.ROOT, "%.1f", result.getBytesPerOp());
+        System.out.printf(Locale.ROOT, "%-42s %7d %13.1f %11.1f %11.1f %11.1f %11s%s%n", result.getName(),
+                result.getThreads(), result.getNanosPerOp(), result.getError(),
+                latency.getValueAtPercentile(50) / 1000.0, latency.getValueAtPercentile(99) / 1000.0, bytes, change);
+    }
+
+    private static String key(Benchmark.Result result) {
+        return result.getName() + "," + result.getSize() + "," + result.getThreads();
+    }
+
+    /**
+     * Saves results as "name,size,threads,nanosPerOp" lines.
+     */
+    private static void save(Path file, List<Benchmark.Result> results) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (Benchmark.Result result : results) {
+            lines.add(key(result) + "," + result.getNanosPerOp());
+        }
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Loads saved results, keyed by name, size and threads.
+     */
+    private static Map<String, Double> load(Path file) throws IOException {
+        Map<String, Double> results = new HashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            int comma = line.lastIndexOf(',');
+            if (comma > 0) {
+                results.put(line.substring(0, comma), Double.parseDouble(line.substring(comma + 1)));
+            }
+        }
+        return results;
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            List<Path> sorted = new ArrayList<>();
+            paths.forEach(sorted::add);
+            sorted.sort(Comparator.reverseOrder());
+            for (Path path : sorted) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,286 @@
+package com.jobappnetwork.client;
+
+import com.jobappnetwork.protocol.BinaryCodec;
+import com.jobappnetwork.protocol.Protocol;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small set of binary protocol connections shared by many logical users.
+ *
+ * Each session opened from the pool is a ClientInteraction on its own stream
+ * of one of the connections, so thousands of users can be served by a few
+ * sockets, with their requests in flight at the same time. The server keeps
+ * each stream's login and subscription apart.
+ *
+ * Connections are checked with PING at a fixed interval and closed if the
+ * server stops answering. A lost connection is reopened with exponential
+ * backoff, and its sessions log in and subscribe again once it is back;
+ * requests made while a connection is down fail instead of waiting.
+ */
+public class ClientConnectionPool {
+    private static final long MIN_BACKOFF_MILLIS = 100;
+    private static final long MAX_BACKOFF_MILLIS = 10_000;
+    private static final int CONNECT_TIMEOUT_MILLIS = 5_000;
+
+    private final String host;
+    private final int port;
+    private final long healthCheckMillis;
+    private final List<Slot> slots = new ArrayList<>();
+    // Runs reconnects and health checks
+    private final ScheduledExecutorService scheduler;
+    private volatile boolean closed;
+
+    /**
+     * One connection of the pool and the sessions using it. The connection
+     * outlives its socket: when the socket is lost it is reopened and the
+     * slot's sessions are moved over.
+     */
+    private final class Slot {
+        final Set<ClientInteraction> sessions = ConcurrentHashMap.newKeySet();
+        // Stream 0 is the connection's own session, so pooled sessions start at 1
+        final AtomicInteger nextStreamId = new AtomicInteger();
+        volatile MultiplexedConnection connection;
+        // Failed connection attempts since the last success
+        int failures;
+    }
+
+    /**
+     * Opens a pool of connections to a server.
+     *
+     * @param host              The server's host name or address
+     * @param port              The server's port
+     * @param connections       The number of connections to share
+     * @param healthCheckMillis How often each connection is checked with
+     *                          PING, or 0 to never check
+     * @throws IOException If the first connection can't be opened
+     */
+    public ClientConnectionPool(String host, int port, int connections, long healthCheckMillis)
+            throws IOException {
+        if (connections < 1) {
+            throw new IllegalArgumentException("A pool needs at least one connection: " + connections);
+        }
+        this.host = host;
+        this.port = port;
+        this.healthCheckMillis = healthCheckMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "ClientConnectionPool");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        for (int i = 0; i < connections; i++) {
+            Slot slot = new Slot();
+            slots.add(slot);
+            try {
+                slot.connection = open(slot);
+            } catch (IOException e) {
+                if (i == 0) {
+                    // The server isn't there at all
+                    scheduler.shutdownNow();
+                    throw e;
+                }
+                scheduleReconnect(slot);
+            }
+        }
+        if (healthCheckMillis > 0) {
+            scheduler.scheduleWithFixedDelay(this::checkHealth, healthCheckMillis, healthCheckMillis,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Opens a session for one user on the least busy connection. The
+     * session uses the binary protocol and should be closed when the user
+     * is done, which frees its stream without closing the connection.
+     *
+     * @return The session
+     */
+    public ClientInteraction openSession() {
+        if (closed) {
+            throw new IllegalStateException("Connection pool is closed");
+        }
+        // Step 1: Prefer connections that are up, then the ones with the fewest sessions
+        Slot best = null;
+        for (Slot slot : slots) {
+            if (best == null || isBetter(slot, best)) {
+                best = slot;
+            }
+        }
+
+        // Step 2: Give the session the next stream of that connection
+        int streamId = best.nextStreamId.incrementAndGet();
+        if (streamId <= 0) {
+            best.nextStreamId.set(0);
+            streamId = best.nextStreamId.incrementAndGet();
+        }
+        ClientInteraction session = new ClientInteraction(this, null, streamId);
+        best.sessions.add(session);
+        // Attached only once registered, so a reconnect in between can't miss it
+        session.reattach(best.connection);
+        return session;
+    }
+
+    private static boolean isBetter(Slot slot, Slot than) {
+        boolean up = isUp(slot.connection);
+        if (up != isUp(than.connection)) {
+            return up;
+        }
+        return slot.sessions.size() < than.sessions.size();
+    }
+
+    private static boolean isUp(MultiplexedConnection connection) {
+        return connection != null && connection.isOpen();
+    }
+
+    /**
+     * Forgets a session that has been closed.
+     *
+     * @param session The session
+     */
+    void release(ClientInteraction session) {
+        for (Slot slot : slots) {
+            if (slot.sessions.remove(session)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of connections that are currently up.
+     *
+     * @return The number of open connections
+     */
+    public int getConnectionCount() {
+        int count = 0;
+        for (Slot slot : slots) {
+            if (isUp(slot.connection)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of sessions open on the pool's connections.
+     *
+     * @return The number of sessions
+     */
+    public int getSessionCount() {
+        int count = 0;
+        for (Slot slot : slots) {
+            count += slot.sessions.size();
+        }
+        return count;
+    }
+
+    /**
+     * Opens a connection for a slot, arranging for it to be reopened if it
+     * is lost.
+     */
+    private MultiplexedConnection open(Slot slot) throws IOException {
+        return MultiplexedConnection.connect(host, port, CONNECT_TIMEOUT_MILLIS, () -> connectionLost(slot));
+    }
+
+    /**
+     * Called on a connection's reader thread once it has closed.
+     */
+    private void connectionLost(Slot slot) {
+        if (closed) {
+            return;
+        }
+        // Sessions fail fast until the slot is reconnected
+        slot.connection = null;
+        for (ClientInteraction session : slot.sessions) {
+            session.reattach(null);
+        }
+        scheduleReconnect(slot);
+    }
+
+    /**
+     * Tries to reopen a slot's connection after a delay that doubles with
+     * each failure, up to a limit. The delay is jittered so that clients
+     * cut off together don't all reconnect at the same moment.
+     */
+    private void scheduleReconnect(Slot slot) {
+        long backoff = Math.min(MAX_BACKOFF_MILLIS, MIN_BACKOFF_MILLIS << Math.min(slot.failures, 16));
+        long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+        try {
+            scheduler.schedule(() -> reconnect(slot), delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // The pool was closed in the meantime
+        }
+    }
+
+    private void reconnect(Slot slot) {
+        if (closed) {
+            return;
+        }
+        MultiplexedConnection connection;
+        try {
+            connection = open(slot);
+        } catch (IOException e) {
+            slot.failures++;
+            scheduleReconnect(slot);
+            return;
+        }
+        slot.failures = 0;
+        slot.connection = connection;
+        for (ClientInteraction session : slot.sessions) {
+            session.reattach(connection);
+        }
+        if (closed) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Pings every open connection and closes the ones that don't answer in
+     * time, which starts their reconnect.
+     */
+    private void checkHealth() {
+        for (Slot slot : slots) {
+            MultiplexedConnection connection = slot.connection;
+            if (connection == null || !connection.isOpen()) {
+                continue;
+            }
+            CompletableFuture<BinaryCodec.Response> ping = connection.send(0, Protocol.PING);
+            ping.whenComplete((response, failure) -> {
+                if (failure != null || !"PONG".equals(response.body().trim())) {
+                    connection.close();
+                }
+            });
+            scheduler.schedule(() -> {
+                // Still waiting on the ping: the server or the network is stuck
+                if (!ping.isDone()) {
+                    connection.close();
+                }
+            }, healthCheckMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Closes every connection, ending all of the pool's sessions.
+     */
+    public void close() {
+        closed = true;
+        scheduler.shutdownNow();
+        for (Slot slot : slots) {
+            MultiplexedConnection connection = slot.connection;
+            if (connection != null) {
+                connection.close();
+            }
+            slot.sessions.clear();
+        }
+    }
+}
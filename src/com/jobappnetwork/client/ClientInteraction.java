@@ -1,7 +1,19 @@
 package com.jobappnetwork.client;
 
+import com.jobappnetwork.protocol.BinaryCodec;
+import com.jobappnetwork.protocol.Protocol;
 import java.io.*;
 import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
 
 /**
  * Handles the client-side network communication with the server.
@@ -12,13 +24,77 @@ public class ClientInteraction {
     private Socket socket;
     private PrintWriter out;
     private BufferedReader in;
+    // Binary protocol state, used once useBinaryProtocol() succeeds
+    private volatile boolean binary;
+    // The binary connection and this session's stream on it; a pooled
+    // session's connection is null while the pool reconnects
+    private volatile MultiplexedConnection connection;
+    private final int streamId;
+    // The pool a shared connection belongs to, or null for a connection of our own
+    private final ClientConnectionPool pool;
+    // Replayed after a pooled connection is replaced
+    private volatile String[] loginFields;
+    private volatile String subscribedTopics;
+    private volatile boolean compression;
+    // Receives events pushed by the server, on its own thread so a slow
+    // listener never holds up responses
+    private volatile Consumer<Event> eventListener;
+    private ExecutorService eventExecutor;
     private static final String SERVER_HOST = "localhost";
     private static final int SERVER_PORT = 8080;
+    // Resume uploads are sent in chunks of this size
+    private static final int RESUME_CHUNK_SIZE = 48 * 1024;
+    // Binary resume chunks in flight at once
+    private static final int MAX_CHUNKS_IN_FLIGHT = 8;
+
+    /**
+     * An event pushed by the server to a subscribed connection.
+     */
+    public static final class Event {
+        private final String type;
+        private final String text;
+
+        Event(String type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+
+        /**
+         * Gets the kind of event, one of Protocol's EVENT_ types.
+         * 
+         * @return The event type
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Gets the event's details: a job posting for EVENT_JOB_POSTED, or
+         * applicationId|jobId|status for EVENT_STATUS_CHANGED.
+         * 
+         * @return The event text
+         */
+        public String getText() {
+            return text;
+        }
+    }
 
     public ClientInteraction() {
+        this(SERVER_HOST, SERVER_PORT);
+    }
+
+    /**
+     * Connects to a server other than the default one.
+     * 
+     * @param host The server's host name or address
+     * @param port The server's port
+     */
+    public ClientInteraction(String host, int port) {
+        this.streamId = 0;
+        this.pool = null;
         try {
             // Connect to the server
-            socket = new Socket(SERVER_HOST, SERVER_PORT);
+            socket = new Socket(host, port);
             out = new PrintWriter(socket.getOutputStream(), true);
             in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
             // System.out.println("Connected to server successfully.");
@@ -27,6 +103,30 @@ public class ClientInteraction {
         }
     }
 
+    /**
+     * Creates a session on a stream of a pooled connection. The session
+     * always uses the binary protocol.
+     * 
+     * @param pool       The pool the connection belongs to
+     * @param connection The shared connection, or null if it is reconnecting
+     * @param streamId   The session's stream on the connection
+     */
+    ClientInteraction(ClientConnectionPool pool, MultiplexedConnection connection, int streamId) {
+        this.pool = pool;
+        this.connection = connection;
+        this.streamId = streamId;
+        this.binary = true;
+    }
+
+    /**
+     * Checks whether the connection to the server was established.
+     * 
+     * @return true if the client connected
+     */
+    public boolean isConnected() {
+        return pool != null ? connection != null : out != null;
+    }
+
     /**
      * Sends a command to the server
      * 
@@ -34,6 +134,9 @@ public class ClientInteraction {
      * @return The server's response
      */
     public String sendCommand(int command) {
+        if (binary) {
+            return exchange(command);
+        }
         try {
             // System.out.println("Debug - ClientInteraction: Sending command: " +
             // Protocol.getCommandName(command));
@@ -70,6 +173,9 @@ public class ClientInteraction {
      * @return The server's response
      */
     public String sendCommandWithData(int command, String data) {
+        if (binary) {
+            return exchange(command, data.split("\\|"));
+        }
         try {
             // System.out.println("Debug - ClientInteraction: Sending command with data: " +
             // Protocol.getCommandName(command));
@@ -104,10 +210,339 @@ public class ClientInteraction {
         }
     }
 
+    /**
+     * Sends a command with separate fields to the server.
+     * With the binary protocol each field is sent length-prefixed, so fields may
+     * contain '|' or newlines; with the text protocol they are joined with '|'.
+     * 
+     * @param command The command code to send
+     * @param fields  The command's fields, in order
+     * @return The server's response
+     */
+    public String sendCommandWithFields(int command, String... fields) {
+        if (binary) {
+            return exchange(command, fields);
+        }
+        return sendCommandWithData(command, String.join("|", fields));
+    }
+
+    /**
+     * Asks the server to switch this connection to the binary protocol.
+     * Servers that don't support it answer with an error and the connection
+     * stays on the text protocol.
+     * 
+     * @return true if the connection now uses the binary protocol
+     */
+    public boolean useBinaryProtocol() {
+        if (binary) {
+            return true;
+        }
+        if (out == null) {
+            return false;
+        }
+
+        String response = sendCommand(Protocol.USE_BINARY_PROTOCOL);
+        if (!response.trim().equals(BinaryCodec.SWITCH_CONFIRMATION)) {
+            return false;
+        }
+
+        try {
+            // Responses are matched to requests by correlation ID on a reader thread
+            connection = new MultiplexedConnection(socket, null);
+            binary = true;
+            return true;
+        } catch (IOException e) {
+            System.err.println("Error switching to binary protocol: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Asks the server to compress large responses, such as job and
+     * application listings, on this connection. Responses are inflated as
+     * they arrive, so nothing else changes for the caller. Requires the
+     * binary protocol; on a pooled session, compression applies to every
+     * session sharing the connection.
+     * 
+     * @return true if the server will compress responses
+     */
+    public boolean useCompression() {
+        if (!binary) {
+            return false;
+        }
+        compression = true;
+        return !exchange(Protocol.USE_COMPRESSION).startsWith("ERROR");
+    }
+
+    /**
+     * Sends a command without waiting for its response.
+     * On the binary protocol any number of requests can be outstanding on the
+     * connection and the server may answer them in any order; each future
+     * completes when its own response arrives. Requests that depend on an
+     * earlier one (e.g. accepting an application just submitted) must wait for
+     * that future first. On the text protocol the command is sent synchronously
+     * and the returned future is already complete.
+     * 
+     * @param command The command code to send
+     * @param fields  The command's fields, in order (none for commands without
+     *                data)
+     * @return A future for the server's response
+     */
+    public CompletableFuture<String> sendAsync(int command, String... fields) {
+        if (!binary) {
+            return CompletableFuture.completedFuture(
+                    fields.length == 0 ? sendCommand(command) : sendCommandWithFields(command, fields));
+        }
+
+        MultiplexedConnection current = connection;
+        if (current == null) {
+            return CompletableFuture.completedFuture("ERROR: Not connected to server\n");
+        }
+        return current.send(streamId, command, fields).thenApply(ClientInteraction::text);
+    }
+
+    /**
+     * Tells the server who is using this connection, so requests about "my"
+     * data are answered for this user and applications are filed under their
+     * ID.
+     * 
+     * @param userId The user's ID
+     * @param role   Protocol.ROLE_JOB_SEEKER or Protocol.ROLE_HIRING_MANAGER
+     * @return The server's response
+     */
+    public String login(String userId, int role) {
+        String[] fields = { userId, String.valueOf(role) };
+        loginFields = fields;
+        return sendCommandWithFields(Protocol.LOGIN, fields);
+    }
+
+    /**
+     * Subscribes to events pushed by the server, such as new job postings and
+     * application status changes, so they don't have to be polled for.
+     * Requires the binary protocol. The listener is called on a separate
+     * thread, one event at a time, in the order the events arrive.
+     * 
+     * @param listener Receives each event
+     * @param topics   The topics to receive ("jobs", "status"); none for all
+     * @return The server's response
+     */
+    public String subscribe(Consumer<Event> listener, String... topics) {
+        if (!binary) {
+            return "ERROR: Subscriptions require the binary protocol";
+        }
+        synchronized (this) {
+            if (eventExecutor == null) {
+                eventExecutor = Executors.newSingleThreadExecutor(r -> {
+                    Thread thread = new Thread(r, "ClientInteraction-events");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+        eventListener = listener;
+        subscribedTopics = String.join(",", topics);
+        MultiplexedConnection current = connection;
+        if (current != null) {
+            current.setEventHandler(streamId, this::dispatchEvent);
+        }
+        return exchange(Protocol.SUBSCRIBE, subscribedTopics);
+    }
+
+    /**
+     * Hands a pushed event to the listener.
+     */
+    private void dispatchEvent(BinaryCodec.Response response) {
+        Consumer<Event> listener = eventListener;
+        if (listener == null) {
+            return;
+        }
+        String body = response.body();
+        int newline = body.indexOf('\n');
+        Event event = newline < 0 ? new Event(body, "")
+                : new Event(body.substring(0, newline), body.substring(newline + 1));
+        eventExecutor.execute(() -> listener.accept(event));
+    }
+
+    /**
+     * Moves a pooled session onto a new connection after the old one was
+     * lost. The server forgot the session with the old connection, so
+     * compression, the login and the subscription are asked for again, in
+     * that order.
+     * 
+     * @param replacement The new connection, or null while there is none
+     */
+    void reattach(MultiplexedConnection replacement) {
+        connection = replacement;
+        if (replacement == null) {
+            return;
+        }
+        if (compression) {
+            replacement.send(streamId, Protocol.USE_COMPRESSION);
+        }
+        String[] login = loginFields;
+        CompletableFuture<?> ready = login == null ? CompletableFuture.completedFuture(null)
+                : replacement.send(streamId, Protocol.LOGIN, login);
+        String topics = subscribedTopics;
+        if (topics != null) {
+            replacement.setEventHandler(streamId, this::dispatchEvent);
+            ready.whenComplete((response, failure) -> replacement.send(streamId, Protocol.SUBSCRIBE, topics));
+        }
+    }
+
+    /**
+     * Gets the binary connection, failing if a pooled session has none.
+     */
+    private MultiplexedConnection requireConnection() throws IOException {
+        MultiplexedConnection current = connection;
+        if (current == null) {
+            throw new IOException("Not connected to server");
+        }
+        return current;
+    }
+
+    /**
+     * Uploads a resume file in chunks, so the file is never held in memory or
+     * sent as one huge line. With the binary protocol chunks are sent as raw
+     * bytes and several are kept in flight at once; with the text protocol
+     * each chunk is Base64 encoded and sent in turn.
+     * 
+     * @param file The resume file
+     * @return The upload ID to send with an application
+     * @throws IOException If the file can't be read or the server rejects the
+     *                     upload
+     */
+    public String uploadResume(File file) throws IOException {
+        String uploadId = expectSuccess(sendCommand(Protocol.BEGIN_RESUME_UPLOAD)).trim();
+        uploadId = uploadId.substring(uploadId.lastIndexOf(' ') + 1);
+        byte[] idBytes = uploadId.getBytes(StandardCharsets.UTF_8);
+
+        Queue<CompletableFuture<BinaryCodec.Response>> inFlight = new ArrayDeque<>();
+        byte[] buffer = new byte[RESUME_CHUNK_SIZE];
+        long offset = 0;
+        try (InputStream fileIn = new FileInputStream(file)) {
+            int read;
+            while ((read = fileIn.read(buffer)) > 0) {
+                if (binary) {
+                    if (inFlight.size() == MAX_CHUNKS_IN_FLIGHT) {
+                        expectSuccess(await(inFlight.remove()).body());
+                    }
+                    byte[] offsetBytes = Long.toString(offset).getBytes(StandardCharsets.UTF_8);
+                    byte[] chunk = Arrays.copyOf(buffer, read);
+                    inFlight.add(requireConnection().send(correlationId -> BinaryCodec.encodeRawRequest(
+                            correlationId, streamId, Protocol.UPLOAD_RESUME_CHUNK, idBytes, offsetBytes, chunk)));
+                } else {
+                    expectSuccess(sendCommandWithFields(Protocol.UPLOAD_RESUME_CHUNK, uploadId,
+                            Long.toString(offset), Base64.getEncoder().encodeToString(Arrays.copyOf(buffer, read))));
+                }
+                offset += read;
+            }
+        }
+        while (!inFlight.isEmpty()) {
+            expectSuccess(await(inFlight.remove()).body());
+        }
+
+        expectSuccess(sendCommandWithFields(Protocol.FINISH_RESUME_UPLOAD, uploadId, Long.toString(offset)));
+        return uploadId;
+    }
+
+    /**
+     * Downloads an application's resume. With the binary protocol the server
+     * sends the raw bytes; with the text protocol they arrive Base64 encoded.
+     * 
+     * @param applicationId The application ID
+     * @return The resume's bytes
+     * @throws IOException If the server can't provide the resume
+     */
+    public byte[] downloadResume(String applicationId) throws IOException {
+        if (!binary) {
+            String response = expectSuccess(sendCommandWithFields(Protocol.GET_RESUME, applicationId));
+            try {
+                return Base64.getDecoder().decode(response.trim());
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Invalid resume from server");
+            }
+        }
+
+        BinaryCodec.Response response = await(
+                requireConnection().send(streamId, Protocol.GET_RESUME, applicationId));
+        if (response.code != Protocol.SUCCESS) {
+            throw new IOException(response.body().trim());
+        }
+        return response.rawBody;
+    }
+
+    /**
+     * Gets a binary response's text, ending with '\n' like text protocol
+     * responses.
+     */
+    private static String text(BinaryCodec.Response response) {
+        String body = response.body();
+        return body.endsWith("\n") ? body : body + "\n";
+    }
+
+    /**
+     * Turns an error response into an exception.
+     */
+    private static String expectSuccess(String response) throws IOException {
+        if (response.regionMatches(true, 0, "ERROR", 0, 5)) {
+            throw new IOException(response.trim());
+        }
+        return response;
+    }
+
+    /**
+     * Waits for a binary response.
+     */
+    private static <T> T await(CompletableFuture<T> response) throws IOException {
+        try {
+            return response.get();
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the server");
+        }
+    }
+
+    /**
+     * Sends one binary request frame and waits for its response.
+     */
+    private String exchange(int command, String... fields) {
+        try {
+            return sendAsync(command, fields).get();
+        } catch (ExecutionException e) {
+            System.err.println("Error communicating with server: " + e.getCause().getMessage());
+            return "ERROR: " + e.getCause().getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "ERROR: Interrupted while waiting for the server";
+        }
+    }
+
     /**
      * Closes the connection to the server
      */
     public void close() {
+        synchronized (this) {
+            if (eventExecutor != null) {
+                eventExecutor.shutdown();
+            }
+        }
+        MultiplexedConnection current = connection;
+        if (pool != null) {
+            // Step 1: Let the server forget this stream; the connection stays open for other sessions
+            if (current != null) {
+                current.setEventHandler(streamId, null);
+                current.send(streamId, Protocol.CLOSE_STREAM);
+            }
+            pool.release(this);
+            return;
+        }
+
+        // Step 2: A connection of our own is closed along with the session
+        if (current != null) {
+            current.close();
+        }
         try {
             if (out != null)
                 out.close();
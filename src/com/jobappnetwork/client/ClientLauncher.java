@@ -1,5 +1,6 @@
 package com.jobappnetwork.client;
 
+import com.jobappnetwork.protocol.Protocol;
 import java.util.Scanner;
 import java.util.UUID;
 
@@ -39,6 +40,9 @@ public class ClientLauncher {
                 // jobSeekerId);
 
                 ClientInteraction clientInteraction = new ClientInteraction();
+                // Prefer the binary protocol; older servers keep us on text
+                clientInteraction.useBinaryProtocol();
+                clientInteraction.login(jobSeekerId, Protocol.ROLE_JOB_SEEKER);
                 jobSeeker.showMenu(clientInteraction);
                 clientInteraction.close();
                 break;
@@ -51,6 +55,8 @@ public class ClientLauncher {
                 // + hiringManagerId);
 
                 ClientInteraction hmClientInteraction = new ClientInteraction();
+                hmClientInteraction.useBinaryProtocol();
+                hmClientInteraction.login(hiringManagerId, Protocol.ROLE_HIRING_MANAGER);
                 hiringManager.showMenu(hmClientInteraction);
                 hmClientInteraction.close();
                 break;
@@ -1,6 +1,9 @@
 package com.jobappnetwork.client;
 
 import com.jobappnetwork.protocol.Protocol;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Scanner;
@@ -11,6 +14,9 @@ import java.util.Scanner;
  * application.
  */
 public class HiringManager {
+    // Candidates listed when matching a job
+    private static final int MATCH_COUNT = 10;
+
     private String id;
     private String fullName;
     private List<String> jobPostings; // List of job posting IDs
@@ -42,7 +48,11 @@ public class HiringManager {
             System.out.println("2. View Applications");
             System.out.println("3. Accept an Application");
             System.out.println("4. Reject an Application");
-            System.out.println("5. Disconnect from the server");
+            System.out.println("5. View Applications for a Job");
+            System.out.println("6. Accept/Reject Multiple Applications");
+            System.out.println("7. Download an Applicant's Resume");
+            System.out.println("8. Find Candidates Matching a Job");
+            System.out.println("9. Disconnect from the server");
             System.out.print("Enter your choice: ");
 
             int choice = getIntInput();
@@ -61,6 +71,18 @@ public class HiringManager {
                     rejectApplication(clientInteraction);
                     break;
                 case 5:
+                    viewJobApplications(clientInteraction);
+                    break;
+                case 6:
+                    triageApplications(clientInteraction);
+                    break;
+                case 7:
+                    downloadResume(clientInteraction);
+                    break;
+                case 8:
+                    matchCandidates(clientInteraction);
+                    break;
+                case 9:
                     exit = true;
                     break;
                 default:
@@ -96,8 +118,8 @@ public class HiringManager {
         System.out.print("Enter salary range: ");
         String salaryRange = scanner.nextLine();
 
-        // Format job data for transmission
-        String jobData = String.format("%s|%s|%s|%s|%s|%s",
+        // Send the job fields; the order matches the server's parts[0..5]
+        String response = clientInteraction.sendCommandWithFields(Protocol.POST_JOB,
                 jobTitle, // parts[0] - title
                 companyName, // parts[1] - company
                 description, // parts[2] - description
@@ -106,11 +128,6 @@ public class HiringManager {
                 salaryRange // parts[5] - salary
         );
 
-        // System.out.println("Debug - Sending job data: " + jobData);
-
-        // Send the job data directly without sending a separate command first
-        String response = clientInteraction.sendCommandWithData(Protocol.POST_JOB, jobData);
-
         // Display the response
         System.out.println(response);
     }
@@ -131,6 +148,44 @@ public class HiringManager {
         System.out.println(response);
     }
 
+    /**
+     * Lists the job seekers whose skills best match one job posting.
+     * 
+     * @param clientInteraction The client interaction object to communicate with
+     *                          the server
+     */
+    private void matchCandidates(ClientInteraction clientInteraction) {
+        System.out.println("\n===== FIND MATCHING CANDIDATES =====");
+
+        System.out.print("Enter job ID: ");
+        String jobId = scanner.nextLine();
+
+        // Ranked by how many of the job's skills each job seeker has
+        String response = clientInteraction.sendCommandWithFields(Protocol.MATCH_APPLICANTS, jobId,
+                String.valueOf(MATCH_COUNT));
+
+        // Display the response
+        System.out.println(response);
+    }
+
+    /**
+     * Allows the hiring manager to view the applications for one job posting.
+     * 
+     * @param clientInteraction The client interaction object to communicate with
+     *                          the server
+     */
+    private void viewJobApplications(ClientInteraction clientInteraction) {
+        System.out.println("\n===== VIEW APPLICATIONS FOR A JOB =====");
+
+        System.out.print("Enter job ID: ");
+        String jobId = scanner.nextLine();
+
+        String response = clientInteraction.sendCommandWithData(Protocol.VIEW_JOB_APPLICATIONS, jobId);
+
+        // Display the response
+        System.out.println(response);
+    }
+
     /**
      * Allows the hiring manager to accept an application.
      * 
@@ -173,6 +228,61 @@ public class HiringManager {
         System.out.println(response);
     }
 
+    /**
+     * Allows the hiring manager to accept or reject many applications at once.
+     * 
+     * @param clientInteraction The client interaction object to communicate with
+     *                          the server
+     */
+    private void triageApplications(ClientInteraction clientInteraction) {
+        System.out.println("\n===== ACCEPT/REJECT MULTIPLE APPLICATIONS =====");
+
+        System.out.print("Enter application IDs (comma-separated): ");
+        String applicationIds = scanner.nextLine();
+
+        System.out.print("Accept (1) or reject (2) these applications? ");
+        int choice = getIntInput();
+        int command;
+        if (choice == 1) {
+            command = Protocol.BULK_ACCEPT_APPLICATIONS;
+        } else if (choice == 2) {
+            command = Protocol.BULK_REJECT_APPLICATIONS;
+        } else {
+            System.out.println("Invalid choice. Returning to menu.");
+            return;
+        }
+
+        // All IDs go in one request; the server reports each one separately
+        String response = clientInteraction.sendCommandWithFields(command, applicationIds);
+
+        // Display the response
+        System.out.println(response);
+    }
+
+    /**
+     * Allows the hiring manager to save an applicant's resume to a file.
+     * 
+     * @param clientInteraction The client interaction object to communicate with
+     *                          the server
+     */
+    private void downloadResume(ClientInteraction clientInteraction) {
+        System.out.println("\n===== DOWNLOAD RESUME =====");
+
+        System.out.print("Enter application ID: ");
+        String applicationId = scanner.nextLine();
+
+        System.out.print("Enter the path to save the resume to: ");
+        String filePath = scanner.nextLine();
+
+        try {
+            byte[] resume = clientInteraction.downloadResume(applicationId);
+            Files.write(Paths.get(filePath), resume);
+            System.out.println("Resume saved (" + resume.length + " bytes).");
+        } catch (IOException e) {
+            System.out.println("Error downloading resume: " + e.getMessage());
+        }
+    }
+
     /**
      * Helper method to get integer input from the user
      */
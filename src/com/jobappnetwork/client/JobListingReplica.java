@@ -0,0 +1,116 @@
+package com.jobappnetwork.client;
+
+import com.jobappnetwork.protocol.Protocol;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A local copy of the server's job postings, kept up to date with
+ * SYNC_CHANGES. The first sync fetches every posting; after that each sync
+ * fetches only what changed since the last one, so refreshing the listing
+ * costs in proportion to the changes rather than the whole catalog.
+ */
+public class JobListingReplica {
+    // Postings by job number, so the listing keeps the server's order
+    private final Map<Integer, String> postings = new TreeMap<>();
+    // The server's sequence number as of the last sync; 0 asks for everything
+    private long sequence;
+
+    /**
+     * Fetches the changes since the last sync and applies them.
+     *
+     * @param clientInteraction The connection to the server
+     * @return The status changes the sync brought, as
+     *         applicationId|jobId|status lines, or null if the sync failed
+     */
+    public synchronized List<String> sync(ClientInteraction clientInteraction) {
+        String response = clientInteraction.sendCommandWithData(Protocol.SYNC_CHANGES, Long.toString(sequence));
+        String[] lines = response.split("\n");
+        if (lines.length < 2 || !lines[0].startsWith("Sequence: ")) {
+            return null;
+        }
+        long next;
+        try {
+            next = Long.parseLong(lines[0].substring("Sequence: ".length()).trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        if (lines[1].equals("Full Sync")) {
+            postings.clear();
+        } else if (!lines[1].startsWith("Changes: ")) {
+            return null;
+        }
+
+        // Step 1: Each entry is its type on one line, then its details up to the next type
+        List<String> statusChanges = new ArrayList<>();
+        int i = 2;
+        while (i < lines.length) {
+            String type = lines[i++];
+            StringBuilder text = new StringBuilder();
+            while (i < lines.length && !isEntryType(lines[i])) {
+                if (text.length() > 0) {
+                    text.append("\n");
+                }
+                text.append(lines[i++]);
+            }
+
+            // Step 2: Apply the entry; a posting seen twice replaces itself
+            if (Protocol.EVENT_JOB_POSTED.equals(type)) {
+                Integer jobNumber = jobNumber(text.toString());
+                if (jobNumber != null) {
+                    postings.put(jobNumber, text.toString());
+                }
+            } else if (Protocol.EVENT_STATUS_CHANGED.equals(type)) {
+                statusChanges.add(text.toString());
+            }
+        }
+        sequence = next;
+        return statusChanges;
+    }
+
+    private static boolean isEntryType(String line) {
+        return Protocol.EVENT_JOB_POSTED.equals(line) || Protocol.EVENT_STATUS_CHANGED.equals(line);
+    }
+
+    /**
+     * Gets the number in a posting's "ID: JOB12" line.
+     */
+    private static Integer jobNumber(String posting) {
+        if (!posting.startsWith("ID: JOB")) {
+            return null;
+        }
+        int end = posting.indexOf('\n');
+        try {
+            return Integer.valueOf(posting.substring("ID: JOB".length(), end < 0 ? posting.length() : end).trim());
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Renders the listing the way the server renders VIEW_JOBS.
+     *
+     * @return The job listing
+     */
+    public synchronized String getListing() {
+        if (postings.isEmpty()) {
+            return "No job postings available";
+        }
+        StringBuilder listing = new StringBuilder("Available Jobs:\n");
+        for (String posting : postings.values()) {
+            listing.append(posting).append("\n");
+        }
+        return listing.toString();
+    }
+
+    /**
+     * Gets the number of postings in the copy.
+     *
+     * @return The number of postings
+     */
+    public synchronized int size() {
+        return postings.size();
+    }
+}
@@ -2,24 +2,30 @@ package com.jobappnetwork.client;
 
 import com.jobappnetwork.protocol.Protocol;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.util.Base64;
 
 /**
  * Represents a job seeker on the app.
  * This class contains methods for job seekers to interact with the application.
  */
 public class JobSeeker {
+    // Results shown per page of a job search
+    private static final int SEARCH_PAGE_SIZE = 10;
+
     private String id;
     private String fullName;
     private String resume;
     private List<String> skills; // List of job seeker's skills
     private List<String> applications; // List of application IDs
     private Scanner scanner;
+    // Local copy of the job postings, refreshed with only what changed
+    private final JobListingReplica listings = new JobListingReplica();
+    // Whether status changes are pushed, rather than picked up when syncing
+    private boolean subscribed;
 
     /**
      * Creates a new JobSeeker
@@ -42,12 +48,19 @@ public class JobSeeker {
     public void showMenu(ClientInteraction clientInteraction) {
         boolean exit = false;
 
+        // Have new postings and status changes pushed instead of polling for them
+        subscribed = !clientInteraction.subscribe(this::showNotification).startsWith("ERROR");
+
         while (!exit) {
             System.out.println("\n===== JOB SEEKER MENU =====");
             System.out.println("1. View Available Jobs");
             System.out.println("2. Apply to a Job");
             System.out.println("3. View My Applications");
-            System.out.println("4. Disconnect from the server");
+            System.out.println("4. Search Jobs");
+            System.out.println("5. Filter Jobs");
+            System.out.println("6. Update My Skills");
+            System.out.println("7. View Jobs Matching My Skills");
+            System.out.println("8. Disconnect from the server");
             System.out.print("Enter your choice: ");
 
             int choice = getIntInput();
@@ -63,6 +76,18 @@ public class JobSeeker {
                     viewMyApplications(clientInteraction);
                     break;
                 case 4:
+                    searchJobs(clientInteraction);
+                    break;
+                case 5:
+                    filterJobs(clientInteraction);
+                    break;
+                case 6:
+                    updateSkills(clientInteraction);
+                    break;
+                case 7:
+                    viewMatchingJobs(clientInteraction);
+                    break;
+                case 8:
                     exit = true;
                     break;
                 default:
@@ -79,24 +104,134 @@ public class JobSeeker {
      */
     private void viewJobs(ClientInteraction clientInteraction) {
         System.out.println("\n===== AVAILABLE JOBS =====");
-        // Send request to view jobs
-        // System.out.println("Debug - JobSeeker: Sending VIEW_JOBS command (" +
-        // Protocol.VIEW_JOBS + ")");
-        String response = clientInteraction.sendCommand(Protocol.VIEW_JOBS);
-        // System.out.println("Debug - JobSeeker: Received response from server");
-
-        // Display the response with proper formatting
-        if (response != null && !response.trim().isEmpty()) {
-            System.out.println("\n" + response);
-        } else {
-            System.out.println("\nNo jobs are currently available.");
+        // Fetch only the postings and status changes since the last view
+        List<String> statusChanges = listings.sync(clientInteraction);
+        if (statusChanges == null) {
+            System.out.println("\nCould not refresh the job listings.");
+        } else if (!subscribed) {
+            for (String change : statusChanges) {
+                showNotification(new ClientInteraction.Event(Protocol.EVENT_STATUS_CHANGED, change));
+            }
         }
 
+        // Display the listings with proper formatting
+        System.out.println("\n" + listings.getListing());
+
         // Add a pause to let user read the listings
         System.out.println("\nPress Enter to continue...");
         scanner.nextLine();
     }
 
+    /**
+     * Searches the job postings by keyword, one page at a time.
+     * 
+     * @param clientInteraction The client interaction object to communicate with
+     *                          the server
+     */
+    private void searchJobs(ClientInteraction clientInteraction) {
+        System.out.println("\n===== SEARCH JOBS =====");
+        System.out.print("Enter keywords (title, skills, company...): ");
+        String keywords = scanner.nextLine();
+
+        showPages(clientInteraction, Protocol.SEARCH_JOBS, keywords);
+    }
+
+    /**
+     * Filters the job postings by location, company and salary range, one
+     * page at a time. Blank answers match everything.
+     * 
+     * @param clientInteraction The client interaction object to communicate with
+     *                          the server
+     */
+    private void filterJobs(ClientInteraction clientInteraction) {
+        System.out.println("\n===== FILTER JOBS =====");
+        System.out.println("(Leave a field blank to match any value)");
+        System.out.print("Location: ");
+        String location = scanner.nextLine();
+        System.out.print("Company: ");
+        String company = scanner.nextLine();
+        System.out.print("Minimum salary (e.g. 80k): ");
+        String minSalary = scanner.nextLine();
+        System.out.print("Maximum salary (e.g. 120k): ");
+        String maxSalary = scanner.nextLine();
+
+        showPages(clientInteraction, Protocol.FILTER_JOBS, location, company, minSalary, maxSalary);
+    }
+
+    /**
+     * Replaces the job seeker's skills, here and on the server.
+     * 
+     * @param clientInteraction The client interaction object to communicate with
+     *                          the server
+     */
+    private void updateSkills(ClientInteraction clientInteraction) {
+        System.out.println("\n===== UPDATE MY SKILLS =====");
+        if (!skills.isEmpty()) {
+            System.out.println("Current skills: " + String.join(", ", skills));
+        }
+        System.out.print("Enter your skills, separated by commas: ");
+        String line = scanner.nextLine();
+
+        skills.clear();
+        for (String skill : line.split(",")) {
+            if (!skill.trim().isEmpty()) {
+                addSkill(skill.trim());
+            }
+        }
+        String response = clientInteraction.sendCommandWithFields(Protocol.SET_SKILLS, id,
+                String.join(",", skills));
+        System.out.println(response);
+    }
+
+    /**
+     * Lists the job postings that best match the job seeker's skills.
+     * 
+     * @param clientInteraction The client interaction object to communicate with
+     *                          the server
+     */
+    private void viewMatchingJobs(ClientInteraction clientInteraction) {
+        System.out.println("\n===== JOBS MATCHING MY SKILLS =====");
+        String response = clientInteraction.sendCommandWithFields(Protocol.MATCH_JOBS, id,
+                String.valueOf(SEARCH_PAGE_SIZE));
+        System.out.println("\n" + response);
+    }
+
+    /**
+     * Shows the results of a paged command, fetching the next page for as
+     * long as there is one and the user wants it.
+     * 
+     * @param clientInteraction The client interaction object to communicate with
+     *                          the server
+     * @param command           The command to send
+     * @param criteria          The command's fields before the offset and page
+     *                          size
+     */
+    private void showPages(ClientInteraction clientInteraction, int command, String... criteria) {
+        String[] fields = Arrays.copyOf(criteria, criteria.length + 2);
+        fields[fields.length - 1] = String.valueOf(SEARCH_PAGE_SIZE);
+
+        String offset = "0";
+        while (offset != null) {
+            fields[fields.length - 2] = offset;
+            String response = clientInteraction.sendCommandWithFields(command, fields);
+            System.out.println("\n" + response);
+
+            // The server ends the page with the offset of the next one, if any
+            offset = null;
+            for (String line : response.split("\n")) {
+                if (line.startsWith("Next Offset: ")) {
+                    offset = line.substring("Next Offset: ".length()).trim();
+                }
+            }
+            if (offset != null) {
+                System.out.print("Show more results? (y/n): ");
+                if (!scanner.nextLine().trim().equalsIgnoreCase("y")) {
+                    offset = null;
+                }
+            }
+        }
+    }
+
     /**
      * Allows the job seeker to apply to a job.
      * 
@@ -129,17 +264,12 @@ public class JobSeeker {
                     return;
                 }
 
-                // Read the file and convert to Base64
-                FileInputStream fileInputStream = new FileInputStream(resumeFile);
-                byte[] fileBytes = new byte[(int) resumeFile.length()];
-                fileInputStream.read(fileBytes);
-                fileInputStream.close();
-
-                // Convert to Base64
-                resumeContent = Base64.getEncoder().encodeToString(fileBytes);
+                // Stream the file to the server in chunks, then refer to it by ID
+                String uploadId = clientInteraction.uploadResume(resumeFile);
+                resumeContent = Protocol.UPLOADED_RESUME_PREFIX + uploadId;
                 System.out.println("Resume file uploaded successfully.");
             } catch (IOException e) {
-                System.out.println("Error reading file: " + e.getMessage());
+                System.out.println("Error uploading file: " + e.getMessage());
                 return;
             }
         } else if (resumeChoice == 2) {
@@ -157,16 +287,43 @@ public class JobSeeker {
         }
 
         // Send the application data
-        // Format: jobId|applicantId|resume
-        String applicationData = jobId + "|" + id + "|" + resumeContent;
+        // Fields: jobId, applicantId, resume
         // System.out.println("Debug - JobSeeker: Sending application data with jobId: "
         // + jobId + ", applicantId: " + id);
-        String response = clientInteraction.sendCommandWithData(Protocol.APPLY_TO_JOB, applicationData);
+        String response = clientInteraction.sendCommandWithFields(Protocol.APPLY_TO_JOB, jobId, id, resumeContent);
+
+        // Remember the application so its status changes are shown
+        String marker = "with ID: ";
+        if (response.contains(marker)) {
+            applications.add(response.substring(response.indexOf(marker) + marker.length()).trim());
+        }
 
         // Display the response
         System.out.println(response);
     }
 
+    /**
+     * Shows an event pushed by the server: a new job posting, or a status
+     * change on one of this job seeker's applications (the server only sends
+     * a logged in job seeker their own).
+     * 
+     * @param event The event
+     */
+    private void showNotification(ClientInteraction.Event event) {
+        if (Protocol.EVENT_JOB_POSTED.equals(event.getType())) {
+            System.out.println("\n[Notification] New job posted:\n" + event.getText());
+        } else if (Protocol.EVENT_STATUS_CHANGED.equals(event.getType())) {
+            // applicationId|jobId|status
+            String[] change = event.getText().split("\\|");
+            if (change.length == 3) {
+                System.out.println("\n[Notification] Your application " + change[0] + " for " + change[1]
+                        + " is now " + change[2]);
+            }
+        } else if (Protocol.EVENT_DROPPED.equals(event.getType())) {
+            System.out.println("\n[Notification] " + event.getText());
+        }
+    }
+
     /**
      * Displays all applications submitted by the job seeker.
      * 
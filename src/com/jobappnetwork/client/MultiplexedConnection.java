@@ -0,0 +1,245 @@
+package com.jobappnetwork.client;
+
+import com.jobappnetwork.protocol.BinaryCodec;
+import com.jobappnetwork.protocol.Protocol;
+import com.jobappnetwork.protocol.ResponseCompression;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * A binary protocol connection that any number of sessions can share, each
+ * on its own stream. Requests from every stream may be in flight at once;
+ * a reader thread matches responses to requests by correlation ID and hands
+ * pushed events to the handler registered for their stream. Compressed
+ * responses are inflated before they are handed over.
+ */
+class MultiplexedConnection {
+    private final Socket socket;
+    private final DataInputStream in;
+    private final OutputStream out;
+    private final AtomicInteger nextCorrelationId = new AtomicInteger();
+    // Requests waiting for a response, by correlation ID
+    private final Map<Integer, CompletableFuture<BinaryCodec.Response>> pending = new ConcurrentHashMap<>();
+    // Receives pushed events, by stream ID
+    private final Map<Integer, Consumer<BinaryCodec.Response>> eventHandlers = new ConcurrentHashMap<>();
+    // Called once when the connection is lost or closed
+    private final Runnable onClose;
+    private volatile boolean closed;
+    private volatile boolean readerDone;
+
+    /**
+     * Takes over a socket that has already switched to the binary protocol
+     * and starts reading responses.
+     *
+     * @param socket  The connected socket
+     * @param onClose Called once when the connection ends, or null
+     * @throws IOException If the socket's streams can't be opened
+     */
+    MultiplexedConnection(Socket socket, Runnable onClose) throws IOException {
+        this.socket = socket;
+        this.in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+        this.out = new BufferedOutputStream(socket.getOutputStream());
+        this.onClose = onClose;
+
+        Thread reader = new Thread(this::readResponses, "ClientInteraction-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Connects to a server and switches the connection to the binary
+     * protocol.
+     *
+     * @param host          The server's host name or address
+     * @param port          The server's port
+     * @param timeoutMillis How long to wait for the connection and the switch
+     * @param onClose       Called once when the connection ends, or null
+     * @return The connection
+     * @throws IOException If the server can't be reached or doesn't speak the
+     *                     binary protocol
+     */
+    static MultiplexedConnection connect(String host, int port, int timeoutMillis, Runnable onClose)
+            throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), timeoutMillis);
+            socket.setSoTimeout(timeoutMillis);
+            socket.setTcpNoDelay(true);
+            PrintWriter textOut = new PrintWriter(socket.getOutputStream(), true);
+            textOut.println(Protocol.USE_BINARY_PROTOCOL);
+
+            // Read the reply a byte at a time, so nothing after it is buffered
+            String reply = readLine(socket);
+            String end = readLine(socket);
+            if (!BinaryCodec.SWITCH_CONFIRMATION.equals(reply) || !"END_RESPONSE".equals(end)) {
+                throw new IOException("Server does not support the binary protocol: " + reply);
+            }
+            socket.setSoTimeout(0);
+            return new MultiplexedConnection(socket, onClose);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    private static String readLine(Socket socket) throws IOException {
+        InputStream reader = socket.getInputStream();
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = reader.read()) != -1 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        if (c == -1) {
+            throw new IOException("Connection closed by server");
+        }
+        return line.toString();
+    }
+
+    /**
+     * Sends a request without waiting for its response.
+     *
+     * @param encoder Encodes the request frame for the correlation ID it is given
+     * @return A future for the response, which fails if the connection is lost
+     */
+    CompletableFuture<BinaryCodec.Response> send(IntFunction<byte[]> encoder) {
+        int correlationId = nextCorrelationId.incrementAndGet();
+        if (correlationId == 0) {
+            // 0 marks pushed events
+            correlationId = nextCorrelationId.incrementAndGet();
+        }
+        CompletableFuture<BinaryCodec.Response> response = new CompletableFuture<>();
+        pending.put(correlationId, response);
+        try {
+            byte[] frame = encoder.apply(correlationId);
+            synchronized (out) {
+                out.write(frame);
+                out.flush();
+            }
+        } catch (IOException e) {
+            pending.remove(correlationId);
+            response.completeExceptionally(e);
+        }
+        if (readerDone && pending.remove(correlationId) != null) {
+            // The connection closed before a response could arrive
+            response.completeExceptionally(new IOException("Connection closed by server"));
+        }
+        return response;
+    }
+
+    /**
+     * Sends a request with text fields.
+     *
+     * @param streamId The stream the request belongs to
+     * @param command  The command code
+     * @param fields   The command's fields
+     * @return A future for the response
+     */
+    CompletableFuture<BinaryCodec.Response> send(int streamId, int command, String... fields) {
+        return send(correlationId -> BinaryCodec.encodeRequest(correlationId, streamId, command, fields));
+    }
+
+    /**
+     * Routes a stream's pushed events to a handler, replacing any earlier one.
+     *
+     * @param streamId The stream ID
+     * @param handler  Receives the stream's event frames on the reader thread;
+     *                 must not block, or null to stop receiving them
+     */
+    void setEventHandler(int streamId, Consumer<BinaryCodec.Response> handler) {
+        if (handler == null) {
+            eventHandlers.remove(streamId);
+        } else {
+            eventHandlers.put(streamId, handler);
+        }
+    }
+
+    /**
+     * Checks whether the connection can still carry requests.
+     *
+     * @return true until the connection is closed or lost
+     */
+    boolean isOpen() {
+        return !closed && !readerDone;
+    }
+
+    /**
+     * Reads responses and completes the matching requests until the
+     * connection closes.
+     */
+    private void readResponses() {
+        IOException failure = null;
+        try {
+            ByteBuffer frame;
+            while ((frame = BinaryCodec.readFrame(in)) != null) {
+                BinaryCodec.Response response = BinaryCodec.decodeResponse(frame);
+                if (response.code == Protocol.EVENT) {
+                    Consumer<BinaryCodec.Response> handler = eventHandlers.get(response.streamId);
+                    if (handler != null) {
+                        handler.accept(response);
+                    }
+                    continue;
+                }
+                CompletableFuture<BinaryCodec.Response> request = pending.remove(response.correlationId);
+                if (request == null) {
+                    continue;
+                }
+                if (response.code == Protocol.SUCCESS_DEFLATED) {
+                    try {
+                        response = new BinaryCodec.Response(response.correlationId, response.streamId,
+                                Protocol.SUCCESS, ResponseCompression.inflate(response.rawBody));
+                    } catch (IOException e) {
+                        // Only this response is lost; the frames around it are intact
+                        request.completeExceptionally(e);
+                        continue;
+                    }
+                }
+                request.complete(response);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+
+        if (failure == null || closed) {
+            failure = new IOException("Connection closed by server");
+        }
+        readerDone = true;
+        for (Integer correlationId : pending.keySet()) {
+            CompletableFuture<BinaryCodec.Response> request = pending.remove(correlationId);
+            if (request != null) {
+                request.completeExceptionally(failure);
+            }
+        }
+        close();
+        if (onClose != null) {
+            onClose.run();
+        }
+    }
+
+    /**
+     * Closes the connection; requests still waiting fail.
+     */
+    void close() {
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            System.err.println("Error closing connection: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.jobappnetwork.protocol;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+ * Binary framing for the Job Application Network protocol.
+ * A client switches to it by sending USE_BINARY_PROTOCOL as a text command;
+ * once the server confirms, every message on the connection is a frame.
+ *
+ * Every frame starts with a 4 byte length covering the rest of the frame,
+ * followed by a correlation ID (echoed back in the response) and a stream ID
+ * naming the logical session on the connection (0 is the connection's own).
+ * Each stream logs in and subscribes on its own, so many users can share one
+ * connection; CLOSE_STREAM ends a stream's session.
+ *
+ * Request:  length | correlationId | streamId | command | fieldCount (2 bytes)
+ *           | fieldCount x (fieldLength | bytes)
+ * Response: length | correlationId | streamId | code (SUCCESS or FAILURE)
+ *           | body (UTF-8 text, or the raw bytes of a GET_RESUME)
+ *
+ * Fields are length-prefixed, so they may contain '|' and newlines. Text
+ * fields are UTF-8; resume chunks are sent as raw bytes.
+ *
+ * After a SUBSCRIBE, the server may also push EVENT frames at any time. They
+ * carry correlation ID 0, which no request uses, and a body whose first line
+ * is the event type.
+ *
+ * After a USE_COMPRESSION, large successful responses may arrive with the
+ * code SUCCESS_DEFLATED and a compressed body (see ResponseCompression).
+ */
+public class BinaryCodec {
+
+    // Reply the server sends (in text) when it accepts the switch
+    public static final String SWITCH_CONFIRMATION = "Switched to binary protocol";
+
+    // Largest frame either side will accept
+    public static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+    // Buffer a frame body starts out in; it grows as the body arrives, so a
+    // length prefix alone can't make the reader allocate a large buffer
+    private static final int INITIAL_FRAME_BUFFER = 64 * 1024;
+
+    // Bytes in a frame header after the length prefix
+    private static final int REQUEST_HEADER = 4 + 4 + 4 + 2;
+    private static final int RESPONSE_HEADER = 4 + 4 + 4;
+
+    /*
+     * A decoded request frame. Fields are kept as bytes and decoded as text
+     * on demand, so binary fields (resume chunks) are never turned into strings
+     */
+    public static class Request {
+        public final int correlationId;
+        public final int streamId;
+        public final int command;
+        private final byte[][] rawFields;
+
+        public Request(int correlationId, int streamId, int command, byte[][] rawFields) {
+            this.correlationId = correlationId;
+            this.streamId = streamId;
+            this.command = command;
+            this.rawFields = rawFields;
+        }
+
+        public int fieldCount() {
+            return rawFields.length;
+        }
+
+        public byte[] rawField(int index) {
+            return rawFields[index];
+        }
+
+        public String field(int index) {
+            return new String(rawFields[index], StandardCharsets.UTF_8);
+        }
+
+        public String[] fields() {
+            String[] fields = new String[rawFields.length];
+            for (int i = 0; i < rawFields.length; i++) {
+                fields[i] = field(i);
+            }
+            return fields;
+        }
+    }
+
+    /*
+     * A decoded response frame. The body is kept as bytes, since a resume
+     * download is raw bytes rather than text
+     */
+    public static class Response {
+        public final int correlationId;
+        public final int streamId;
+        public final int code;
+        public final byte[] rawBody;
+
+        public Response(int correlationId, int streamId, int code, byte[] rawBody) {
+            this.correlationId = correlationId;
+            this.streamId = streamId;
+            this.code = code;
+            this.rawBody = rawBody;
+        }
+
+        public String body() {
+            return new String(rawBody, StandardCharsets.UTF_8);
+        }
+    }
+
+    /*
+     * Encodes a request frame, including its length prefix
+     *
+     * @param correlationId - ID echoed back in the response
+     * @param streamId - logical session the request belongs to
+     * @param command - protocol command code
+     * @param fields - the command's fields, in order
+     * @return the encoded frame
+     */
+    public static byte[] encodeRequest(int correlationId, int streamId, int command, String... fields) {
+        byte[][] encoded = new byte[fields.length][];
+        for (int i = 0; i < fields.length; i++) {
+            encoded[i] = fields[i].getBytes(StandardCharsets.UTF_8);
+        }
+        return encodeRawRequest(correlationId, streamId, command, encoded);
+    }
+
+    /*
+     * Encodes a request frame whose fields are raw bytes
+     *
+     * @param correlationId - ID echoed back in the response
+     * @param streamId - logical session the request belongs to
+     * @param command - protocol command code
+     * @param fields - the command's fields, in order
+     * @return the encoded frame
+     */
+    public static byte[] encodeRawRequest(int correlationId, int streamId, int command, byte[]... fields) {
+        if (fields.length > 0xFFFF) {
+            throw new IllegalArgumentException("Too many fields: " + fields.length);
+        }
+        int length = REQUEST_HEADER;
+        for (byte[] field : fields) {
+            length += 4 + field.length;
+        }
+
+        ByteBuffer frame = ByteBuffer.allocate(4 + length);
+        frame.putInt(length);
+        frame.putInt(correlationId);
+        frame.putInt(streamId);
+        frame.putInt(command);
+        frame.putShort((short) fields.length);
+        for (byte[] field : fields) {
+            frame.putInt(field.length);
+            frame.put(field);
+        }
+        return frame.array();
+    }
+
+    /*
+     * Decodes the body of a request frame (everything after the length prefix)
+     *
+     * @param frame - buffer positioned at the start of the frame body and
+     *                limited to its end
+     * @return the decoded request
+     * @throws IOException if the frame is malformed
+     */
+    public static Request decodeRequest(ByteBuffer frame) throws IOException {
+        try {
+            int correlationId = frame.getInt();
+            int streamId = frame.getInt();
+            int command = frame.getInt();
+            int fieldCount = frame.getShort() & 0xFFFF;
+            byte[][] fields = new byte[fieldCount][];
+            for (int i = 0; i < fieldCount; i++) {
+                int fieldLength = frame.getInt();
+                if (fieldLength < 0 || fieldLength > frame.remaining()) {
+                    throw new IOException("Invalid field length: " + fieldLength);
+                }
+                fields[i] = new byte[fieldLength];
+                frame.get(fields[i]);
+            }
+            return new Request(correlationId, streamId, command, fields);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated request frame");
+        }
+    }
+
+    /*
+     * Encodes a response frame, including its length prefix
+     *
+     * @param correlationId - correlation ID of the request being answered
+     * @param streamId - stream ID of the request being answered
+     * @param code - SUCCESS or FAILURE
+     * @param body - the response text
+     * @return the encoded frame
+     */
+    public static byte[] encodeResponse(int correlationId, int streamId, int code, String body) {
+        byte[] encodedBody = body.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer frame = ByteBuffer.allocate(4 + RESPONSE_HEADER + encodedBody.length);
+        frame.putInt(RESPONSE_HEADER + encodedBody.length);
+        frame.putInt(correlationId);
+        frame.putInt(streamId);
+        frame.putInt(code);
+        frame.put(encodedBody);
+        return frame.array();
+    }
+
+    /*
+     * Encodes just the header of a response frame whose body is written
+     * separately (raw bytes such as a resume)
+     *
+     * @param correlationId - correlation ID of the request being answered
+     * @param streamId - stream ID of the request being answered
+     * @param code - SUCCESS or FAILURE
+     * @param bodyLength - size of the body that follows, in bytes
+     * @return the encoded header, ready to write
+     */
+    public static ByteBuffer encodeResponseHeader(int correlationId, int streamId, int code, int bodyLength) {
+        ByteBuffer header = ByteBuffer.allocate(4 + RESPONSE_HEADER);
+        header.putInt(RESPONSE_HEADER + bodyLength);
+        header.putInt(correlationId);
+        header.putInt(streamId);
+        header.putInt(code);
+        header.flip();
+        return header;
+    }
+
+    /*
+     * Decodes the body of a response frame (everything after the length prefix)
+     *
+     * @param frame - buffer positioned at the start of the frame body and
+     *                limited to its end
+     * @return the decoded response
+     * @throws IOException if the frame is malformed
+     */
+    public static Response decodeResponse(ByteBuffer frame) throws IOException {
+        try {
+            int correlationId = frame.getInt();
+            int streamId = frame.getInt();
+            int code = frame.getInt();
+            byte[] body = new byte[frame.remaining()];
+            frame.get(body);
+            return new Response(correlationId, streamId, code, body);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated response frame");
+        }
+    }
+
+    /*
+     * Reads one length-prefixed frame body from a stream
+     *
+     * @param in - the stream to read from
+     * @return the frame body, or null if the stream ended before a new frame
+     * @throws IOException if the frame is too large or cut off
+     */
+    public static ByteBuffer readFrame(DataInputStream in) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length < 0 || length > MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        byte[] body = new byte[Math.min(length, INITIAL_FRAME_BUFFER)];
+        int received = 0;
+        while (received < length) {
+            if (received == body.length) {
+                body = Arrays.copyOf(body, (int) Math.min(length, 2L * body.length));
+            }
+            int read = in.read(body, received, body.length - received);
+            if (read < 0) {
+                throw new EOFException("Frame cut off after " + received + " of " + length + " bytes");
+            }
+            received += read;
+        }
+        return ByteBuffer.wrap(body);
+    }
+
+    /*
+     * Picks the response code for a response text; the server's messages
+     * report failures with an "ERROR"/"Error" prefix
+     *
+     * @param body - the response text
+     * @return SUCCESS or FAILURE
+     */
+    public static int codeFor(String body) {
+        return body.regionMatches(true, 0, "ERROR", 0, 5) ? Protocol.FAILURE : Protocol.SUCCESS;
+    }
+}
@@ -20,12 +20,33 @@ public class Protocol {
     public static final int VIEW_JOBS = 100;
     public static final int APPLY_TO_JOB = 101;
     public static final int VIEW_MY_APPLICATIONS = 102;
+    public static final int VIEW_SEEKER_APPLICATIONS = 103;
+    public static final int VIEW_JOBS_PAGE = 104;
+    public static final int BEGIN_RESUME_UPLOAD = 105;
+    public static final int UPLOAD_RESUME_CHUNK = 106;
+    public static final int FINISH_RESUME_UPLOAD = 107;
+    public static final int SEARCH_JOBS = 108;
+    public static final int FILTER_JOBS = 109;
+    public static final int SET_SKILLS = 110;
+    public static final int MATCH_JOBS = 111;
+    // Postings and status changes since a sequence number, for a client's copy
+    public static final int SYNC_CHANGES = 112;
+
+    // Prefix of an APPLY_TO_JOB resume field that names an uploaded resume
+    public static final String UPLOADED_RESUME_PREFIX = "upload:";
 
     // Hiring Manager Actions (200s)
     public static final int POST_JOB = 200;
     public static final int VIEW_APPLICATIONS = 201;
     public static final int ACCEPT_APPLICATION = 202;
     public static final int REJECT_APPLICATION = 203;
+    public static final int VIEW_JOB_APPLICATIONS = 204;
+    public static final int VIEW_APPLICATIONS_BY_STATUS = 205;
+    public static final int VIEW_APPLICATIONS_PAGE = 206;
+    public static final int BULK_ACCEPT_APPLICATIONS = 207;
+    public static final int BULK_REJECT_APPLICATIONS = 208;
+    public static final int GET_RESUME = 209;
+    public static final int MATCH_APPLICANTS = 210;
 
     // Job Application statuses (300s)
     public static final int STATUS_PENDING = 300;
@@ -35,6 +56,33 @@ public class Protocol {
     // Server codes (400s)
     public static final int SUCCESS = 400;
     public static final int FAILURE = 401;
+    // Unsolicited frame pushed to a subscribed connection (correlation ID 0)
+    public static final int EVENT = 402;
+    // A successful response whose body is compressed (see ResponseCompression)
+    public static final int SUCCESS_DEFLATED = 403;
+
+    // Event types, the first line of an EVENT frame's body
+    public static final String EVENT_JOB_POSTED = "JOB_POSTED";
+    public static final String EVENT_STATUS_CHANGED = "STATUS_CHANGED";
+    public static final String EVENT_DROPPED = "EVENTS_DROPPED";
+
+    // Connection control (500s)
+    public static final int USE_BINARY_PROTOCOL = 500;
+    public static final int SUBSCRIBE = 501;
+    public static final int LOGIN = 502;
+    // Admin report of server metrics, only answered on the server's own host
+    public static final int METRICS = 503;
+    // Health check, answered straight away even while the server is loading
+    public static final int PING = 504;
+    // Ends the session on a binary request's stream
+    public static final int CLOSE_STREAM = 505;
+    // Asks for large binary responses to be compressed on this connection
+    public static final int USE_COMPRESSION = 506;
+
+    // Highest command code, so tables indexed by code can be sized
+    public static final int MAX_COMMAND = USE_COMPRESSION;
+    // Returned by parseCommand for a line that isn't a command code
+    public static final int INVALID_COMMAND = -1;
 
     /*
      * Translate the integer codes into strings
@@ -47,18 +95,44 @@ public class Protocol {
             case SELECT_ROLE: return "SELECT_ROLE";
             case ROLE_JOB_SEEKER: return "ROLE_JOB_SEEKER";
             case ROLE_HIRING_MANAGER: return "ROLE_HIRING_MANAGER";
-            case VIEW_JOBS: return "SEARCH_JOBS";
+            case VIEW_JOBS: return "VIEW_JOBS";
             case APPLY_TO_JOB: return "APPLY_TO_JOB";
             case VIEW_MY_APPLICATIONS: return "VIEW_MY_APPLICATIONS";
+            case VIEW_SEEKER_APPLICATIONS: return "VIEW_SEEKER_APPLICATIONS";
+            case VIEW_JOBS_PAGE: return "VIEW_JOBS_PAGE";
+            case BEGIN_RESUME_UPLOAD: return "BEGIN_RESUME_UPLOAD";
+            case UPLOAD_RESUME_CHUNK: return "UPLOAD_RESUME_CHUNK";
+            case FINISH_RESUME_UPLOAD: return "FINISH_RESUME_UPLOAD";
+            case SEARCH_JOBS: return "SEARCH_JOBS";
+            case FILTER_JOBS: return "FILTER_JOBS";
+            case SET_SKILLS: return "SET_SKILLS";
+            case MATCH_JOBS: return "MATCH_JOBS";
+            case SYNC_CHANGES: return "SYNC_CHANGES";
             case POST_JOB: return "POST_JOB";
             case VIEW_APPLICATIONS: return "VIEW_APPLICATIONS";
             case ACCEPT_APPLICATION: return "ACCEPT_APPLICATION";
             case REJECT_APPLICATION: return "REJECT_APPLICATION";
+            case VIEW_JOB_APPLICATIONS: return "VIEW_JOB_APPLICATIONS";
+            case VIEW_APPLICATIONS_BY_STATUS: return "VIEW_APPLICATIONS_BY_STATUS";
+            case VIEW_APPLICATIONS_PAGE: return "VIEW_APPLICATIONS_PAGE";
+            case BULK_ACCEPT_APPLICATIONS: return "BULK_ACCEPT_APPLICATIONS";
+            case BULK_REJECT_APPLICATIONS: return "BULK_REJECT_APPLICATIONS";
+            case GET_RESUME: return "GET_RESUME";
+            case MATCH_APPLICANTS: return "MATCH_APPLICANTS";
             case STATUS_PENDING: return "STATUS_PENDING";
             case STATUS_ACCEPTED: return "STATUS_ACCEPTED";
             case STATUS_REJECTED: return "STATUS_REJECTED";
             case SUCCESS: return "RESPONSE_SUCCESS";
             case FAILURE: return "RESPONSE_FAILURE";
+            case EVENT: return "EVENT";
+            case SUCCESS_DEFLATED: return "RESPONSE_SUCCESS_DEFLATED";
+            case USE_BINARY_PROTOCOL: return "USE_BINARY_PROTOCOL";
+            case SUBSCRIBE: return "SUBSCRIBE";
+            case LOGIN: return "LOGIN";
+            case METRICS: return "METRICS";
+            case PING: return "PING";
+            case CLOSE_STREAM: return "CLOSE_STREAM";
+            case USE_COMPRESSION: return "USE_COMPRESSION";
             default: return "UNKNOWN_COMMAND (" + code + ")";
         }
     }
@@ -71,7 +145,71 @@ public class Protocol {
      */
     public static boolean isValidCommand(int code){
         // code should be in between any given state in the application 
-        return code >= WAITING && code <= FAILURE;
+        return code >= WAITING && code <= MAX_COMMAND;
+    }
+
+    /*
+     * Parses a command code straight from the bytes of a command line, so
+     * reading a command doesn't create a String. Accepts the lines
+     * Integer.parseInt would, except for a sign or a number far larger than
+     * any command
+     * 
+     * @param line - buffer holding the line
+     * @param offset - where the line starts
+     * @param length - length of the line without its terminator
+     * @return the command code, or INVALID_COMMAND if the line isn't a number
+     */
+    public static int parseCommand(byte[] line, int offset, int length){
+        if (length <= 0) {
+            return INVALID_COMMAND;
+        }
+        int code = 0;
+        for (int i = offset; i < offset + length; i++) {
+            int digit = line[i] - '0';
+            // Stop before the code could overflow
+            if (digit < 0 || digit > 9 || code > 99_999_999) {
+                return INVALID_COMMAND;
+            }
+            code = code * 10 + digit;
+        }
+        return code;
+    }
+
+    /*
+     * Splits a text command's data line into its fields. Gives the same
+     * fields as data.split("\\|"), trailing empty fields dropped, but
+     * without the intermediate list
+     * 
+     * @param data - the data line
+     * @return the fields, in order
+     */
+    public static String[] splitFields(String data){
+        int end = data.length();
+        if (data.indexOf('|') < 0) {
+            return new String[] { data };
+        }
+        // Trailing empty fields are dropped
+        while (end > 0 && data.charAt(end - 1) == '|') {
+            end--;
+        }
+        if (end == 0) {
+            return new String[0];
+        }
+        int count = 1;
+        for (int i = 0; i < end; i++) {
+            if (data.charAt(i) == '|') {
+                count++;
+            }
+        }
+        String[] fields = new String[count];
+        int start = 0;
+        for (int i = 0; i < count - 1; i++) {
+            int separator = data.indexOf('|', start);
+            fields[i] = data.substring(start, separator);
+            start = separator + 1;
+        }
+        fields[count - 1] = data.substring(start, end);
+        return fields;
     }
 
     /*
@@ -100,7 +238,9 @@ public class Protocol {
      * @return a list of available actions 
      */
     public static List<Integer> getJobSeekerActions(){
-            return Arrays.asList(VIEW_JOBS, APPLY_TO_JOB, VIEW_MY_APPLICATIONS);
+            return Arrays.asList(VIEW_JOBS, APPLY_TO_JOB, VIEW_MY_APPLICATIONS, VIEW_SEEKER_APPLICATIONS,
+                VIEW_JOBS_PAGE, BEGIN_RESUME_UPLOAD, UPLOAD_RESUME_CHUNK, FINISH_RESUME_UPLOAD, SEARCH_JOBS,
+                FILTER_JOBS, SET_SKILLS, MATCH_JOBS, SYNC_CHANGES);
     }
 
     /*
@@ -109,7 +249,9 @@ public class Protocol {
      * @return list of available actions for a hiring manager 
      */
     public static List<Integer> getHiringManagerCommands() {
-        return Arrays.asList(POST_JOB, VIEW_APPLICATIONS, ACCEPT_APPLICATION, REJECT_APPLICATION);
+        return Arrays.asList(POST_JOB, VIEW_APPLICATIONS, ACCEPT_APPLICATION, REJECT_APPLICATION,
+                VIEW_JOB_APPLICATIONS, VIEW_APPLICATIONS_BY_STATUS, VIEW_APPLICATIONS_PAGE,
+                BULK_ACCEPT_APPLICATIONS, BULK_REJECT_APPLICATIONS, GET_RESUME, MATCH_APPLICANTS);
     }
 
 }
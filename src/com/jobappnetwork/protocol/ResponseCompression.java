@@ -0,0 +1,125 @@
+package com.jobappnetwork.protocol;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/*
+ * Compression of binary protocol response bodies, used once a client has
+ * sent USE_COMPRESSION.
+ *
+ * Each body is deflated on its own, so responses can still be answered out
+ * of order and events interleaved between them. To make up for the lack of
+ * shared history between responses, both sides use a preset dictionary
+ * holding the labels every listing repeats ("Title: ", "Company: ",
+ * "Job Seeker ID: " ...), so even the first record compresses well.
+ *
+ * A compressed body is sent with the code SUCCESS_DEFLATED in place of
+ * SUCCESS. Errors and short bodies are always sent as they are.
+ */
+public class ResponseCompression {
+
+    // Bodies shorter than this aren't worth the client's time to inflate
+    public static final int MIN_LENGTH = 256;
+
+    // Deflaters kept for reuse; setting one up costs more than compressing
+    // a typical response
+    private static final int MAX_POOLED_DEFLATERS = Runtime.getRuntime().availableProcessors() * 2;
+    private static final Queue<Deflater> DEFLATERS = new ConcurrentLinkedQueue<>();
+    private static final AtomicInteger POOLED_DEFLATERS = new AtomicInteger();
+
+    // Strings later in the dictionary are cheaper to refer to, so the labels
+    // that repeat on every record come last
+    private static final byte[] DICTIONARY = ("No applications found for the current job seeker"
+            + "Next Offset: Next Cursor: Match: Job details not available (Job ID: "
+            + "Pending Applications:\nAccepted Applications:\nRejected Applications:\n"
+            + "All Applications:\nYour Applications:\nAvailable Jobs:\n"
+            + "\nJob Details:\nApplication ID: APP"
+            + "\nStatus: Pending\nStatus: Accepted\nStatus: Rejected\n\n-------------------\n"
+            + "\nJob Seeker ID: JS\nJob Posting ID: JOB"
+            + "ID: JOB\nTitle: Software Engineer\nCompany: \nLocation: Remote\nDescription: "
+            + "\nSkills: Java, Python, SQL\nSalary: $\nID: APP").getBytes(StandardCharsets.UTF_8);
+
+    /*
+     * Deflates a response body with the preset dictionary
+     *
+     * @param body - the encoded body
+     * @return the compressed body, or null if the body is too short or
+     *         doesn't get smaller
+     */
+    public static byte[] deflate(byte[] body) {
+        if (body.length < MIN_LENGTH) {
+            return null;
+        }
+        Deflater deflater = DEFLATERS.poll();
+        if (deflater == null) {
+            deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+        } else {
+            POOLED_DEFLATERS.decrementAndGet();
+        }
+        try {
+            deflater.setDictionary(DICTIONARY);
+            deflater.setInput(body);
+            deflater.finish();
+            ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(buffer);
+                compressed.write(buffer, 0, length);
+                if (compressed.size() >= body.length) {
+                    return null;
+                }
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.reset();
+            if (POOLED_DEFLATERS.incrementAndGet() <= MAX_POOLED_DEFLATERS) {
+                DEFLATERS.offer(deflater);
+            } else {
+                POOLED_DEFLATERS.decrementAndGet();
+                deflater.end();
+            }
+        }
+    }
+
+    /*
+     * Inflates a body sent with SUCCESS_DEFLATED
+     *
+     * @param compressed - the compressed body
+     * @return the original body
+     * @throws IOException if the body isn't valid deflate data
+     */
+    public static byte[] inflate(byte[] compressed) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            ByteArrayOutputStream body = new ByteArrayOutputStream(compressed.length * 4);
+            byte[] buffer = new byte[8192];
+            while (!inflater.finished()) {
+                int length = inflater.inflate(buffer);
+                if (length == 0) {
+                    if (inflater.needsDictionary()) {
+                        inflater.setDictionary(DICTIONARY);
+                    } else if (inflater.needsInput()) {
+                        throw new IOException("Truncated compressed response");
+                    }
+                }
+                body.write(buffer, 0, length);
+                if (body.size() > BinaryCodec.MAX_FRAME_LENGTH) {
+                    throw new IOException("Compressed response inflates beyond the frame limit");
+                }
+            }
+            return body.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IOException("Invalid compressed response: " + e.getMessage());
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.jobappnetwork.server;
+
+import java.util.List;
+
+/**
+ * The most recent durable changes, numbered by a change sequence, so clients
+ * that keep a copy of the job postings can fetch only what changed since
+ * they last synced.
+ *
+ * The log keeps a fixed number of changes; a client that fell further
+ * behind, or whose sequence number is from an earlier run of the server,
+ * has to start over from a full listing. Sequence numbers start from the
+ * time the log was created, scaled up, so numbers from an earlier run are
+ * always below the numbers of a later one.
+ */
+public class ChangeLog {
+    // Changes kept for clients to catch up on
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /**
+     * One change, in the same form it is pushed to subscribers in.
+     */
+    public static final class Change {
+        private final long sequence;
+        private final String type;
+        private final String text;
+        private final String jobSeekerId;
+
+        Change(long sequence, String type, String text, String jobSeekerId) {
+            this.sequence = sequence;
+            this.type = type;
+            this.text = text;
+            this.jobSeekerId = jobSeekerId;
+        }
+
+        /**
+         * Gets the change's sequence number.
+         *
+         * @return The sequence number
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        /**
+         * Gets the kind of change, one of Protocol's EVENT_ types.
+         *
+         * @return The change type
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Gets the change's details, as an event of its type carries them.
+         *
+         * @return The change text
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Checks whether a client may see the change. A status change is
+         * only shown to the job seeker it concerns, when one is logged in.
+         *
+         * @param jobSeekerId The logged in job seeker, or null for any other
+         *                    client
+         * @return true if the change may be sent to the client
+         */
+        public boolean isVisibleTo(String jobSeekerId) {
+            return this.jobSeekerId == null || jobSeekerId == null || this.jobSeekerId.equals(jobSeekerId);
+        }
+    }
+
+    private final Change[] changes;
+    // Sequence number before the first change
+    private final long base;
+    // Guarded by this log's lock
+    private long sequence;
+
+    /**
+     * Creates a log that keeps the given number of changes.
+     *
+     * @param capacity The number of changes kept
+     */
+    public ChangeLog(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.changes = new Change[capacity];
+        // A run would need over a million changes a millisecond to reach the next run's numbers
+        this.base = System.currentTimeMillis() << 20;
+        this.sequence = base;
+    }
+
+    /**
+     * Adds a change that has become durable, dropping the oldest one if the
+     * log is full.
+     *
+     * @param type        The kind of change, one of Protocol's EVENT_ types
+     * @param text        The change's details
+     * @param jobSeekerId The only job seeker who may see it, or null for all
+     * @return The change's sequence number
+     */
+    public synchronized long append(String type, String text, String jobSeekerId) {
+        long next = ++sequence;
+        changes[(int) ((next - base - 1) % changes.length)] = new Change(next, type, text, jobSeekerId);
+        return next;
+    }
+
+    /**
+     * Gets the sequence number of the latest change.
+     *
+     * @return The current sequence number
+     */
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Collects the changes made after a sequence number, oldest first.
+     *
+     * @param since   The sequence number the client has seen up to
+     * @param changed Receives the changes
+     * @return The sequence number the changes bring the client up to, or -1
+     *         if the log no longer holds every change after since (or never
+     *         did), in which case nothing is collected
+     */
+    public synchronized long since(long since, List<Change> changed) {
+        long oldest = Math.max(base + 1, sequence - changes.length + 1);
+        if (since < oldest - 1 || since > sequence) {
+            return -1;
+        }
+        for (long next = since + 1; next <= sequence; next++) {
+            changed.add(changes[(int) ((next - base - 1) % changes.length)]);
+        }
+        return sequence;
+    }
+}
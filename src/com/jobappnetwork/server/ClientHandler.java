@@ -1,9 +1,21 @@
 package com.jobappnetwork.server;
 
-import java.io.BufferedReader;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import com.jobappnetwork.protocol.BinaryCodec;
 import com.jobappnetwork.protocol.Protocol;
 
 /**
@@ -12,20 +24,73 @@ import com.jobappnetwork.protocol.Protocol;
  * passing them to the command processor, and sending responses back.
  */
 public class ClientHandler implements Runnable {
+    // Binary requests one connection may have in flight before we stop reading
+    private static final int MAX_PIPELINED_REQUESTS = 128;
+    // Longest text line accepted, the same bound the NIO engine puts on its input
+    private static final int MAX_LINE_LENGTH = BinaryCodec.MAX_FRAME_LENGTH;
+    // The line buffer starts at this size, and goes back to it after a long line
+    private static final int INITIAL_LINE_LENGTH = 256;
+    // Longest line whose buffer is kept for the lines after it
+    private static final int RETAINED_LINE_LENGTH = 64 * 1024;
+    // Returned by readLine for a line longer than MAX_LINE_LENGTH
+    private static final int LINE_TOO_LONG = -2;
+    // Writes pushed events, so a publisher never blocks on a slow socket. A
+    // fixed number of threads, so many slow subscribers can't each tie up a
+    // thread of their own; a subscription is queued at most once at a time
+    private static final int EVENT_WRITER_THREADS = Math.max(4, Runtime.getRuntime().availableProcessors());
+    private static final ExecutorService EVENT_WRITERS = Executors.newFixedThreadPool(EVENT_WRITER_THREADS, r -> {
+        Thread thread = new Thread(r, "event-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     private final Socket clientSocket;
     private final CommandProcessor commandProcessor;
-    private BufferedReader in;
+    private final ServerMetrics metrics;
+    // Runs pipelined binary requests; responses may complete out of order
+    private final Executor requestExecutor;
+    private final Semaphore pipelineSlots;
+    // Shared by both protocols, so frames sent right after the switch aren't lost
+    private BufferedInputStream in;
+    // Text lines are read into this buffer, which grows to fit the line
+    private byte[] line = new byte[INITIAL_LINE_LENGTH];
     private PrintWriter out;
+    // Framed responses are written straight to the socket in one write
+    private OutputStream rawOut;
+    // Drain state, guarded by this handler's lock
+    private int inFlight;
+    private boolean draining;
+    // Who each stream on the connection belongs to, and its subscription
+    private final StreamSessions streams;
+    // Set once the client sends USE_COMPRESSION
+    private volatile boolean compress;
 
     /**
      * Creates a new ClientHandler for the given client socket.
+     * Binary requests are executed one at a time on the handler's thread.
      * 
      * @param socket           The client's socket connection
      * @param commandProcessor The processor for handling commands
      */
     public ClientHandler(Socket socket, CommandProcessor commandProcessor) {
+        this(socket, commandProcessor, Runnable::run);
+    }
+
+    /**
+     * Creates a new ClientHandler that executes pipelined binary requests on the
+     * given executor.
+     * 
+     * @param socket           The client's socket connection
+     * @param commandProcessor The processor for handling commands
+     * @param requestExecutor  The executor for binary requests
+     */
+    public ClientHandler(Socket socket, CommandProcessor commandProcessor, Executor requestExecutor) {
         this.clientSocket = socket;
         this.commandProcessor = commandProcessor;
+        this.metrics = commandProcessor.getMetrics();
+        this.requestExecutor = requestExecutor;
+        this.pipelineSlots = new Semaphore(MAX_PIPELINED_REQUESTS);
+        this.streams = new StreamSessions(socket.getInetAddress().isLoopbackAddress());
     }
 
     /**
@@ -34,42 +99,76 @@ public class ClientHandler implements Runnable {
      */
     @Override
     public void run() {
+        metrics.connectionOpened();
         try {
             // Set up input and output streams
-            in = new BufferedReader(new java.io.InputStreamReader(clientSocket.getInputStream()));
-            out = new PrintWriter(clientSocket.getOutputStream(), true);
+            in = new BufferedInputStream(clientSocket.getInputStream());
+            rawOut = clientSocket.getOutputStream();
+            out = new PrintWriter(rawOut, true);
 
             // Print connection information
             System.out.println("New client connected: " + clientSocket.getInetAddress().getHostAddress() + ":"
                     + clientSocket.getPort());
             System.out.println("Client handler started for: " + clientSocket.getInetAddress().getHostName());
 
+            boolean switchToBinary = false;
+
             // Process commands until the client disconnects
             while (!clientSocket.isClosed()) {
-                // Read the command from the client
-                String commandStr = in.readLine();
+                // Read the command from the client, parsing it straight from the line buffer
+                int length = readLine();
                 // System.out.println("Debug - ClientHandler: Received command string: " +
-                // commandStr);
+                // new String(line, 0, length));
 
-                if (commandStr == null) {
+                if (length == LINE_TOO_LONG) {
+                    rejectLongLine();
+                    break;
+                }
+                if (length < 0) {
                     // System.out.println("Debug - ClientHandler: Client disconnected (null
                     // command)");
                     break;
                 }
+                metrics.addBytesIn(length + 1);
+
+                if (!beginCommand()) {
+                    // The server is draining; don't start new work
+                    break;
+                }
 
                 try {
-                    int command = Integer.parseInt(commandStr);
+                    int command = Protocol.parseCommand(line, 0, length);
+                    if (command == Protocol.INVALID_COMMAND) {
+                        // System.out.println("Debug - ClientHandler: Invalid command format");
+                        out.println("ERROR: Invalid command format");
+                        out.println("END_RESPONSE");
+                        out.flush();
+                        continue;
+                    }
                     // System.out.println("Debug - ClientHandler: Processing command: " +
                     // Protocol.getCommandName(command));
-                    String response;
+                    byte[] response;
+
+                    if (command == Protocol.USE_BINARY_PROTOCOL) {
+                        // Confirm in text, then speak frames for the rest of the connection
+                        out.println(BinaryCodec.SWITCH_CONFIRMATION);
+                        out.println("END_RESPONSE");
+                        out.flush();
+                        switchToBinary = true;
+                        break;
+                    }
 
                     // Only try to read additional data for commands that require it
                     if (commandProcessor.requiresData(command)) {
                         // System.out.println("Debug - ClientHandler: Command requires data: " +
                         // Protocol.getCommandName(command));
-                        String data = in.readLine();
+                        int dataLength = readLine();
                         // System.out.println("Debug - ClientHandler: Additional data: " + data);
-                        if (data == null) {
+                        if (dataLength == LINE_TOO_LONG) {
+                            rejectLongLine();
+                            break;
+                        }
+                        if (dataLength < 0) {
                             // System.out.println("Debug - ClientHandler: Data is null, sending error
                             // response");
                             out.println("ERROR: Missing data for command " + Protocol.getCommandName(command));
@@ -77,33 +176,41 @@ public class ClientHandler implements Runnable {
                             out.flush();
                             continue;
                         }
-                        response = commandProcessor.processCommandWithData(command, data);
+                        metrics.addBytesIn(dataLength + 1);
+                        String data = new String(line, 0, dataLength, ResponseEncoder.CHARSET);
+                        response = ResponseEncoder.encode(commandProcessor.processCommandWithData(command, data, streams.get(0)));
                     } else {
                         // System.out.println("Debug - ClientHandler: Command doesn't require additional
                         // data");
-                        response = commandProcessor.processCommand(command);
+                        response = commandProcessor.processCommandEncoded(command, streams.get(0));
                     }
 
                     // Step 13: Send posting update to job seekers
                     // System.out.println("Debug - ClientHandler: Sending response: " + response);
-                    // Send the response line by line
-                    for (String line : response.split("\n")) {
-                        out.println(line);
-                    }
-                    // Send end marker
-                    out.println("END_RESPONSE");
-                    out.flush(); // Ensure the response is sent immediately
-                } catch (NumberFormatException e) {
-                    // System.out.println("Debug - ClientHandler: Invalid command format: " +
-                    // commandStr);
-                    out.println("ERROR: Invalid command format");
-                    out.println("END_RESPONSE");
-                    out.flush();
+                    // Send the framed response (lines plus end marker) in one write
+                    rawOut.write(response);
+                    rawOut.flush(); // Ensure the response is sent immediately
+                    metrics.addBytesOut(response.length);
+                } finally {
+                    endCommand();
+                }
+
+                if (isDraining()) {
+                    break;
                 }
             }
+
+            if (switchToBinary) {
+                runBinary();
+            }
         } catch (IOException e) {
-            System.err.println("Error handling client: " + e.getMessage());
+            // A draining server closes idle sockets on purpose
+            if (!isDraining()) {
+                System.err.println("Error handling client: " + e.getMessage());
+            }
         } finally {
+            metrics.connectionClosed();
+            streams.closeAll();
             // Clean up resources
             try {
                 if (in != null)
@@ -117,4 +224,280 @@ public class ClientHandler implements Runnable {
             }
         }
     }
+
+    /**
+     * Reads the next text line into the line buffer, growing the buffer if the
+     * line doesn't fit. A buffer grown for a long line is given back first, so
+     * one long line doesn't hold its memory for the rest of the connection.
+     *
+     * @return The line's length without its terminator, -1 if the client
+     *         disconnected, or LINE_TOO_LONG if the line exceeds MAX_LINE_LENGTH
+     */
+    private int readLine() throws IOException {
+        if (line.length > RETAINED_LINE_LENGTH) {
+            line = new byte[INITIAL_LINE_LENGTH];
+        }
+        int length = 0;
+        int b;
+        while ((b = in.read()) != '\n') {
+            if (b < 0) {
+                // A last line without a terminator still counts
+                return length > 0 ? length : -1;
+            }
+            if (length == line.length) {
+                if (length == MAX_LINE_LENGTH) {
+                    line = new byte[INITIAL_LINE_LENGTH];
+                    return LINE_TOO_LONG;
+                }
+                line = Arrays.copyOf(line, Math.min(length * 2, MAX_LINE_LENGTH));
+            }
+            line[length++] = (byte) b;
+        }
+        if (length > 0 && line[length - 1] == '\r') {
+            length--;
+        }
+        return length;
+    }
+
+    /**
+     * Tells the client its line was too long. The rest of the line is still
+     * unread, so the connection is closed after this.
+     */
+    private void rejectLongLine() {
+        out.println("ERROR: Line exceeds " + MAX_LINE_LENGTH + " bytes");
+        out.println("END_RESPONSE");
+        out.flush();
+    }
+
+    /**
+     * Serves the connection with the binary protocol until the client
+     * disconnects. Frames are read through the same buffered stream as the
+     * text lines, so any the client sent right after the switch are kept.
+     *
+     * Requests are handed to the request executor as they arrive, so a client
+     * may pipeline many requests and match the responses by correlation ID;
+     * requests that depend on each other must wait for the earlier response.
+     */
+    private void runBinary() throws IOException {
+        DataInputStream binaryIn = new DataInputStream(in);
+
+        try {
+            while (!clientSocket.isClosed()) {
+                ByteBuffer frame = BinaryCodec.readFrame(binaryIn);
+                if (frame == null) {
+                    break;
+                }
+                metrics.addBytesIn(4 + frame.remaining());
+                BinaryCodec.Request request = BinaryCodec.decodeRequest(frame);
+
+                Session session = streams.get(request.streamId);
+                if (session == null) {
+                    writeBinary(CommandProcessor.encodeResponse(request, "ERROR: Too many streams open, the limit is "
+                            + StreamSessions.MAX_STREAMS));
+                    continue;
+                }
+                if (request.command == Protocol.SUBSCRIBE) {
+                    subscribe(request, session);
+                    continue;
+                }
+                if (request.command == Protocol.CLOSE_STREAM) {
+                    writeBinary(CommandProcessor.closeStream(request, streams));
+                    continue;
+                }
+                if (request.command == Protocol.USE_COMPRESSION) {
+                    compress = true;
+                    writeBinary(CommandProcessor.useCompression(request));
+                    continue;
+                }
+
+                // Stop reading while too many requests are in flight
+                pipelineSlots.acquireUninterruptibly();
+                if (!beginCommand()) {
+                    pipelineSlots.release();
+                    break;
+                }
+
+                try {
+                    requestExecutor.execute(() -> {
+                        try {
+                            processBinary(request, session);
+                        } finally {
+                            pipelineSlots.release();
+                            endCommand();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    pipelineSlots.release();
+                    endCommand();
+                    writeBinary(BinaryCodec.encodeResponse(request.correlationId, request.streamId,
+                            Protocol.FAILURE, "ERROR: Server busy, please try again"));
+                }
+
+                if (isDraining()) {
+                    break;
+                }
+            }
+        } finally {
+            // Let requests that are still running send their responses
+            awaitIdle();
+        }
+    }
+
+    /**
+     * Subscribes a stream to pushed events, replacing its earlier
+     * subscription. Events are written by an event writer thread whenever the
+     * subscription signals that some are waiting.
+     */
+    private void subscribe(BinaryCodec.Request request, Session session) throws IOException {
+        int streamId = request.streamId;
+        NotificationHub.Subscription next = commandProcessor.subscribe(request,
+                () -> EVENT_WRITERS.execute(() -> writeEvents(streamId)), session);
+        if (next != null) {
+            streams.subscribe(streamId, next);
+            // Events published before the subscription was registered found
+            // no writer; signal again for them
+            next.idle();
+        }
+        writeBinary(CommandProcessor.encodeSubscribeResponse(request, next));
+    }
+
+    /**
+     * Writes a stream's waiting events. A slow client holds up only this
+     * writer; events that pile up meanwhile are dropped by the subscription's
+     * bounded queue.
+     */
+    private void writeEvents(int streamId) {
+        NotificationHub.Subscription current = streams.getSubscription(streamId);
+        if (current == null) {
+            return;
+        }
+        // One writer per subscription at a time, so its events stay in order
+        synchronized (current) {
+            try {
+                byte[] event;
+                while ((event = current.poll()) != null) {
+                    writeBinary(event);
+                }
+                current.idle();
+            } catch (IOException e) {
+                // The connection is gone; its reader cleans up
+                current.cancel();
+            }
+        }
+    }
+
+    /**
+     * Executes one binary request and sends its response.
+     */
+    private void processBinary(BinaryCodec.Request request, Session session) {
+        try {
+            writeBinary(commandProcessor.processRequestFrame(request, session, compress));
+        } catch (IOException e) {
+            if (!isDraining()) {
+                System.err.println("Error handling client: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes one complete binary frame; frames from concurrent requests are
+     * never interleaved.
+     */
+    private void writeBinary(byte[] frame) throws IOException {
+        writeBinary(ByteBuffer.wrap(frame));
+    }
+
+    /**
+     * Writes one binary frame held in several buffers. Buffers that aren't
+     * backed by an array (a resume in the blob store) are written through a
+     * channel without copying them onto the heap first.
+     */
+    private void writeBinary(ByteBuffer... frame) throws IOException {
+        synchronized (rawOut) {
+            for (ByteBuffer buffer : frame) {
+                metrics.addBytesOut(buffer.remaining());
+                if (buffer.hasArray()) {
+                    rawOut.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                } else {
+                    WritableByteChannel channel = Channels.newChannel(rawOut);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+            }
+            rawOut.flush();
+        }
+    }
+
+    /**
+     * Marks the start of a command unless the handler is draining.
+     *
+     * @return true if the command may be processed, false if the handler should
+     *         stop
+     */
+    private synchronized boolean beginCommand() {
+        if (draining) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Marks the end of a command. Once a draining handler has no commands left
+     * it closes the connection.
+     */
+    private synchronized void endCommand() {
+        inFlight--;
+        if (inFlight == 0) {
+            notifyAll();
+            if (draining) {
+                close();
+            }
+        }
+    }
+
+    /**
+     * Waits until no commands are in flight.
+     */
+    private synchronized void awaitIdle() {
+        boolean interrupted = false;
+        while (inFlight > 0) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * Asks the handler to stop after its current command.
+     * An idle handler is closed immediately so it doesn't wait for another
+     * command from the client.
+     */
+    public synchronized void drain() {
+        draining = true;
+        if (inFlight == 0) {
+            close();
+        }
+    }
+
+    /**
+     * Closes the client connection, unblocking any pending read.
+     */
+    public void close() {
+        try {
+            clientSocket.close();
+        } catch (IOException e) {
+            System.err.println("Error closing resources: " + e.getMessage());
+        }
+    }
 }
\ No newline at end of file
@@ -1,8 +1,13 @@
 package com.jobappnetwork.server;
 
+import com.jobappnetwork.protocol.BinaryCodec;
 import com.jobappnetwork.protocol.Protocol;
+import com.jobappnetwork.protocol.ResponseCompression;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.List;
+import java.util.Base64;
+import java.util.Set;
 
 /**
  * Processes commands received from clients.
@@ -10,14 +15,45 @@ import java.util.List;
  * delegating them to the appropriate data manager methods.
  */
 public class CommandProcessor {
+    // Sent while the server can't serve data because loading it failed
+    private static final String DATA_UNAVAILABLE = "ERROR: Server data could not be loaded";
+
     private final DataManager dataManager;
+    private final JobListingCache jobListingCache;
+    private final ServerMetrics metrics;
 
-    // Commands that require additional data
-    private static final List<Integer> DATA_REQUIRING_COMMANDS = Arrays.asList(
+    // Commands that require additional data, as a table indexed by command
+    // code so checking a command neither boxes it nor searches a list
+    private static final boolean[] DATA_REQUIRING_COMMANDS = commandTable(
             Protocol.POST_JOB,
             Protocol.APPLY_TO_JOB,
             Protocol.ACCEPT_APPLICATION,
-            Protocol.REJECT_APPLICATION);
+            Protocol.REJECT_APPLICATION,
+            Protocol.VIEW_SEEKER_APPLICATIONS,
+            Protocol.VIEW_JOB_APPLICATIONS,
+            Protocol.VIEW_APPLICATIONS_BY_STATUS,
+            Protocol.VIEW_JOBS_PAGE,
+            Protocol.VIEW_APPLICATIONS_PAGE,
+            Protocol.BULK_ACCEPT_APPLICATIONS,
+            Protocol.BULK_REJECT_APPLICATIONS,
+            Protocol.UPLOAD_RESUME_CHUNK,
+            Protocol.FINISH_RESUME_UPLOAD,
+            Protocol.GET_RESUME,
+            Protocol.SEARCH_JOBS,
+            Protocol.FILTER_JOBS,
+            Protocol.SET_SKILLS,
+            Protocol.MATCH_JOBS,
+            Protocol.MATCH_APPLICANTS,
+            Protocol.SYNC_CHANGES,
+            Protocol.LOGIN);
+
+    private static boolean[] commandTable(int... commands) {
+        boolean[] table = new boolean[Protocol.MAX_COMMAND + 1];
+        for (int command : commands) {
+            table[command] = true;
+        }
+        return table;
+    }
 
     /**
      * Creates a new CommandProcessor with the given data manager.
@@ -26,69 +62,341 @@ public class CommandProcessor {
      */
     public CommandProcessor(DataManager dataManager) {
         this.dataManager = dataManager;
+        this.jobListingCache = new JobListingCache();
+        this.metrics = new ServerMetrics();
+        metrics.registerGauge("Journal records synced", () -> dataManager.getJournal().getLog().getRecords());
+        metrics.registerGauge("Journal batches synced", () -> dataManager.getJournal().getLog().getBatches());
+        metrics.registerGauge("Event subscribers", () -> dataManager.getNotifications().getSubscriberCount());
+        metrics.registerGauge("Data load ms", dataManager::getLoadMillis);
+        metrics.registerGauge("Job listing cache hits", jobListingCache::getHits);
+        metrics.registerGauge("Job listing cache misses", jobListingCache::getMisses);
     }
 
     /**
      * Processes a command that doesn't require additional data.
      * 
      * @param command The command to process
+     * @param session The connection's session
      * @return The response to send back to the client
      */
-    public String processCommand(int command) {
+    public String processCommand(int command, Session session) {
         // System.out.println("Debug - Processing command: " +
         // Protocol.getCommandName(command));
+        if (command == Protocol.METRICS) {
+            // Answered while loading too, and only to clients on this host
+            return session.isLocal() ? metrics.report() : "ERROR: METRICS is only available on the server's host";
+        }
+        if (command == Protocol.PING) {
+            // Health checks get an answer even while the data is loading
+            return "PONG";
+        }
+        // Commands that arrive while the server is starting wait for its data
+        if (!dataManager.awaitLoaded()) {
+            return DATA_UNAVAILABLE;
+        }
 
         switch (command) {
             case Protocol.VIEW_JOBS:
                 // Step 6: View job postings
                 // System.out.println("Debug - Handling VIEW_JOBS command");
-                return dataManager.getAllJobPostings();
+                return jobListingCache.getText(dataManager.getJobPostingsVersion(),
+                        dataManager::getAllJobPostings);
 
             case Protocol.VIEW_APPLICATIONS:
                 return dataManager.getAllApplications();
 
             case Protocol.VIEW_MY_APPLICATIONS:
-                // Return all applications for the current job seeker
-                return dataManager.getCurrentJobSeekerApplications();
+                // Return the applications of the logged in job seeker, from the job seeker index
+                if (!session.isLoggedIn()) {
+                    return "ERROR: Log in to view your applications";
+                }
+                return dataManager.getJobSeekerApplications(session.getUserId());
+
+            case Protocol.BEGIN_RESUME_UPLOAD:
+                return dataManager.beginResumeUpload();
 
             case Protocol.SELECT_ROLE:
                 return "Please select a role (1 for Job Seeker, 2 for Hiring Manager)";
 
+            case Protocol.SUBSCRIBE:
+                // Events are pushed as frames, which the text protocol can't carry
+                return "ERROR: Subscriptions require the binary protocol";
+
+            case Protocol.CLOSE_STREAM:
+                return "ERROR: Streams require the binary protocol";
+
+            case Protocol.USE_COMPRESSION:
+                // Compressed bodies are binary, which the text protocol can't carry
+                return "ERROR: Compression requires the binary protocol";
+
             default:
                 return "Unknown command: " + command;
         }
     }
 
+    /**
+     * Processes a command that doesn't require additional data and returns the
+     * response framed for the text protocol. Cached listings are returned
+     * without being rendered or encoded again.
+     * 
+     * @param command The command to process
+     * @param session The connection's session
+     * @return The framed response bytes, which must not be modified
+     */
+    public byte[] processCommandEncoded(int command, Session session) {
+        long start = System.nanoTime();
+        if (command == Protocol.VIEW_JOBS && dataManager.awaitLoaded()) {
+            byte[] listing = jobListingCache.getEncoded(dataManager.getJobPostingsVersion(),
+                    dataManager::getAllJobPostings);
+            metrics.recordCommand(command, start, false);
+            return listing;
+        }
+        String response = processCommand(command, session);
+        metrics.recordCommand(command, start, isError(response));
+        return ResponseEncoder.encode(response);
+    }
+
     /**
      * Processes a command that requires additional data.
      * 
      * @param command The command to process
      * @param data    The additional data for the command
+     * @param session The connection's session
      * @return The response to send back to the client
      */
-    public String processCommandWithData(int command, String data) {
+    public String processCommandWithData(int command, String data, Session session) {
+        long start = System.nanoTime();
+        String response = processCommandWithFields(command, Protocol.splitFields(data), session);
+        metrics.recordCommand(command, start, isError(response));
+        return response;
+    }
+
+    /**
+     * Processes a command whose data has already been separated into fields,
+     * as sent by the binary protocol.
+     * 
+     * @param command The command to process
+     * @param fields  The command's fields, in order
+     * @param session The connection's session
+     * @return The response to send back to the client
+     */
+    public String processCommandWithFields(int command, String[] fields, Session session) {
         // System.out.println("Debug - Processing command: " +
-        // Protocol.getCommandName(command) + ", data: " + data);
+        // Protocol.getCommandName(command) + ", fields: " + fields.length);
+        if (command == Protocol.LOGIN) {
+            return login(fields, session);
+        }
+        if (!dataManager.awaitLoaded()) {
+            return DATA_UNAVAILABLE;
+        }
 
         switch (command) {
             case Protocol.POST_JOB:
-                return dataManager.createJobPosting(data);
+                return dataManager.createJobPosting(fields);
 
             case Protocol.APPLY_TO_JOB:
                 // Step 7: Send application to job posting
-                return dataManager.createApplication(data);
+                if (session.isJobSeeker() && fields.length == 3) {
+                    // A logged in job seeker always applies as themselves
+                    fields = new String[] { fields[0], session.getUserId(), fields[2] };
+                }
+                return dataManager.createApplication(fields);
 
             case Protocol.ACCEPT_APPLICATION:
-                return dataManager.updateApplicationStatus(data, Protocol.STATUS_ACCEPTED);
+                return dataManager.updateApplicationStatus(firstField(fields), Protocol.STATUS_ACCEPTED);
 
             case Protocol.REJECT_APPLICATION:
-                return dataManager.updateApplicationStatus(data, Protocol.STATUS_REJECTED);
+                return dataManager.updateApplicationStatus(firstField(fields), Protocol.STATUS_REJECTED);
+
+            case Protocol.VIEW_SEEKER_APPLICATIONS:
+                // A logged in job seeker only sees their own applications
+                return dataManager.getJobSeekerApplications(
+                        session.isJobSeeker() ? session.getUserId() : firstField(fields));
+
+            case Protocol.VIEW_JOB_APPLICATIONS:
+                return dataManager.getApplicationsForJob(firstField(fields));
+
+            case Protocol.VIEW_APPLICATIONS_BY_STATUS:
+                return dataManager.getApplicationsByStatus(firstField(fields));
+
+            case Protocol.VIEW_JOBS_PAGE:
+                return dataManager.getJobPostingsPage(fields);
+
+            case Protocol.VIEW_APPLICATIONS_PAGE:
+                return dataManager.getApplicationsPage(fields);
+
+            case Protocol.BULK_ACCEPT_APPLICATIONS:
+                return dataManager.updateApplicationStatuses(fields, Protocol.STATUS_ACCEPTED);
+
+            case Protocol.BULK_REJECT_APPLICATIONS:
+                return dataManager.updateApplicationStatuses(fields, Protocol.STATUS_REJECTED);
+
+            case Protocol.UPLOAD_RESUME_CHUNK:
+                // Text clients send the chunk Base64 encoded
+                if (fields.length != 3) {
+                    return "ERROR: Invalid chunk format - Expected 3 parts (uploadId|offset|base64), got "
+                            + fields.length;
+                }
+                try {
+                    return dataManager.writeResumeChunk(fields[0], fields[1], Base64.getDecoder().decode(fields[2]));
+                } catch (IllegalArgumentException e) {
+                    return "ERROR: Invalid Base64 chunk";
+                }
+
+            case Protocol.FINISH_RESUME_UPLOAD:
+                return dataManager.finishResumeUpload(fields);
+
+            case Protocol.GET_RESUME:
+                return dataManager.getResume(firstField(fields));
+
+            case Protocol.SEARCH_JOBS:
+                return dataManager.searchJobPostings(fields);
+
+            case Protocol.FILTER_JOBS:
+                return dataManager.filterJobPostings(fields);
+
+            case Protocol.SET_SKILLS:
+                if (session.isJobSeeker() && (fields.length == 1 || fields.length == 2)) {
+                    // A logged in job seeker only sets their own skills
+                    fields = fields.clone();
+                    fields[0] = session.getUserId();
+                }
+                return dataManager.setJobSeekerSkills(fields);
+
+            case Protocol.MATCH_JOBS:
+                return dataManager.matchJobsForSeeker(fields);
+
+            case Protocol.MATCH_APPLICANTS:
+                return dataManager.matchApplicantsForJob(fields);
+
+            case Protocol.SYNC_CHANGES:
+                // A logged in job seeker only sees status changes of their own applications
+                return dataManager.getChangesSince(firstField(fields),
+                        session.isJobSeeker() ? session.getUserId() : null);
 
             default:
                 return "Unknown command with data: " + command;
         }
     }
 
+    /**
+     * Processes a binary protocol request into its encoded response frame.
+     * A GET_RESUME response carries the raw resume as a view of the resume blob
+     * store, so the resume is written to the socket without being copied onto
+     * the heap.
+     * 
+     * @param request The decoded request frame
+     * @param session The connection's session
+     * @return The response frame, as buffers to write in order
+     */
+    public ByteBuffer[] processRequestFrame(BinaryCodec.Request request, Session session) {
+        return processRequestFrame(request, session, false);
+    }
+
+    /**
+     * Processes a binary protocol request into its encoded response frame,
+     * compressing a large successful response if the connection asked for
+     * it. The job listing is compressed once per version and served from the
+     * cache.
+     * 
+     * @param request  The decoded request frame
+     * @param session  The connection's session
+     * @param compress Whether the connection sent USE_COMPRESSION
+     * @return The response frame, as buffers to write in order
+     */
+    public ByteBuffer[] processRequestFrame(BinaryCodec.Request request, Session session, boolean compress) {
+        long start = System.nanoTime();
+        String response;
+        try {
+            if (compress && request.command == Protocol.VIEW_JOBS && dataManager.awaitLoaded()) {
+                byte[] listing = jobListingCache.getDeflated(dataManager.getJobPostingsVersion(),
+                        dataManager::getAllJobPostings);
+                if (listing != null) {
+                    metrics.recordCommand(request.command, start, false);
+                    return deflatedFrame(request, listing);
+                }
+            }
+            if (request.command == Protocol.GET_RESUME && request.fieldCount() == 1 && dataManager.awaitLoaded()) {
+                ByteBuffer resume = dataManager.getResumeBytes(request.field(0));
+                if (resume != null) {
+                    metrics.recordCommand(request.command, start, false);
+                    return new ByteBuffer[] { BinaryCodec.encodeResponseHeader(request.correlationId,
+                            request.streamId, Protocol.SUCCESS, resume.remaining()), resume };
+                }
+            }
+            response = processRequest(request, session);
+        } catch (RuntimeException e) {
+            response = "ERROR: " + e.getMessage();
+        }
+        boolean failed = isError(response);
+        if (compress && !failed && response.length() >= ResponseCompression.MIN_LENGTH) {
+            byte[] deflated = ResponseCompression.deflate(response.getBytes(StandardCharsets.UTF_8));
+            if (deflated != null) {
+                metrics.recordCommand(request.command, start, false);
+                return deflatedFrame(request, deflated);
+            }
+        }
+        metrics.recordCommand(request.command, start, failed);
+        return new ByteBuffer[] { ByteBuffer.wrap(BinaryCodec.encodeResponse(request.correlationId,
+                request.streamId, BinaryCodec.codeFor(response), response)) };
+    }
+
+    private static ByteBuffer[] deflatedFrame(BinaryCodec.Request request, byte[] deflated) {
+        return new ByteBuffer[] { BinaryCodec.encodeResponseHeader(request.correlationId, request.streamId,
+                Protocol.SUCCESS_DEFLATED, deflated.length), ByteBuffer.wrap(deflated) };
+    }
+
+    /**
+     * Processes a binary protocol request.
+     * 
+     * @param request The decoded request frame
+     * @param session The connection's session
+     * @return The response to send back to the client
+     */
+    public String processRequest(BinaryCodec.Request request, Session session) {
+        if (!requiresData(request.command)) {
+            return processCommand(request.command, session);
+        }
+        if (request.command == Protocol.UPLOAD_RESUME_CHUNK && request.fieldCount() == 3) {
+            // Binary clients send the chunk as raw bytes
+            return dataManager.writeResumeChunk(request.field(0), request.field(1), request.rawField(2));
+        }
+        return processCommandWithFields(request.command, request.fields(), session);
+    }
+
+    /**
+     * Binds a connection's session to the user the client names.
+     * 
+     * @param fields  user ID and role (ROLE_JOB_SEEKER or ROLE_HIRING_MANAGER)
+     * @param session The connection's session
+     * @return A confirmation, or an error
+     */
+    private static String login(String[] fields, Session session) {
+        if (fields.length != 2) {
+            return "ERROR: Invalid login format - Expected 2 parts (userId|role), got " + fields.length;
+        }
+        try {
+            return session.login(fields[0], Integer.parseInt(fields[1].trim()));
+        } catch (NumberFormatException e) {
+            return "ERROR: Invalid role: " + fields[1];
+        }
+    }
+
+    /**
+     * Checks whether a response reports a failure, as the binary protocol
+     * would code it.
+     */
+    private static boolean isError(String response) {
+        return BinaryCodec.codeFor(response) == Protocol.FAILURE;
+    }
+
+    /**
+     * Gets the single value of a one-field command.
+     */
+    private static String firstField(String[] fields) {
+        return fields.length > 0 ? fields[0] : "";
+    }
+
     /**
      * Checks if a command requires additional data.
      * 
@@ -96,6 +404,93 @@ public class CommandProcessor {
      * @return true if the command requires additional data, false otherwise
      */
     public boolean requiresData(int command) {
-        return DATA_REQUIRING_COMMANDS.contains(command);
+        return command >= 0 && command < DATA_REQUIRING_COMMANDS.length && DATA_REQUIRING_COMMANDS[command];
+    }
+
+    /**
+     * Subscribes a binary connection to pushed events.
+     * 
+     * A logged in job seeker only receives status changes of their own
+     * applications.
+     * 
+     * @param request The SUBSCRIBE request, listing topics in its first field
+     * @param signal  Called when events are waiting; must not block
+     * @param session The connection's session
+     * @return The new subscription, or null if a topic isn't known
+     */
+    public NotificationHub.Subscription subscribe(BinaryCodec.Request request, Runnable signal, Session session) {
+        Set<NotificationHub.Topic> topics = NotificationHub.parseTopics(request.fields());
+        if (topics == null) {
+            return null;
+        }
+        return dataManager.getNotifications().subscribe(topics, session.isJobSeeker() ? session.getUserId() : null,
+                request.streamId, NotificationHub.DEFAULT_QUEUE_CAPACITY, signal);
+    }
+
+    /**
+     * Encodes the response to a SUBSCRIBE request.
+     * 
+     * @param request      The SUBSCRIBE request
+     * @param subscription The subscription it created, or null if it was rejected
+     * @return The response frame
+     */
+    public static byte[] encodeSubscribeResponse(BinaryCodec.Request request,
+            NotificationHub.Subscription subscription) {
+        return encodeResponse(request, subscription == null
+                ? "ERROR: Unknown topic - expected any of " + Arrays.toString(NotificationHub.Topic.values())
+                : "Subscribed to " + subscription.getTopics());
+    }
+
+    /**
+     * Ends the session on a CLOSE_STREAM request's stream.
+     * 
+     * @param request The CLOSE_STREAM request
+     * @param streams The connection's sessions
+     * @return The response frame
+     */
+    public static byte[] closeStream(BinaryCodec.Request request, StreamSessions streams) {
+        streams.close(request.streamId);
+        return encodeResponse(request, "Stream " + request.streamId + " closed");
+    }
+
+    /**
+     * Encodes the response to a USE_COMPRESSION request, once the engine has
+     * turned compression on for the connection.
+     * 
+     * @param request The USE_COMPRESSION request
+     * @return The response frame
+     */
+    public static byte[] useCompression(BinaryCodec.Request request) {
+        return encodeResponse(request, "Compression enabled: deflate with the listing dictionary");
+    }
+
+    /**
+     * Encodes the response to a request the engine answers itself.
+     * 
+     * @param request  The request being answered
+     * @param response The response text
+     * @return The response frame
+     */
+    public static byte[] encodeResponse(BinaryCodec.Request request, String response) {
+        return BinaryCodec.encodeResponse(request.correlationId, request.streamId, BinaryCodec.codeFor(response),
+                response);
+    }
+
+    /**
+     * Gets the cache holding the rendered job listing.
+     * 
+     * @return The job listing cache
+     */
+    public JobListingCache getJobListingCache() {
+        return jobListingCache;
+    }
+
+    /**
+     * Gets the metrics the engines report traffic and connections to.
+     * 
+     * @return The server metrics
+     */
+    public ServerMetrics getMetrics() {
+        return metrics;
     }
 }
\ No newline at end of file
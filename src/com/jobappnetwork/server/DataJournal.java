@@ -0,0 +1,508 @@
+package com.jobappnetwork.server;
+
+import com.jobappnetwork.server.model.Application;
+import com.jobappnetwork.server.model.JobPosting;
+import com.jobappnetwork.server.model.ResumeHandle;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Makes the {@link DataManager}'s changes durable.
+ *
+ * Every job posting, application, status change and job seeker skill update
+ * is written to a
+ * {@link WriteAheadLog}. Once enough records have been logged, a snapshot of
+ * the whole state is written in the background and the log segments it covers
+ * are deleted, so startup only replays the log written since the last
+ * snapshot.
+ *
+ * Snapshots are taken while clients keep making changes, so a snapshot may
+ * already contain changes that are also in the log after it. Replaying a
+ * record is idempotent, so applying both is harmless.
+ *
+ * New job postings and applications are logged before they are stored in
+ * memory, so nobody sees one that may never become durable. Such a change is
+ * bracketed by {@link #beginChange()} and {@link #endChange()}, and a
+ * snapshot waits for the changes in progress before it rotates the log, so
+ * every change in the segments it replaces is in the state it reads.
+ */
+public class DataJournal implements Closeable {
+    // Records logged between snapshots
+    private static final int SNAPSHOT_INTERVAL = 50000;
+    private static final int SNAPSHOT_MAGIC = 0x4A414E53; // "JANS"
+    private static final int SNAPSHOT_VERSION = 1;
+    // Snapshots are named after the first log segment they don't cover
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".dat";
+    // Name used before snapshots were numbered
+    private static final String LEGACY_SNAPSHOT_FILE = "snapshot.dat";
+
+    // Record types
+    private static final byte JOB_POSTED = 1;
+    private static final byte APPLICATION_SUBMITTED = 2;
+    private static final byte STATUS_CHANGED = 3;
+    private static final byte SKILLS_SET = 4;
+
+    /**
+     * Receives the recovered state, in the order it was recorded.
+     */
+    public interface Recovery {
+        void jobPosted(JobPosting job);
+
+        void applicationSubmitted(Application application);
+
+        void statusChanged(String applicationId, int status);
+
+        void skillsSet(String jobSeekerId, String skills);
+    }
+
+    private final Path directory;
+    private final WriteAheadLog log;
+    private final Supplier<Collection<JobPosting>> jobPostings;
+    private final Supplier<Collection<Application>> applications;
+    private final Supplier<Map<String, String>> skills;
+    private final ExecutorService snapshotter;
+    private final AtomicLong sinceSnapshot;
+    private final AtomicBoolean snapshotRunning;
+    // Held shared by changes logged before they are applied, and exclusively
+    // while a snapshot rotates the log
+    private final ReadWriteLock applying;
+
+    /**
+     * Opens the journal in the given directory.
+     *
+     * @param directory    Where the log and snapshot are kept
+     * @param jobPostings  Supplies the current job postings for snapshots
+     * @param applications Supplies the current applications for snapshots
+     * @param skills       Supplies each job seeker's current skills for
+     *                     snapshots
+     * @throws IOException If the log can't be opened
+     */
+    public DataJournal(Path directory, Supplier<Collection<JobPosting>> jobPostings,
+            Supplier<Collection<Application>> applications, Supplier<Map<String, String>> skills)
+            throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.log = new WriteAheadLog(directory);
+        this.jobPostings = jobPostings;
+        this.applications = applications;
+        this.skills = skills;
+        this.snapshotter = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.sinceSnapshot = new AtomicLong();
+        this.snapshotRunning = new AtomicBoolean();
+        this.applying = new ReentrantReadWriteLock();
+    }
+
+    /**
+     * Loads the latest snapshot and replays the log written after it.
+     * The snapshot is memory-mapped rather than read onto the heap, and job
+     * postings from it are handed over undecoded; their fields are decoded
+     * from the mapping on first use.
+     *
+     * @param recovery Receives the recovered state
+     * @throws IOException If the snapshot or log can't be read
+     */
+    public void recover(Recovery recovery) throws IOException {
+        int fromSegment = 0;
+        Path snapshot = latestSnapshot();
+        if (snapshot != null) {
+            long start = System.nanoTime();
+            ByteBuffer in;
+            try (FileChannel channel = FileChannel.open(snapshot, StandardOpenOption.READ)) {
+                in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            if (in.getInt() != SNAPSHOT_MAGIC || in.getInt() != SNAPSHOT_VERSION) {
+                throw new IOException("Unrecognized snapshot: " + snapshot);
+            }
+            fromSegment = in.getInt();
+            int count = in.getInt();
+            for (int i = 0; i < count; i++) {
+                int length = in.getInt();
+                ByteBuffer record = in.slice();
+                record.limit(length);
+                apply(record, recovery, true);
+                in.position(in.position() + length);
+            }
+            System.out.println("Loaded " + count + " records from " + snapshot.getFileName() + " in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        }
+
+        long start = System.nanoTime();
+        int[] replayed = new int[1];
+        log.replay(fromSegment, record -> {
+            apply(record, recovery, false);
+            replayed[0]++;
+        });
+        System.out.println("Replayed " + replayed[0] + " log records in "
+                + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+    }
+
+    /**
+     * Finds the most recent snapshot.
+     *
+     * @return The snapshot file, or null if there is none
+     */
+    private Path latestSnapshot() throws IOException {
+        Path latest = null;
+        int latestSegment = -1;
+        for (Path file : snapshots()) {
+            int segment = snapshotSegment(file);
+            if (segment > latestSegment) {
+                latest = file;
+                latestSegment = segment;
+            }
+        }
+        if (latest == null && Files.exists(directory.resolve(LEGACY_SNAPSHOT_FILE))) {
+            latest = directory.resolve(LEGACY_SNAPSHOT_FILE);
+        }
+        return latest;
+    }
+
+    private List<Path> snapshots() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory,
+                SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (Path file : stream) {
+                if (snapshotSegment(file) >= 0) {
+                    files.add(file);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Gets the log segment a snapshot file is named after, or -1 if the name
+     * isn't a snapshot's.
+     */
+    private static int snapshotSegment(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Integer.parseInt(name.substring(SNAPSHOT_PREFIX.length(), name.length() - SNAPSHOT_SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Logs a new job posting.
+     *
+     * @param job The job posting
+     * @return The record's sequence number, for {@link #awaitDurable}
+     * @throws IOException If the log has failed
+     */
+    public long jobPosted(JobPosting job) throws IOException {
+        return append(encodeJob(job));
+    }
+
+    /**
+     * Logs a new application.
+     *
+     * @param application The application
+     * @return The record's sequence number, for {@link #awaitDurable}
+     * @throws IOException If the log has failed
+     */
+    public long applicationSubmitted(Application application) throws IOException {
+        return append(encodeApplication(application));
+    }
+
+    /**
+     * Logs an application's status change.
+     *
+     * @param applicationId The application ID
+     * @param status        The new status
+     * @return The record's sequence number, for {@link #awaitDurable}
+     * @throws IOException If the log has failed
+     */
+    public long statusChanged(String applicationId, int status) throws IOException {
+        RecordWriter out = new RecordWriter(STATUS_CHANGED);
+        out.writeString(applicationId);
+        out.writeInt(status);
+        return append(out.toByteArray());
+    }
+
+    /**
+     * Logs a job seeker's new skills.
+     *
+     * @param jobSeekerId The job seeker ID
+     * @param skills      The skills, comma separated
+     * @return The record's sequence number, for {@link #awaitDurable}
+     * @throws IOException If the log has failed
+     */
+    public long skillsSet(String jobSeekerId, String skills) throws IOException {
+        return append(encodeSkills(jobSeekerId, skills));
+    }
+
+    /**
+     * Waits until a logged change, and every change logged before it, is on
+     * disk. Changes are synced in groups, so concurrent callers share one fsync.
+     *
+     * @param sequence The sequence number of the change
+     * @throws IOException If the log failed before the change was synced
+     */
+    public void awaitDurable(long sequence) throws IOException {
+        log.awaitDurable(sequence);
+    }
+
+    /**
+     * Starts a change that is logged before it is applied in memory. Must be
+     * followed by {@link #endChange()} on the same thread once the change has
+     * been applied, or abandoned.
+     */
+    public void beginChange() {
+        applying.readLock().lock();
+    }
+
+    /**
+     * Ends a change started with {@link #beginChange()}.
+     */
+    public void endChange() {
+        applying.readLock().unlock();
+    }
+
+    /**
+     * Gets the write-ahead log, for its batching statistics.
+     *
+     * @return The write-ahead log
+     */
+    public WriteAheadLog getLog() {
+        return log;
+    }
+
+    private long append(byte[] record) throws IOException {
+        long sequence = log.append(record);
+        if (sinceSnapshot.incrementAndGet() >= SNAPSHOT_INTERVAL && snapshotRunning.compareAndSet(false, true)) {
+            sinceSnapshot.set(0);
+            snapshotter.execute(this::snapshot);
+        }
+        return sequence;
+    }
+
+    /**
+     * Writes a snapshot of the current state and deletes the log segments it
+     * covers. The log is rotated first, once the changes in progress have been
+     * applied, so every change in the deleted segments was applied before the
+     * snapshot started reading.
+     */
+    private void snapshot() {
+        try {
+            int fromSegment;
+            applying.writeLock().lock();
+            try {
+                fromSegment = log.rotate();
+            } finally {
+                applying.writeLock().unlock();
+            }
+            Collection<JobPosting> jobs = jobPostings.get();
+            Collection<Application> apps = applications.get();
+            Map<String, String> seekerSkills = skills.get();
+
+            Path target = directory.resolve(String.format("%s%06d%s", SNAPSHOT_PREFIX, fromSegment, SNAPSHOT_SUFFIX));
+            Path temp = directory.resolve(target.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                DataOutputStream out = new DataOutputStream(
+                        new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024));
+                out.writeInt(SNAPSHOT_MAGIC);
+                out.writeInt(SNAPSHOT_VERSION);
+                out.writeInt(fromSegment);
+                out.writeInt(jobs.size() + apps.size() + seekerSkills.size());
+                for (JobPosting job : jobs) {
+                    writeRecord(out, encodeJob(job));
+                }
+                for (Application application : apps) {
+                    writeRecord(out, encodeApplication(application));
+                }
+                for (Map.Entry<String, String> seeker : seekerSkills.entrySet()) {
+                    writeRecord(out, encodeSkills(seeker.getKey(), seeker.getValue()));
+                }
+                out.flush();
+                channel.force(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            log.deleteSegmentsBefore(fromSegment);
+
+            // Older snapshots may still be mapped by postings that haven't been
+            // decoded yet; a mapped file can be deleted on Unix but not on Windows
+            for (Path old : snapshots()) {
+                if (snapshotSegment(old) < fromSegment) {
+                    deleteQuietly(old);
+                }
+            }
+            deleteQuietly(directory.resolve(LEGACY_SNAPSHOT_FILE));
+        } catch (IOException e) {
+            System.err.println("Error writing snapshot: " + e.getMessage());
+        } finally {
+            snapshotRunning.set(false);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            System.err.println("Could not delete old snapshot " + file + ": " + e.getMessage());
+        }
+    }
+
+    private static void writeRecord(DataOutputStream out, byte[] record) throws IOException {
+        out.writeInt(record.length);
+        out.write(record);
+    }
+
+    /**
+     * Stops taking snapshots and syncs the log.
+     */
+    @Override
+    public void close() {
+        snapshotter.shutdown();
+        try {
+            snapshotter.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.close();
+    }
+
+    private static byte[] encodeJob(JobPosting job) {
+        RecordWriter out = new RecordWriter(JOB_POSTED);
+        out.writeString(job.getId());
+        out.writeString(job.getTitle());
+        out.writeString(job.getCompany());
+        out.writeString(job.getLocation());
+        out.writeString(job.getDescription());
+        out.writeString(job.getSkills());
+        out.writeString(job.getSalary());
+        return out.toByteArray();
+    }
+
+    private static byte[] encodeApplication(Application application) {
+        RecordWriter out = new RecordWriter(APPLICATION_SUBMITTED);
+        out.writeString(application.getId());
+        out.writeString(application.getJobSeekerId());
+        out.writeString(application.getJobPostingId());
+        out.writeInt(application.getStatus());
+        ResumeHandle resume = application.getResume();
+        out.writeInt(resume.getSegment());
+        out.writeInt(resume.getOffset());
+        out.writeInt(resume.getLength());
+        out.writeString(resume.getDigest());
+        return out.toByteArray();
+    }
+
+    private static byte[] encodeSkills(String jobSeekerId, String skills) {
+        RecordWriter out = new RecordWriter(SKILLS_SET);
+        out.writeString(jobSeekerId);
+        out.writeString(skills);
+        return out.toByteArray();
+    }
+
+    /**
+     * Decodes one record and hands it to the recovery.
+     *
+     * @param lazy true to leave a job posting's fields in the record until they
+     *             are first used; the record must stay valid (a mapped snapshot)
+     */
+    private static void apply(ByteBuffer record, Recovery recovery, boolean lazy) {
+        byte type = record.get();
+        switch (type) {
+            case JOB_POSTED:
+                String jobId = readString(record);
+                if (lazy) {
+                    ByteBuffer fields = record.slice();
+                    recovery.jobPosted(new JobPosting(jobId, () -> readJobFields(fields.duplicate())));
+                } else {
+                    String[] fields = readJobFields(record);
+                    recovery.jobPosted(new JobPosting(jobId, fields[0], fields[1], fields[2], fields[3], fields[4],
+                            fields[5]));
+                }
+                break;
+            case APPLICATION_SUBMITTED:
+                String id = readString(record);
+                String jobSeekerId = readString(record);
+                String jobPostingId = readString(record);
+                int status = record.getInt();
+                ResumeHandle resume = new ResumeHandle(record.getInt(), record.getInt(), record.getInt(),
+                        readString(record));
+                recovery.applicationSubmitted(new Application(id, jobSeekerId, jobPostingId, status, resume));
+                break;
+            case STATUS_CHANGED:
+                recovery.statusChanged(readString(record), record.getInt());
+                break;
+            case SKILLS_SET:
+                recovery.skillsSet(readString(record), readString(record));
+                break;
+            default:
+                System.err.println("Ignoring unknown journal record type " + type);
+        }
+    }
+
+    /**
+     * Reads a job posting's fields after its ID: title, company, location,
+     * description, skills and salary.
+     */
+    private static String[] readJobFields(ByteBuffer record) {
+        String[] fields = new String[6];
+        for (int i = 0; i < fields.length; i++) {
+            fields[i] = readString(record);
+        }
+        return fields;
+    }
+
+    private static String readString(ByteBuffer record) {
+        byte[] bytes = new byte[record.getInt()];
+        record.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Builds one record. Strings are length-prefixed UTF-8, so they may be
+     * longer than DataOutput's 64KB UTF limit.
+     */
+    private static final class RecordWriter extends ByteArrayOutputStream {
+        RecordWriter(byte type) {
+            super(64);
+            write(type);
+        }
+
+        void writeInt(int value) {
+            write(value >>> 24);
+            write(value >>> 16);
+            write(value >>> 8);
+            write(value);
+        }
+
+        void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+    }
+}
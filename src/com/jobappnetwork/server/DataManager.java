@@ -3,32 +3,294 @@ package com.jobappnetwork.server;
 import com.jobappnetwork.protocol.Protocol;
 import com.jobappnetwork.server.model.JobPosting;
 import com.jobappnetwork.server.model.Application;
+import com.jobappnetwork.server.model.ResumeHandle;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Manages data for the job application network.
  * This class is responsible for storing and retrieving job postings,
  * applications, and other data.
+ *
+ * Every client handler calls into the same instance, so all state is kept in
+ * concurrent maps and IDs are allocated atomically; no global lock is taken.
  */
 public class DataManager {
-    // In-memory data storage
+    // Largest page a client may request from the paged listings
+    private static final int MAX_PAGE_SIZE = 1000;
+    // Deepest a search may page; ranking keeps offset + page size results
+    private static final int MAX_SEARCH_OFFSET = 10000;
+    // Where data is kept unless the server is told otherwise
+    public static final String DEFAULT_DATA_DIRECTORY = "data";
+
+    // In-memory data storage; a new record is stored only once it is on disk
     private final Map<String, JobPosting> jobPostings;
     private final Map<String, Application> applications;
-    private int nextJobId;
-    private int nextApplicationId;
+    // The same records ordered by their numeric ID, for paging
+    private final NavigableMap<Integer, JobPosting> jobPostingsInOrder;
+    private final NavigableMap<Integer, Application> applicationsInOrder;
+    // Secondary indexes over applications, kept in step with the primary map
+    private final Map<String, Collection<Application>> applicationsByJob;
+    private final Map<String, Collection<Application>> applicationsBySeeker;
+    private final Map<Integer, Set<Application>> applicationsByStatus;
+    private final AtomicInteger nextJobId;
+    private final AtomicInteger nextApplicationId;
+    // Bumped on every change to the job postings, used to invalidate caches
+    private final AtomicLong jobPostingsVersion;
+    // Keyword index over the job postings
+    private final JobSearchIndex searchIndex;
+    // Location, company and salary index over the job postings
+    private final JobFacetIndex facetIndex;
+    // Matches job seekers and job postings by skill
+    private final SkillMatcher skillMatcher;
+    // Pushes new postings and status changes to subscribed connections
+    private final NotificationHub notifications;
+    // The same changes, numbered, for clients syncing a copy of the postings
+    private final ChangeLog changes;
+    // Keeps skill updates in the same order in the matcher and the journal
+    private final Object skillsLock = new Object();
+    // Released once the recovered postings have been indexed
+    private final CountDownLatch indexed;
+    // Where changes are made durable
+    private final DataJournal journal;
+    // Released once the saved data has been recovered
+    private final CountDownLatch loaded;
+    private volatile IOException loadFailure;
+    private volatile long loadMillis;
+    // Job numbers below this were recovered rather than created in this run
+    private volatile int recoveredJobs = 1;
+    // Resume bytes, kept off the heap
+    private final ResumeBlobStore resumeBlobs;
+    // Resume uploads in progress
+    private final ResumeStore resumeStore;
 
     /**
-     * Creates a new DataManager with empty data stores.
+     * Creates a new DataManager that keeps its data in the default data
+     * directory.
      */
     public DataManager() {
-        this.jobPostings = new HashMap<>();
-        this.applications = new HashMap<>();
-        this.nextJobId = 1;
-        this.nextApplicationId = 1;
+        this(Paths.get(DEFAULT_DATA_DIRECTORY));
+    }
+
+    /**
+     * Creates a new DataManager, recovering the data saved in the given
+     * directory by an earlier run.
+     * 
+     * @param dataDirectory Where the journal and resumes are kept
+     */
+    public DataManager(Path dataDirectory) {
+        this(dataDirectory, false);
+    }
+
+    /**
+     * Creates a new DataManager, recovering the data saved in the given
+     * directory by an earlier run. Loading in the background lets the server
+     * accept connections straight away; callers must wait for
+     * {@link #awaitLoaded()} before using the data.
+     * 
+     * @param dataDirectory    Where the journal and resumes are kept
+     * @param loadInBackground true to recover on a background thread
+     */
+    public DataManager(Path dataDirectory, boolean loadInBackground) {
+        this.jobPostings = new ConcurrentHashMap<>();
+        this.applications = new ConcurrentHashMap<>();
+        this.jobPostingsInOrder = new ConcurrentSkipListMap<>();
+        this.applicationsInOrder = new ConcurrentSkipListMap<>();
+        this.applicationsByJob = new ConcurrentHashMap<>();
+        this.applicationsBySeeker = new ConcurrentHashMap<>();
+        this.applicationsByStatus = new ConcurrentHashMap<>();
+        this.nextJobId = new AtomicInteger(1);
+        this.nextApplicationId = new AtomicInteger(1);
+        this.jobPostingsVersion = new AtomicLong();
+        this.loaded = new CountDownLatch(1);
+        this.searchIndex = new JobSearchIndex();
+        this.facetIndex = new JobFacetIndex();
+        this.skillMatcher = new SkillMatcher();
+        this.notifications = new NotificationHub();
+        this.changes = new ChangeLog(ChangeLog.DEFAULT_CAPACITY);
+        this.indexed = new CountDownLatch(1);
+        try {
+            this.resumeBlobs = new ResumeBlobStore(dataDirectory.resolve("resumes"));
+            this.resumeStore = new ResumeStore(dataDirectory.resolve("uploads"), resumeBlobs);
+            this.journal = new DataJournal(dataDirectory,
+                    () -> new ArrayList<>(jobPostingsInOrder.values()),
+                    () -> new ArrayList<>(applicationsInOrder.values()),
+                    skillMatcher::getAllSeekerSkills);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not open data in " + dataDirectory, e);
+        }
+
+        if (loadInBackground) {
+            Thread loader = new Thread(this::load, "data-loader");
+            loader.setDaemon(true);
+            loader.start();
+        } else {
+            load();
+            if (loadFailure != null) {
+                throw new UncheckedIOException("Could not load data from " + dataDirectory, loadFailure);
+            }
+        }
+    }
+
+    /**
+     * Recovers the saved data and releases everyone waiting for it.
+     */
+    private void load() {
+        long start = System.nanoTime();
+        try {
+            recover();
+            loadMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            System.out.println("Recovered " + jobPostings.size() + " job postings and " + applications.size()
+                    + " applications in " + loadMillis + " ms");
+        } catch (IOException | RuntimeException e) {
+            loadFailure = e instanceof IOException ? (IOException) e : new IOException(e);
+            System.err.println("Could not load data: " + e.getMessage());
+        } finally {
+            loaded.countDown();
+        }
+
+        // Indexing decodes every posting, so it happens after the data is
+        // available; postings created meanwhile index themselves
+        if (loadFailure == null) {
+            start = System.nanoTime();
+            for (Map.Entry<Integer, JobPosting> entry : jobPostingsInOrder.headMap(recoveredJobs).entrySet()) {
+                searchIndex.add(entry.getKey(), entry.getValue());
+                facetIndex.add(entry.getKey(), entry.getValue());
+                skillMatcher.setJobSkills(entry.getValue().getId(), entry.getValue().getSkills());
+            }
+            System.out.println("Indexed " + searchIndex.getDocumentCount() + " job postings for search in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) + " ms");
+        }
+        indexed.countDown();
+    }
+
+    /**
+     * Waits until the saved data has been recovered.
+     * 
+     * @return true if the data is ready, false if it could not be loaded
+     */
+    public boolean awaitLoaded() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                loaded.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        return loadFailure == null;
+    }
+
+    /**
+     * Gets how long recovering the saved data took.
+     * 
+     * @return The load time in milliseconds, or 0 if loading hasn't finished
+     */
+    public long getLoadMillis() {
+        return loadMillis;
+    }
+
+    /**
+     * Rebuilds the in-memory state from the journal.
+     */
+    private void recover() throws IOException {
+        // A status change logged while its application was still being logged
+        // can come first; it is applied once the application turns up
+        Map<String, Integer> earlyStatuses = new HashMap<>();
+        journal.recover(new DataJournal.Recovery() {
+            @Override
+            public void jobPosted(JobPosting job) {
+                jobPostings.put(job.getId(), job);
+                jobPostingsInOrder.put(idNumber(job.getId()), job);
+            }
+
+            @Override
+            public void applicationSubmitted(Application application) {
+                // A snapshot may already hold an application that is also in the log
+                if (applications.putIfAbsent(application.getId(), application) == null) {
+                    applicationsInOrder.put(idNumber(application.getId()), application);
+                    Integer status = earlyStatuses.remove(application.getId());
+                    if (status != null) {
+                        application.setStatus(status);
+                    }
+                    indexApplication(application);
+                    resumeBlobs.register(application.getResume());
+                }
+            }
+
+            @Override
+            public void statusChanged(String applicationId, int status) {
+                Application application = applications.get(applicationId);
+                if (application != null) {
+                    moveStatus(application, status);
+                } else {
+                    earlyStatuses.put(applicationId, status);
+                }
+            }
+
+            @Override
+            public void skillsSet(String jobSeekerId, String skills) {
+                skillMatcher.setSeekerSkills(jobSeekerId, skills);
+            }
+        });
+
+        if (!jobPostingsInOrder.isEmpty()) {
+            nextJobId.set(jobPostingsInOrder.lastKey() + 1);
+        }
+        recoveredJobs = nextJobId.get();
+        if (!applicationsInOrder.isEmpty()) {
+            nextApplicationId.set(applicationsInOrder.lastKey() + 1);
+        }
+        jobPostingsVersion.incrementAndGet();
+    }
+
+    /**
+     * Gets the number in an ID such as "JOB12" or "APP7".
+     */
+    private static int idNumber(String id) {
+        return Integer.parseInt(id.substring(3));
+    }
+
+    /**
+     * Syncs outstanding changes and closes the journal.
+     */
+    public void close() {
+        journal.close();
+        skillMatcher.close();
+    }
+
+    /**
+     * Gets the journal that makes changes durable.
+     * 
+     * @return The data journal
+     */
+    public DataJournal getJournal() {
+        return journal;
     }
 
     /**
@@ -36,15 +298,25 @@ public class DataManager {
      * stored)
      */
     public String createJobPosting(String jobData) {
+        return createJobPosting(jobData.split("\\|"));
+    }
+
+    /**
+     * Creates a job posting from already separated fields.
+     * 
+     * @param parts title, company, location, description, skills and salary
+     * @return A message with the new job posting's ID, or an error
+     */
+    public String createJobPosting(String[] parts) {
         try {
-            String[] parts = jobData.split("\\|");
             // System.out.println("Debug - Received job data parts: " +
             // Arrays.toString(parts));
             if (parts.length != 6) {
                 return "ERROR: Invalid job data format - Expected 6 parts, got " + parts.length;
             }
 
-            String jobId = "JOB" + nextJobId++;
+            int jobNumber = nextJobId.getAndIncrement();
+            String jobId = "JOB" + jobNumber;
             JobPosting job = new JobPosting(
                     jobId,
                     parts[0], // title
@@ -55,7 +327,24 @@ public class DataManager {
                     parts[5] // salary
             );
 
-            jobPostings.put(jobId, job);
+            // Stored only once it is on disk, so nobody sees a posting that is
+            // lost on restart; a snapshot waits until it has been stored
+            journal.beginChange();
+            try {
+                journal.awaitDurable(journal.jobPosted(job));
+                jobPostings.put(jobId, job);
+                jobPostingsInOrder.put(jobNumber, job);
+            } finally {
+                journal.endChange();
+            }
+            // The version bump refreshes cached listings
+            jobPostingsVersion.incrementAndGet();
+            searchIndex.add(jobNumber, job);
+            facetIndex.add(jobNumber, job);
+            skillMatcher.setJobSkills(jobId, job.getSkills());
+            // Step 13: Send posting update to job seekers
+            notifications.publish(NotificationHub.Topic.JOBS, job.toString(), null);
+            changes.append(Protocol.EVENT_JOB_POSTED, job.toString(), null);
             return "Job posted successfully with ID: " + jobId;
         } catch (Exception e) {
             return "Error creating job posting: " + e.getMessage();
@@ -67,8 +356,17 @@ public class DataManager {
      * stored)
      */
     public String createApplication(String applicationData) {
+        return createApplication(applicationData.split("\\|"));
+    }
+
+    /**
+     * Creates an application from already separated fields.
+     * 
+     * @param parts job ID, applicant ID and resume
+     * @return A message with the new application's ID, or an error
+     */
+    public String createApplication(String[] parts) {
         try {
-            String[] parts = applicationData.split("\\|");
             // System.out.println("Debug - DataManager: Received application data parts: " +
             // Arrays.toString(parts));
             if (parts.length != 3) {
@@ -84,18 +382,50 @@ public class DataManager {
                 return "Error: Job not found";
             }
 
+            // An uploaded resume must have finished uploading; a typed one is stored now
+            ResumeHandle resumeHandle;
+            if (resume.startsWith(Protocol.UPLOADED_RESUME_PREFIX)) {
+                resumeHandle = resumeStore.getHandle(resume.substring(Protocol.UPLOADED_RESUME_PREFIX.length()));
+                if (resumeHandle == null) {
+                    return "Error: Uploaded resume not found";
+                }
+            } else {
+                resumeHandle = resumeBlobs.store(resume.getBytes(StandardCharsets.UTF_8));
+            }
+
             // Generate a unique job seeker ID if not provided
-            String jobSeekerId = "JS" + UUID.randomUUID().toString().substring(0, 8);
+            String jobSeekerId = parts[1].trim();
+            if (jobSeekerId.isEmpty()) {
+                jobSeekerId = "JS" + UUID.randomUUID().toString().substring(0, 8);
+            }
 
-            String applicationId = "APP" + nextApplicationId++;
+            int applicationNumber = nextApplicationId.getAndIncrement();
+            String applicationId = "APP" + applicationNumber;
             Application application = new Application(
                     applicationId,
                     jobSeekerId,
                     jobId,
                     Protocol.STATUS_PENDING,
-                    resume);
+                    resumeHandle);
 
-            applications.put(applicationId, application);
+            // The resume must be on disk before an application refers to it, and
+            // the application is stored only once it is on disk too, so its
+            // status can't change before it has been logged as pending
+            journal.beginChange();
+            try {
+                resumeBlobs.awaitDurable();
+                journal.awaitDurable(journal.applicationSubmitted(application));
+                applications.put(applicationId, application);
+                applicationsInOrder.put(applicationNumber, application);
+                indexApplication(application);
+            } catch (IOException e) {
+                // A typed resume nothing refers to is given back
+                resumeBlobs.release(resumeHandle);
+                throw e;
+            } finally {
+                journal.endChange();
+            }
+            resumeBlobs.confirm(resumeHandle);
             return "Application submitted successfully with ID: " + applicationId;
         } catch (Exception e) {
             return "Error creating application: " + e.getMessage();
@@ -109,20 +439,291 @@ public class DataManager {
         try {
             String applicationId = applicationData;
 
-            // Check if the application exists
-            if (!applications.containsKey(applicationId)) {
+            // Check if the application exists (single lookup so a concurrent
+            // writer can't slip in between the check and the update)
+            Application application = applications.get(applicationId);
+            if (application == null) {
                 return "Error: Application not found";
             }
 
-            Application application = applications.get(applicationId);
-            application.setStatus(newStatus);
-
+            StatusChange change = applyStatus(application, newStatus);
+            if (change != null) {
+                try {
+                    journal.awaitDurable(change.sequence);
+                } catch (IOException e) {
+                    change.undo();
+                    throw e;
+                }
+                notifyStatusChanged(application, newStatus);
+            }
             return "Application status updated successfully";
         } catch (Exception e) {
             return "Error updating application status: " + e.getMessage();
         }
     }
 
+    /**
+     * Gets an application's resume for the text protocol, Base64 encoded on one
+     * line.
+     * 
+     * @param applicationId The application ID
+     * @return The encoded resume, or an error
+     */
+    public String getResume(String applicationId) {
+        ByteBuffer resume = getResumeBytes(applicationId);
+        if (resume == null) {
+            return "Error: Application not found";
+        }
+        byte[] bytes = new byte[resume.remaining()];
+        resume.get(bytes);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+
+    /**
+     * Gets a read-only view of an application's resume, backed by the resume
+     * blob store rather than the heap.
+     * 
+     * @param applicationId The application ID
+     * @return The resume's bytes, or null if there is no such application
+     */
+    public ByteBuffer getResumeBytes(String applicationId) {
+        Application application = applications.get(applicationId);
+        return application == null ? null : resumeBlobs.read(application.getResume());
+    }
+
+    /**
+     * Starts a chunked resume upload.
+     * 
+     * @return A message with the upload ID, or an error
+     */
+    public String beginResumeUpload() {
+        try {
+            return "Resume upload started with ID: " + resumeStore.beginUpload();
+        } catch (IOException e) {
+            return "Error starting resume upload: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Writes one chunk of a resume upload.
+     * 
+     * @param uploadId The upload ID
+     * @param offset   Where the chunk starts in the resume
+     * @param chunk    The chunk's bytes
+     * @return A confirmation, or an error
+     */
+    public String writeResumeChunk(String uploadId, String offset, byte[] chunk) {
+        try {
+            resumeStore.writeChunk(uploadId, Long.parseLong(offset.trim()), chunk);
+            return "Chunk received";
+        } catch (NumberFormatException e) {
+            return "ERROR: Invalid chunk offset: " + offset;
+        } catch (IOException e) {
+            return "Error uploading resume: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Completes a resume upload. The returned ID is attached to an application
+     * by sending it, prefixed with {@link Protocol#UPLOADED_RESUME_PREFIX}, as
+     * the resume.
+     * 
+     * @param parts upload ID and the resume's total size in bytes
+     * @return A message with the stored resume's size, or an error
+     */
+    public String finishResumeUpload(String[] parts) {
+        if (parts.length != 2) {
+            return "ERROR: Invalid upload format - Expected 2 parts (uploadId|size), got " + parts.length;
+        }
+        try {
+            long size = resumeStore.finishUpload(parts[0], Long.parseLong(parts[1].trim()));
+            return "Resume uploaded successfully with ID: " + parts[0] + " (" + size + " bytes)";
+        } catch (NumberFormatException e) {
+            return "ERROR: Invalid resume size: " + parts[1];
+        } catch (IOException e) {
+            return "Error uploading resume: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Updates the status of many applications in one pass.
+     * Each application is updated independently; one missing ID doesn't stop
+     * the others.
+     * 
+     * @param applicationIds The application IDs; each entry may also hold a
+     *                       comma-separated list of IDs
+     * @param newStatus      The status to set
+     * @return One result line per application followed by a summary line
+     */
+    public String updateApplicationStatuses(String[] applicationIds, int newStatus) {
+        StringBuilder result = new StringBuilder();
+        int requested = 0;
+        int updated = 0;
+        long lastChange = 0;
+        List<StatusChange> changed = new ArrayList<>();
+
+        for (String entry : applicationIds) {
+            for (String id : entry.split(",")) {
+                String applicationId = id.trim();
+                if (applicationId.isEmpty()) {
+                    continue;
+                }
+                requested++;
+
+                Application application = applications.get(applicationId);
+                if (application == null) {
+                    result.append(applicationId).append(": Error: Application not found\n");
+                    continue;
+                }
+                try {
+                    StatusChange change = applyStatus(application, newStatus);
+                    if (change != null) {
+                        lastChange = Math.max(lastChange, change.sequence);
+                        changed.add(change);
+                    }
+                } catch (IOException e) {
+                    result.append(applicationId).append(": Error: ").append(e.getMessage()).append("\n");
+                    continue;
+                }
+                updated++;
+                result.append(applicationId).append(": OK\n");
+            }
+        }
+
+        if (requested == 0) {
+            return "ERROR: No application IDs given";
+        }
+        // One wait covers every change, so the batch shares a sync
+        try {
+            journal.awaitDurable(lastChange);
+        } catch (IOException e) {
+            for (StatusChange change : changed) {
+                change.undo();
+            }
+            return "Error updating application statuses: " + e.getMessage();
+        }
+        for (StatusChange change : changed) {
+            notifyStatusChanged(change.application, newStatus);
+        }
+        result.append("Updated ").append(updated).append(" of ").append(requested)
+                .append(" applications to ").append(getStatusText(newStatus));
+        return result.toString();
+    }
+
+    /**
+     * Tells subscribers about a durable status change.
+     * 
+     * @param application The application that changed
+     * @param newStatus   Its new status
+     */
+    private void notifyStatusChanged(Application application, int newStatus) {
+        String change = application.getId() + "|" + application.getJobPostingId() + "|" + getStatusText(newStatus);
+        notifications.publish(NotificationHub.Topic.STATUS, change, application.getJobSeekerId());
+        changes.append(Protocol.EVENT_STATUS_CHANGED, change, application.getJobSeekerId());
+    }
+
+    /**
+     * A status change that has been logged but may not be durable yet.
+     */
+    private final class StatusChange {
+        final Application application;
+        final int oldStatus;
+        final int newStatus;
+        // The change's journal sequence number
+        final long sequence;
+
+        StatusChange(Application application, int oldStatus, int newStatus, long sequence) {
+            this.application = application;
+            this.oldStatus = oldStatus;
+            this.newStatus = newStatus;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Puts the old status back after the change failed to become
+         * durable, unless a later change has replaced it.
+         */
+        void undo() {
+            synchronized (application) {
+                if (application.getStatus() == newStatus) {
+                    moveStatus(application, oldStatus);
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets an application's status and logs the change. Status changes on one
+     * application are serialized, so they reach the journal in the order they
+     * were made.
+     * 
+     * @param application The application to update
+     * @param newStatus   The status to set
+     * @return The change, to wait on for durability, or null if nothing changed
+     * @throws IOException If the journal has failed; the status is left as it was
+     */
+    private StatusChange applyStatus(Application application, int newStatus) throws IOException {
+        synchronized (application) {
+            int oldStatus = application.getStatus();
+            if (!moveStatus(application, newStatus)) {
+                return null;
+            }
+            try {
+                return new StatusChange(application, oldStatus, newStatus,
+                        journal.statusChanged(application.getId(), newStatus));
+            } catch (IOException e) {
+                moveStatus(application, oldStatus);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Sets an application's status and moves it between status indexes, so the
+     * status index always agrees with the application's final status.
+     * 
+     * @param application The application to update
+     * @param newStatus   The status to set
+     * @return true if the status changed
+     */
+    private boolean moveStatus(Application application, int newStatus) {
+        synchronized (application) {
+            int oldStatus = application.getStatus();
+            if (oldStatus == newStatus) {
+                return false;
+            }
+            statusIndex(newStatus).add(application);
+            application.setStatus(newStatus);
+            statusIndex(oldStatus).remove(application);
+            return true;
+        }
+    }
+
+    /**
+     * Adds a new application to the secondary indexes.
+     *
+     * @param application The application that was just stored
+     */
+    private void indexApplication(Application application) {
+        applicationsByJob.computeIfAbsent(application.getJobPostingId(), k -> new ConcurrentLinkedQueue<>())
+                .add(application);
+        applicationsBySeeker.computeIfAbsent(application.getJobSeekerId(), k -> new ConcurrentLinkedQueue<>())
+                .add(application);
+        synchronized (application) {
+            statusIndex(application.getStatus()).add(application);
+        }
+    }
+
+    /**
+     * Gets the set of applications with the given status, creating it if needed.
+     *
+     * @param status The status code
+     * @return The live index set for that status
+     */
+    private Set<Application> statusIndex(int status) {
+        return applicationsByStatus.computeIfAbsent(status, k -> ConcurrentHashMap.newKeySet());
+    }
+
     /**
      * Step 12: Update a job posting (would be implemented here if updating postings
      * is supported)
@@ -130,10 +731,14 @@ public class DataManager {
     // (No method for updating job postings, but would go here)
 
     /**
-     * Step 13: Send posting update to job seekers (would be implemented here if
-     * supported)
+     * Step 13: Send posting update to job seekers (new postings and status
+     * changes are published to subscribers as they become durable)
+     * 
+     * @return The hub connections subscribe to
      */
-    // (No method for sending posting updates, but would go here)
+    public NotificationHub getNotifications() {
+        return notifications;
+    }
 
     /**
      * Step 14: Print out updated posting (job postings are formatted and returned)
@@ -148,13 +753,420 @@ public class DataManager {
         }
 
         StringBuilder result = new StringBuilder("Available Jobs:\n");
-        for (JobPosting job : jobPostings.values()) {
+        for (JobPosting job : jobPostingsInOrder.values()) {
             result.append(job.toString()).append("\n");
         }
 
         return result.toString();
     }
 
+    /**
+     * Gets one page of job postings, in the order they were posted.
+     * 
+     * @param pageData "position|pageSize", where position is either a number of
+     *                 postings to skip or a cursor returned by a previous page
+     * @return A formatted page of job postings, ending with the next cursor if
+     *         there are more postings
+     */
+    public String getJobPostingsPage(String pageData) {
+        return getJobPostingsPage(pageData.split("\\|"));
+    }
+
+    /**
+     * Gets one page of job postings from already separated fields.
+     * 
+     * @param parts position and page size
+     * @return A formatted page of job postings
+     */
+    public String getJobPostingsPage(String[] parts) {
+        return formatPage(jobPostingsInOrder, parts, "Available Jobs:\n", "No more job postings available");
+    }
+
+    /**
+     * Searches the job postings by keyword.
+     * 
+     * @param parts the keywords, the number of results to skip and the page size
+     * @return A formatted page of the best matching postings, ending with the
+     *         next offset if there are more
+     */
+    public String searchJobPostings(String[] parts) {
+        if (parts.length != 3) {
+            return "ERROR: Invalid search format - Expected 3 parts (keywords|offset|pageSize), got " + parts.length;
+        }
+
+        int offset;
+        int pageSize;
+        try {
+            offset = parts[1].trim().isEmpty() ? 0 : Integer.parseInt(parts[1].trim());
+            pageSize = Integer.parseInt(parts[2].trim());
+        } catch (NumberFormatException e) {
+            return "ERROR: Invalid search offset or page size: " + parts[1] + "|" + parts[2];
+        }
+        if (offset < 0 || offset > MAX_SEARCH_OFFSET || pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            return "ERROR: Page size must be between 1 and " + MAX_PAGE_SIZE + " and offset at most "
+                    + MAX_SEARCH_OFFSET;
+        }
+        if (JobSearchIndex.tokenize(parts[0]).isEmpty()) {
+            return "ERROR: No search keywords given";
+        }
+
+        awaitIndexed();
+        JobSearchIndex.Result found = searchIndex.search(parts[0], offset, pageSize);
+        int[] page = found.getJobs();
+        if (page.length == 0) {
+            return found.getTotal() == 0 ? "No job postings match your search" : "No more search results";
+        }
+
+        StringBuilder result = new StringBuilder("Search Results (").append(offset + 1).append("-")
+                .append(offset + page.length).append(" of ").append(found.getTotal()).append("):\n");
+        for (int jobNumber : page) {
+            result.append(jobPostingsInOrder.get(jobNumber).toString()).append("\n");
+        }
+        if (offset + page.length < found.getTotal()) {
+            result.append("Next Offset: ").append(offset + page.length).append("\n");
+        }
+        return result.toString();
+    }
+
+    /**
+     * Filters the job postings by location, company and salary range. Empty
+     * criteria match everything.
+     * 
+     * @param parts location, company, minimum salary, maximum salary, the number
+     *              of results to skip and the page size
+     * @return A formatted page of matching postings with facet counts over every
+     *         match, ending with the next offset if there are more
+     */
+    public String filterJobPostings(String[] parts) {
+        if (parts.length != 6) {
+            return "ERROR: Invalid filter format - Expected 6 parts "
+                    + "(location|company|minSalary|maxSalary|offset|pageSize), got " + parts.length;
+        }
+
+        Long minSalary = null;
+        Long maxSalary = null;
+        if (!parts[2].trim().isEmpty()) {
+            long[] bounds = JobFacetIndex.parseSalary(parts[2]);
+            if (bounds == null) {
+                return "ERROR: Invalid minimum salary: " + parts[2];
+            }
+            minSalary = bounds[0];
+        }
+        if (!parts[3].trim().isEmpty()) {
+            long[] bounds = JobFacetIndex.parseSalary(parts[3]);
+            if (bounds == null) {
+                return "ERROR: Invalid maximum salary: " + parts[3];
+            }
+            maxSalary = bounds[1];
+        }
+
+        int offset;
+        int pageSize;
+        try {
+            offset = parts[4].trim().isEmpty() ? 0 : Integer.parseInt(parts[4].trim());
+            pageSize = Integer.parseInt(parts[5].trim());
+        } catch (NumberFormatException e) {
+            return "ERROR: Invalid filter offset or page size: " + parts[4] + "|" + parts[5];
+        }
+        if (offset < 0 || pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            return "ERROR: Page size must be between 1 and " + MAX_PAGE_SIZE + " and offset at least 0";
+        }
+
+        awaitIndexed();
+        JobFacetIndex.Result found = facetIndex.filter(parts[0].trim().isEmpty() ? null : parts[0],
+                parts[1].trim().isEmpty() ? null : parts[1], minSalary, maxSalary, offset, pageSize);
+        if (found.getTotal() == 0) {
+            return "No job postings match the filter";
+        }
+
+        int[] page = found.getJobs();
+        StringBuilder result = new StringBuilder();
+        if (page.length == 0) {
+            result.append("No more filtered results (").append(found.getTotal()).append(" total)\n");
+        } else {
+            result.append("Filtered Jobs (").append(offset + 1).append("-").append(offset + page.length)
+                    .append(" of ").append(found.getTotal()).append("):\n");
+        }
+        result.append(found.getFacets());
+        for (int jobNumber : page) {
+            result.append(jobPostingsInOrder.get(jobNumber).toString()).append("\n");
+        }
+        if (offset + page.length < found.getTotal()) {
+            result.append("Next Offset: ").append(offset + page.length).append("\n");
+        }
+        return result.toString();
+    }
+
+    /**
+     * Sets a job seeker's skills, replacing any set before.
+     * 
+     * @param parts job seeker ID and skills, comma separated
+     * @return A message listing the skills on record, or an error
+     */
+    public String setJobSeekerSkills(String[] parts) {
+        // The text protocol drops a trailing empty field, so no skills may
+        // arrive as a single part
+        if (parts.length < 1 || parts.length > 2 || parts[0].trim().isEmpty()) {
+            return "ERROR: Invalid skills format - Expected 2 parts (jobSeekerId|skills), got " + parts.length;
+        }
+        String jobSeekerId = parts[0].trim();
+        String skills = parts.length == 2 ? parts[1] : "";
+        try {
+            long sequence;
+            synchronized (skillsLock) {
+                skillMatcher.setSeekerSkills(jobSeekerId, skills);
+                sequence = journal.skillsSet(jobSeekerId, skills);
+            }
+            journal.awaitDurable(sequence);
+            return "Skills updated: " + skillMatcher.getSeekerSkills(jobSeekerId);
+        } catch (IOException e) {
+            return "Error updating skills: " + e.getMessage();
+        }
+    }
+
+    /**
+     * Finds the job postings that best match a job seeker's skills.
+     * 
+     * @param parts job seeker ID and the number of matches to return
+     * @return The best matching postings, best first, or an error
+     */
+    public String matchJobsForSeeker(String[] parts) {
+        int k = parseMatchCount(parts);
+        if (k < 0) {
+            return "ERROR: Invalid match format - Expected jobSeekerId|count with a count between 1 and "
+                    + MAX_PAGE_SIZE;
+        }
+
+        awaitIndexed();
+        List<SkillMatcher.Match> matches = skillMatcher.topJobsFor(parts[0].trim(), k);
+        if (matches == null) {
+            return "Error: No skills on record - update your skills first";
+        }
+        if (matches.isEmpty()) {
+            return "No job postings match your skills";
+        }
+
+        StringBuilder result = new StringBuilder("Top Job Matches (").append(matches.size()).append("):\n");
+        for (SkillMatcher.Match match : matches) {
+            result.append("Match: ").append(formatMatch(match)).append("\n");
+            result.append(jobPostings.get(match.getId()).toString()).append("\n");
+        }
+        return result.toString();
+    }
+
+    /**
+     * Finds the job seekers whose skills best match a job posting.
+     * 
+     * @param parts job posting ID and the number of matches to return
+     * @return The best matching job seekers, best first, or an error
+     */
+    public String matchApplicantsForJob(String[] parts) {
+        int k = parseMatchCount(parts);
+        if (k < 0) {
+            return "ERROR: Invalid match format - Expected jobId|count with a count between 1 and "
+                    + MAX_PAGE_SIZE;
+        }
+
+        awaitIndexed();
+        List<SkillMatcher.Match> matches = skillMatcher.topSeekersFor(parts[0].trim(), k);
+        if (matches == null) {
+            return "Error: Job not found";
+        }
+        if (matches.isEmpty()) {
+            return "No job seekers match this job's skills";
+        }
+
+        StringBuilder result = new StringBuilder("Top Candidate Matches (").append(matches.size()).append("):\n");
+        for (SkillMatcher.Match match : matches) {
+            result.append("Job Seeker: ").append(match.getId()).append(" - ").append(formatMatch(match))
+                    .append(" - Skills: ").append(skillMatcher.getSeekerSkills(match.getId())).append("\n");
+        }
+        return result.toString();
+    }
+
+    /**
+     * Reads the count of a match command.
+     * 
+     * @return The count, or -1 if the command is malformed
+     */
+    private static int parseMatchCount(String[] parts) {
+        if (parts.length != 2 || parts[0].trim().isEmpty()) {
+            return -1;
+        }
+        try {
+            int k = Integer.parseInt(parts[1].trim());
+            return k > 0 && k <= MAX_PAGE_SIZE ? k : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static String formatMatch(SkillMatcher.Match match) {
+        return match.getShared() + " shared skill" + (match.getShared() == 1 ? "" : "s") + " ("
+                + Math.round(match.getScore() * 100) + "% of the job's skills)";
+    }
+
+    /**
+     * Waits until the recovered postings are searchable.
+     */
+    private void awaitIndexed() {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                indexed.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets one page of applications, in the order they were submitted.
+     * 
+     * @param pageData "position|pageSize", where position is either a number of
+     *                 applications to skip or a cursor returned by a previous page
+     * @return A formatted page of applications, ending with the next cursor if
+     *         there are more applications
+     */
+    public String getApplicationsPage(String pageData) {
+        return getApplicationsPage(pageData.split("\\|"));
+    }
+
+    /**
+     * Gets one page of applications from already separated fields.
+     * 
+     * @param parts position and page size
+     * @return A formatted page of applications
+     */
+    public String getApplicationsPage(String[] parts) {
+        return formatPage(applicationsInOrder, parts, "All Applications:\n", "No more applications available");
+    }
+
+    /**
+     * Formats a page of records read from an ordered map.
+     * IDs are allocated sequentially from 1 and never removed, so skipping N
+     * records is the same as starting after ID N; both offsets and cursors
+     * become a tail lookup and a page costs O(log n + page size).
+     */
+    private String formatPage(NavigableMap<Integer, ?> ordered, String[] parts, String header,
+            String emptyMessage) {
+        if (parts.length != 2) {
+            return "ERROR: Invalid page format - Expected 2 parts (position|pageSize), got " + parts.length;
+        }
+
+        int after;
+        int pageSize;
+        try {
+            String position = parts[0].trim();
+            if (position.isEmpty()) {
+                after = 0;
+            } else if (position.startsWith("C")) {
+                after = Integer.parseInt(position.substring(1), Character.MAX_RADIX);
+            } else {
+                after = Integer.parseInt(position);
+            }
+            pageSize = Integer.parseInt(parts[1].trim());
+        } catch (NumberFormatException e) {
+            return "ERROR: Invalid page position or size: " + String.join("|", parts);
+        }
+        if (after < 0 || pageSize <= 0 || pageSize > MAX_PAGE_SIZE) {
+            return "ERROR: Page size must be between 1 and " + MAX_PAGE_SIZE;
+        }
+
+        StringBuilder result = new StringBuilder(header);
+        int count = 0;
+        int last = after;
+        for (Map.Entry<Integer, ?> entry : ordered.tailMap(after, false).entrySet()) {
+            if (count == pageSize) {
+                // There is at least one more record after this page
+                result.append("Next Cursor: C").append(Integer.toString(last, Character.MAX_RADIX)).append("\n");
+                return result.toString();
+            }
+            result.append(entry.getValue().toString()).append("\n");
+            last = entry.getKey();
+            count++;
+        }
+
+        if (count == 0) {
+            return emptyMessage;
+        }
+        return result.toString();
+    }
+
+    /**
+     * Gets the postings and status changes made since a client last synced,
+     * so a client keeping its own copy of the job postings doesn't have to
+     * fetch them all again. The response starts with the sequence number to
+     * send next time. A "Full Sync" then lists every posting, for a client
+     * that is new or too far behind (sequence 0 always is); "Changes: N"
+     * lists only the changes. Each entry is a line with its type
+     * (EVENT_JOB_POSTED or EVENT_STATUS_CHANGED) followed by its details, as
+     * an event of that type carries them.
+     * 
+     * @param sequenceData The sequence number from the client's last sync
+     * @param jobSeekerId  The logged in job seeker, who sees only their own
+     *                     status changes, or null
+     * @return The changes, or an error
+     */
+    public String getChangesSince(String sequenceData, String jobSeekerId) {
+        long since;
+        try {
+            since = Long.parseLong(sequenceData.trim());
+        } catch (NumberFormatException e) {
+            return "ERROR: Invalid sequence number: " + sequenceData;
+        }
+
+        // Read before the postings, so a posting made in between is sent again rather than missed
+        long current = changes.getSequence();
+        List<ChangeLog.Change> changed = new ArrayList<>();
+        long upTo = changes.since(since, changed);
+        StringBuilder result = new StringBuilder("Sequence: ");
+        if (upTo < 0) {
+            result.append(current).append("\nFull Sync\n");
+            // Only durable postings are stored, so the copy never holds one
+            // that a failed write takes back; there is no removal to send
+            for (JobPosting job : jobPostingsInOrder.values()) {
+                result.append(Protocol.EVENT_JOB_POSTED).append("\n").append(job.toString()).append("\n");
+            }
+            return result.toString();
+        }
+
+        StringBuilder entries = new StringBuilder();
+        int count = 0;
+        for (ChangeLog.Change change : changed) {
+            if (change.isVisibleTo(jobSeekerId)) {
+                entries.append(change.getType()).append("\n").append(change.getText()).append("\n");
+                count++;
+            }
+        }
+        result.append(upTo).append("\nChanges: ").append(count).append("\n").append(entries);
+        return result.toString();
+    }
+
+    /**
+     * Gets the log of recent changes.
+     * 
+     * @return The change log
+     */
+    public ChangeLog getChangeLog() {
+        return changes;
+    }
+
+    /**
+     * Gets the current job postings version. The version changes whenever a job
+     * posting is added, so anything rendered from the postings can be cached
+     * against it.
+     *
+     * @return The job postings version
+     */
+    public long getJobPostingsVersion() {
+        return jobPostingsVersion.get();
+    }
+
     /**
      * Gets all applications.
      * 
@@ -166,7 +1178,7 @@ public class DataManager {
         }
 
         StringBuilder result = new StringBuilder("All Applications:\n");
-        for (Application app : applications.values()) {
+        for (Application app : applicationsInOrder.values()) {
             result.append(app.toString()).append("\n");
         }
 
@@ -174,20 +1186,85 @@ public class DataManager {
     }
 
     /**
-     * Gets applications for the current job seeker.
-     * 
-     * @return A formatted string of applications for the current job seeker
+     * Gets the applications submitted by a job seeker, served from the job seeker
+     * index.
+     *
+     * @param jobSeekerId The job seeker ID
+     * @return A formatted string of the job seeker's applications
+     */
+    public String getJobSeekerApplications(String jobSeekerId) {
+        Collection<Application> userApplications = applicationsBySeeker.get(jobSeekerId);
+        return formatJobSeekerApplications(
+                userApplications != null ? userApplications : Collections.<Application>emptyList());
+    }
+
+    /**
+     * Gets the applications for a job posting, served from the job posting index.
+     *
+     * @param jobId The job posting ID
+     * @return A formatted string of the applications for the job posting
      */
-    public String getCurrentJobSeekerApplications() {
-        List<Application> userApplications = new ArrayList<>();
+    public String getApplicationsForJob(String jobId) {
+        if (!jobPostings.containsKey(jobId)) {
+            return "Error: Job not found";
+        }
+
+        Collection<Application> jobApplications = applicationsByJob.get(jobId);
+        if (jobApplications == null || jobApplications.isEmpty()) {
+            return "No applications found for job " + jobId;
+        }
+
+        StringBuilder result = new StringBuilder("Applications for ").append(jobId).append(":\n");
+        for (Application app : jobApplications) {
+            result.append(app.toString()).append("\n");
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Gets the applications with a given status, served from the status index.
+     *
+     * @param statusData The status code (300 pending, 301 accepted, 302 rejected)
+     * @return A formatted string of the matching applications
+     */
+    public String getApplicationsByStatus(String statusData) {
+        int status;
+        try {
+            status = Integer.parseInt(statusData.trim());
+        } catch (NumberFormatException e) {
+            return "ERROR: Invalid status code: " + statusData;
+        }
+        if (status < Protocol.STATUS_PENDING || status > Protocol.STATUS_REJECTED) {
+            return "ERROR: Invalid status code: " + statusData;
+        }
 
-        for (Application app : applications.values()) {
-            // For now, we'll return all applications since we don't have a way to identify
-            // the current user
-            // In a real application, we would use session management or authentication
-            userApplications.add(app);
+        StringBuilder result = new StringBuilder(getStatusText(status)).append(" Applications:\n");
+        boolean found = false;
+        Set<Application> statusApplications = applicationsByStatus.get(status);
+        if (statusApplications != null) {
+            for (Application app : statusApplications) {
+                // An application moving between statuses is briefly in both sets
+                if (app.getStatus() == status) {
+                    result.append(app.toString()).append("\n");
+                    found = true;
+                }
+            }
         }
 
+        if (!found) {
+            return "No " + getStatusText(status).toLowerCase() + " applications found";
+        }
+        return result.toString();
+    }
+
+    /**
+     * Formats a job seeker's applications together with their job details.
+     *
+     * @param userApplications The applications to format
+     * @return A formatted string of the applications
+     */
+    private String formatJobSeekerApplications(Collection<Application> userApplications) {
         if (userApplications.isEmpty()) {
             return "No applications found for the current job seeker";
         }
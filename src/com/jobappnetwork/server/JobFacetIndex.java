@@ -0,0 +1,332 @@
+package com.jobappnetwork.server;
+
+import com.jobappnetwork.server.model.JobPosting;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Indexes job postings by location, company and salary so they can be
+ * filtered without looking at every posting.
+ *
+ * Locations and companies are normalized and interned into dictionary IDs,
+ * and each ID has a bitmap of the job numbers carrying it, so a filter is a
+ * bitmap intersection. Free-form salaries ("$90,000", "80k-120k", "$45/hr")
+ * are parsed into yearly bounds kept in arrays indexed by job number.
+ */
+public class JobFacetIndex {
+    // Salaries given per hour are converted to a year of full-time work
+    private static final int HOURS_PER_YEAR = 2080;
+    // Upper edges of the salary bands counted as a facet
+    private static final long[] SALARY_BANDS = { 50_000, 100_000, 150_000 };
+    // Most values listed per facet
+    private static final int MAX_FACET_VALUES = 10;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Everything below is guarded by lock
+    private final Dictionary locations = new Dictionary();
+    private final Dictionary companies = new Dictionary();
+    // Every indexed job, and the jobs whose salary could be parsed
+    private final BitSet allJobs = new BitSet();
+    private final BitSet salaryKnown = new BitSet();
+    // Per job number: dictionary IDs and salary bounds
+    private int[] locationOf = new int[16];
+    private int[] companyOf = new int[16];
+    private long[] salaryMin = new long[16];
+    private long[] salaryMax = new long[16];
+
+    /**
+     * Interns normalized values into dense IDs, remembering how each value was
+     * first written and which jobs carry it.
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+        private final List<BitSet> jobs = new ArrayList<>();
+
+        int intern(String value) {
+            String key = normalize(value);
+            Integer id = ids.get(key);
+            if (id == null) {
+                id = names.size();
+                ids.put(key, id);
+                names.add(value.trim());
+                jobs.add(new BitSet());
+            }
+            return id;
+        }
+
+        BitSet jobsWith(String value) {
+            Integer id = ids.get(normalize(value));
+            return id == null ? null : jobs.get(id);
+        }
+
+        String name(int id) {
+            return names.get(id);
+        }
+    }
+
+    /**
+     * One page of filtered jobs, with facet counts over every match.
+     */
+    public static final class Result {
+        private final int total;
+        private final int[] jobs;
+        private final String facets;
+
+        Result(int total, int[] jobs, String facets) {
+            this.total = total;
+            this.jobs = jobs;
+            this.facets = facets;
+        }
+
+        /**
+         * Gets the number of jobs matching the filter.
+         *
+         * @return The total number of matches
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * Gets the numbers of the jobs on this page, in posting order.
+         *
+         * @return The job numbers
+         */
+        public int[] getJobs() {
+            return jobs;
+        }
+
+        /**
+         * Gets the facet counts over every match, one facet per line.
+         *
+         * @return The formatted facet counts
+         */
+        public String getFacets() {
+            return facets;
+        }
+    }
+
+    /**
+     * Adds a job posting to the index.
+     *
+     * @param jobNumber The job's numeric ID
+     * @param job       The job posting
+     */
+    public void add(int jobNumber, JobPosting job) {
+        long[] salary = parseSalary(job.getSalary());
+        lock.writeLock().lock();
+        try {
+            if (jobNumber >= locationOf.length) {
+                int capacity = Math.max(jobNumber + 1, locationOf.length * 2);
+                locationOf = Arrays.copyOf(locationOf, capacity);
+                companyOf = Arrays.copyOf(companyOf, capacity);
+                salaryMin = Arrays.copyOf(salaryMin, capacity);
+                salaryMax = Arrays.copyOf(salaryMax, capacity);
+            }
+            locationOf[jobNumber] = locations.intern(job.getLocation());
+            companyOf[jobNumber] = companies.intern(job.getCompany());
+            locations.jobs.get(locationOf[jobNumber]).set(jobNumber);
+            companies.jobs.get(companyOf[jobNumber]).set(jobNumber);
+            if (salary != null) {
+                salaryMin[jobNumber] = salary[0];
+                salaryMax[jobNumber] = salary[1];
+                salaryKnown.set(jobNumber);
+            }
+            allJobs.set(jobNumber);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds the jobs matching every given criterion. A job matches a salary
+     * range if its own range overlaps it; jobs without a readable salary never
+     * match a salary range.
+     *
+     * @param location  The location to match, or null for any
+     * @param company   The company to match, or null for any
+     * @param minSalary The lowest acceptable yearly salary, or null for no limit
+     * @param maxSalary The highest acceptable yearly salary, or null for no limit
+     * @param offset    How many matches to skip
+     * @param limit     The most results to return
+     * @return The requested page of matches and the facet counts
+     */
+    public Result filter(String location, String company, Long minSalary, Long maxSalary, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            BitSet matches = (BitSet) allJobs.clone();
+            if (location != null) {
+                intersect(matches, locations.jobsWith(location));
+            }
+            if (company != null) {
+                intersect(matches, companies.jobsWith(company));
+            }
+            if (minSalary != null || maxSalary != null) {
+                matches.and(salaryKnown);
+                long low = minSalary == null ? Long.MIN_VALUE : minSalary;
+                long high = maxSalary == null ? Long.MAX_VALUE : maxSalary;
+                for (int job = matches.nextSetBit(0); job >= 0; job = matches.nextSetBit(job + 1)) {
+                    if (salaryMax[job] < low || salaryMin[job] > high) {
+                        matches.clear(job);
+                    }
+                }
+            }
+
+            // Count facets over every match while collecting the page
+            int[] locationCounts = new int[locations.names.size()];
+            int[] companyCounts = new int[companies.names.size()];
+            int[] bandCounts = new int[SALARY_BANDS.length + 1];
+            int[] page = new int[Math.max(0, Math.min(limit, matches.cardinality() - offset))];
+            int index = 0;
+            for (int job = matches.nextSetBit(0); job >= 0; job = matches.nextSetBit(job + 1)) {
+                if (index >= offset && index - offset < page.length) {
+                    page[index - offset] = job;
+                }
+                index++;
+                locationCounts[locationOf[job]]++;
+                companyCounts[companyOf[job]]++;
+                if (salaryKnown.get(job)) {
+                    bandCounts[band(salaryMax[job])]++;
+                }
+            }
+
+            String facets = "Locations: " + formatCounts(locations, locationCounts) + "\n"
+                    + "Companies: " + formatCounts(companies, companyCounts) + "\n"
+                    + "Salaries: " + formatBands(bandCounts) + "\n";
+            return new Result(index, page, facets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static void intersect(BitSet matches, BitSet jobs) {
+        if (jobs == null) {
+            matches.clear();
+        } else {
+            matches.and(jobs);
+        }
+    }
+
+    private static int band(long salary) {
+        int band = 0;
+        while (band < SALARY_BANDS.length && salary >= SALARY_BANDS[band]) {
+            band++;
+        }
+        return band;
+    }
+
+    /**
+     * Lists the most common values of a facet, most common first.
+     */
+    private static String formatCounts(Dictionary dictionary, int[] counts) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < counts.length; id++) {
+            if (counts[id] > 0) {
+                ids.add(id);
+            }
+        }
+        ids.sort((a, b) -> counts[b] != counts[a] ? Integer.compare(counts[b], counts[a]) : Integer.compare(a, b));
+
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < ids.size() && i < MAX_FACET_VALUES; i++) {
+            if (i > 0) {
+                text.append(", ");
+            }
+            text.append(dictionary.name(ids.get(i))).append(" (").append(counts[ids.get(i)]).append(")");
+        }
+        if (ids.size() > MAX_FACET_VALUES) {
+            text.append(", ... (").append(ids.size() - MAX_FACET_VALUES).append(" more)");
+        }
+        return text.length() == 0 ? "none" : text.toString();
+    }
+
+    private static String formatBands(int[] counts) {
+        StringBuilder text = new StringBuilder();
+        for (int band = 0; band < counts.length; band++) {
+            if (band > 0) {
+                text.append(", ");
+            }
+            if (band == 0) {
+                text.append("under ").append(SALARY_BANDS[0] / 1000).append("k");
+            } else if (band == SALARY_BANDS.length) {
+                text.append(SALARY_BANDS[band - 1] / 1000).append("k+");
+            } else {
+                text.append(SALARY_BANDS[band - 1] / 1000).append("k-").append(SALARY_BANDS[band] / 1000).append("k");
+            }
+            text.append(" (").append(counts[band]).append(")");
+        }
+        return text.toString();
+    }
+
+    /**
+     * Normalizes a location or company so differently written forms of the
+     * same value ("New York", " new  york") share an ID.
+     *
+     * @param value The value as written
+     * @return The normalized value
+     */
+    static String normalize(String value) {
+        return value == null ? "" : value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Parses a free-form salary into yearly bounds. Understands thousands
+     * separators, a "k" suffix, a range ("80k-120k" or "80k to 120k") and
+     * hourly rates.
+     *
+     * @param salary The salary as written
+     * @return The lowest and highest yearly salary, or null if it has no
+     *         number
+     */
+    static long[] parseSalary(String salary) {
+        if (salary == null) {
+            return null;
+        }
+        String text = salary.toLowerCase(Locale.ROOT).replace(",", "");
+        List<Long> amounts = new ArrayList<>(2);
+        int i = 0;
+        while (i < text.length() && amounts.size() < 2) {
+            if (!Character.isDigit(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < text.length() && (Character.isDigit(text.charAt(i)) || text.charAt(i) == '.')) {
+                i++;
+            }
+            double amount;
+            try {
+                amount = Double.parseDouble(text.substring(start, i));
+            } catch (NumberFormatException e) {
+                continue;
+            }
+            if (i < text.length() && text.charAt(i) == 'k') {
+                amount *= 1000;
+            }
+            amounts.add((long) amount);
+        }
+        if (amounts.isEmpty()) {
+            return null;
+        }
+
+        long low = amounts.get(0);
+        long high = amounts.get(amounts.size() - 1);
+        // "80-120k" puts the k on the second number only
+        if (amounts.size() == 2 && low < 1000 && high >= 1000) {
+            low *= 1000;
+        }
+        if (text.contains("/h") || text.contains("hour")) {
+            low *= HOURS_PER_YEAR;
+            high *= HOURS_PER_YEAR;
+        }
+        return new long[] { Math.min(low, high), Math.max(low, high) };
+    }
+}
@@ -0,0 +1,125 @@
+package com.jobappnetwork.server;
+
+import com.jobappnetwork.protocol.ResponseCompression;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Caches the rendered VIEW_JOBS response.
+ * The snapshot is tagged with the job posting version it was rendered from;
+ * it is rebuilt on the first read after a new posting changes that version,
+ * and served as-is otherwise. Clients that asked for compression get the
+ * listing deflated once per snapshot rather than once per request.
+ */
+public class JobListingCache {
+    private volatile Snapshot snapshot;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    /**
+     * An immutable rendered listing.
+     */
+    private static final class Snapshot {
+        final long version;
+        final String text;
+        final byte[] encoded;
+        // Compressed on first use, so servers without compressing clients never pay for it
+        volatile byte[] deflated;
+        volatile boolean deflateTried;
+
+        Snapshot(long version, String text) {
+            this.version = version;
+            this.text = text;
+            this.encoded = ResponseEncoder.encode(text);
+        }
+
+        byte[] deflated() {
+            if (!deflateTried) {
+                // Benign race: concurrent callers compress identical bytes
+                deflated = ResponseCompression.deflate(text.getBytes(StandardCharsets.UTF_8));
+                deflateTried = true;
+            }
+            return deflated;
+        }
+    }
+
+    /**
+     * Creates an empty cache.
+     */
+    public JobListingCache() {
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    /**
+     * Gets the snapshot for the current version, rendering it on a miss.
+     * The version must be read before rendering so a posting added while
+     * rendering leaves the new snapshot stale rather than wrongly current.
+     */
+    private Snapshot snapshot(long version, Supplier<String> renderer) {
+        Snapshot current = snapshot;
+        if (current != null && current.version == version) {
+            hits.incrementAndGet();
+            return current;
+        }
+
+        misses.incrementAndGet();
+        Snapshot rendered = new Snapshot(version, renderer.get());
+        snapshot = rendered;
+        return rendered;
+    }
+
+    /**
+     * Gets the rendered listing text.
+     *
+     * @param version  The current job posting version
+     * @param renderer Renders the listing if the cached one is stale
+     * @return The listing text
+     */
+    public String getText(long version, Supplier<String> renderer) {
+        return snapshot(version, renderer).text;
+    }
+
+    /**
+     * Gets the listing already framed for the text protocol, ready to be written
+     * to the socket. The returned array is shared and must not be modified.
+     *
+     * @param version  The current job posting version
+     * @param renderer Renders the listing if the cached one is stale
+     * @return The framed listing bytes
+     */
+    public byte[] getEncoded(long version, Supplier<String> renderer) {
+        return snapshot(version, renderer).encoded;
+    }
+
+    /**
+     * Gets the listing compressed for a binary protocol client that asked for
+     * compression. The returned array is shared and must not be modified.
+     *
+     * @param version  The current job posting version
+     * @param renderer Renders the listing if the cached one is stale
+     * @return The compressed listing, or null if it's too short to compress
+     */
+    public byte[] getDeflated(long version, Supplier<String> renderer) {
+        return snapshot(version, renderer).deflated();
+    }
+
+    /**
+     * Gets the number of requests served from the cache.
+     *
+     * @return The hit count
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of requests that had to render the listing.
+     *
+     * @return The miss count
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+}
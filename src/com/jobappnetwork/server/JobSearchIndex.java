@@ -0,0 +1,225 @@
+package com.jobappnetwork.server;
+
+import com.jobappnetwork.server.model.JobPosting;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory inverted index over job postings for keyword search.
+ * Every term maps to a posting list of the jobs containing it and how well
+ * each job matches, so a search only visits the jobs that contain one of its
+ * terms. Postings are added as jobs are created; the index never has to be
+ * rebuilt.
+ *
+ * Results are ranked by BM25-style scoring: rare terms count more than common
+ * ones, repeated terms count with diminishing returns, and matches in the
+ * title and skills count more than matches in the description.
+ */
+public class JobSearchIndex {
+    // How much a match in each field counts
+    private static final float TITLE_BOOST = 3.0f;
+    private static final float SKILLS_BOOST = 2.0f;
+    private static final float COMPANY_BOOST = 1.5f;
+    private static final float DESCRIPTION_BOOST = 1.0f;
+    // Term frequency saturation
+    private static final float K1 = 1.2f;
+
+    private final Map<String, PostingList> postings;
+    private final AtomicInteger documents;
+
+    /**
+     * The jobs containing one term and the term's weight in each.
+     * Appends happen under the list's lock; readers copy the array references
+     * and size under the lock and then read without it, since entries below
+     * the size are never changed.
+     */
+    private static final class PostingList {
+        private int[] jobs = new int[4];
+        private float[] weights = new float[4];
+        private int size;
+
+        synchronized void add(int job, float weight) {
+            if (size == jobs.length) {
+                jobs = Arrays.copyOf(jobs, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            jobs[size] = job;
+            weights[size] = weight;
+            size++;
+        }
+    }
+
+    /**
+     * One page of ranked search results.
+     */
+    public static final class Result {
+        private final int total;
+        private final int[] jobs;
+
+        Result(int total, int[] jobs) {
+            this.total = total;
+            this.jobs = jobs;
+        }
+
+        /**
+         * Gets the number of jobs matching the query.
+         *
+         * @return The total number of matches
+         */
+        public int getTotal() {
+            return total;
+        }
+
+        /**
+         * Gets the numbers of the jobs on this page, best match first.
+         *
+         * @return The job numbers
+         */
+        public int[] getJobs() {
+            return jobs;
+        }
+    }
+
+    /**
+     * Creates an empty index.
+     */
+    public JobSearchIndex() {
+        this.postings = new ConcurrentHashMap<>();
+        this.documents = new AtomicInteger();
+    }
+
+    /**
+     * Adds a job posting to the index.
+     *
+     * @param jobNumber The job's numeric ID
+     * @param job       The job posting
+     */
+    public void add(int jobNumber, JobPosting job) {
+        Map<String, Float> terms = new HashMap<>();
+        addField(terms, job.getTitle(), TITLE_BOOST);
+        addField(terms, job.getSkills(), SKILLS_BOOST);
+        addField(terms, job.getCompany(), COMPANY_BOOST);
+        addField(terms, job.getDescription(), DESCRIPTION_BOOST);
+
+        for (Map.Entry<String, Float> term : terms.entrySet()) {
+            float frequency = term.getValue();
+            float weight = frequency * (K1 + 1) / (frequency + K1);
+            postings.computeIfAbsent(term.getKey(), k -> new PostingList()).add(jobNumber, weight);
+        }
+        documents.incrementAndGet();
+    }
+
+    private static void addField(Map<String, Float> terms, String text, float boost) {
+        for (String term : tokenize(text)) {
+            terms.merge(term, boost, Float::sum);
+        }
+    }
+
+    /**
+     * Finds the jobs matching any of the query's terms, best match first.
+     *
+     * @param query  The keywords to search for
+     * @param offset How many of the best matches to skip
+     * @param limit  The most results to return
+     * @return The requested page of results
+     */
+    public Result search(String query, int offset, int limit) {
+        int totalDocuments = documents.get();
+        Map<Integer, float[]> scores = new HashMap<>();
+        for (String term : new LinkedHashSet<>(tokenize(query))) {
+            PostingList list = postings.get(term);
+            if (list == null) {
+                continue;
+            }
+            int[] jobs;
+            float[] weights;
+            int size;
+            synchronized (list) {
+                jobs = list.jobs;
+                weights = list.weights;
+                size = list.size;
+            }
+            float idf = (float) Math.log(1 + (totalDocuments - size + 0.5) / (size + 0.5));
+            for (int i = 0; i < size; i++) {
+                scores.computeIfAbsent(jobs[i], k -> new float[1])[0] += idf * weights[i];
+            }
+        }
+
+        // Keep only the best offset + limit matches; the weakest is at the head
+        Comparator<Map.Entry<Integer, float[]>> ranking = (a, b) -> {
+            int byScore = Float.compare(a.getValue()[0], b.getValue()[0]);
+            // Ties go to the newer job
+            return byScore != 0 ? byScore : Integer.compare(a.getKey(), b.getKey());
+        };
+        int keep = offset + limit;
+        PriorityQueue<Map.Entry<Integer, float[]>> best = new PriorityQueue<>(Math.min(keep, 1024) + 1, ranking);
+        for (Map.Entry<Integer, float[]> entry : scores.entrySet()) {
+            best.add(entry);
+            if (best.size() > keep) {
+                best.poll();
+            }
+        }
+
+        List<Integer> ranked = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            ranked.add(best.poll().getKey());
+        }
+        int[] page = new int[Math.max(0, ranked.size() - offset)];
+        for (int i = 0; i < page.length; i++) {
+            // ranked is weakest first
+            page[i] = ranked.get(ranked.size() - 1 - offset - i);
+        }
+        return new Result(scores.size(), page);
+    }
+
+    /**
+     * Splits text into lower-case words of letters and digits.
+     *
+     * @param text The text to split
+     * @return The words, in order, with repeats
+     */
+    static List<String> tokenize(String text) {
+        List<String> terms = new ArrayList<>();
+        if (text == null) {
+            return terms;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean wordChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                terms.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+                start = -1;
+            }
+        }
+        return terms;
+    }
+
+    /**
+     * Gets the number of distinct terms indexed.
+     *
+     * @return The number of terms
+     */
+    public int getTermCount() {
+        return postings.size();
+    }
+
+    /**
+     * Gets the number of job postings indexed.
+     *
+     * @return The number of postings
+     */
+    public int getDocumentCount() {
+        return documents.get();
+    }
+}
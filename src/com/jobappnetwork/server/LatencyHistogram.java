@@ -0,0 +1,117 @@
+package com.jobappnetwork.server;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram in the style of HdrHistogram.
+ *
+ * Values are counted in log-linear buckets: every power of two is split into
+ * 16 sub-buckets, so any recorded value is reported within about 6% of its
+ * true value while the whole range from 1 microsecond to days (or from 1
+ * nanosecond to minutes) fits in a few hundred counters. Recording is one
+ * array increment, so it can be done on every request.
+ */
+public class LatencyHistogram {
+    // Values below this are counted exactly
+    private static final int LINEAR_BUCKETS = 32;
+    private static final int SUB_BUCKETS = 16;
+    // Highest power-of-two shift tracked; larger values share the last bucket
+    private static final int MAX_SHIFT = 40;
+    private static final int BUCKETS = LINEAR_BUCKETS + MAX_SHIFT * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records one value.
+     *
+     * @param value The value, such as a latency in microseconds; negative
+     *              values count as 0
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(bucket(v));
+        total.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    private static int bucket(long value) {
+        if (value < LINEAR_BUCKETS) {
+            return (int) value;
+        }
+        // Shift so the top bits fall in [SUB_BUCKETS, 2 * SUB_BUCKETS)
+        int shift = 63 - Long.numberOfLeadingZeros(value) - 4;
+        if (shift > MAX_SHIFT) {
+            return BUCKETS - 1;
+        }
+        return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (int) (value >>> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Gets the highest value counted in a bucket.
+     */
+    private static long highestValue(int bucket) {
+        if (bucket < LINEAR_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+        long sub = (bucket - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * Gets the value below which the given share of recorded values fall.
+     *
+     * @param percentile The percentile, from 0 to 100
+     * @return The value, or 0 if nothing was recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        long count = total.sum();
+        if (count == 0) {
+            return 0;
+        }
+        long target = Math.max(1, (long) Math.ceil(count * percentile / 100.0));
+        long highest = max.get();
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= target) {
+                return Math.min(highestValue(i), highest);
+            }
+        }
+        return highest;
+    }
+
+    /**
+     * Gets the number of values recorded.
+     *
+     * @return The count
+     */
+    public long getCount() {
+        return total.sum();
+    }
+
+    /**
+     * Gets the mean of the recorded values.
+     *
+     * @return The mean, or 0 if nothing was recorded
+     */
+    public double getMean() {
+        long count = total.sum();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * Gets the largest recorded value.
+     *
+     * @return The maximum
+     */
+    public long getMax() {
+        return max.get();
+    }
+}
@@ -0,0 +1,623 @@
+package com.jobappnetwork.server;
+
+import com.jobappnetwork.protocol.BinaryCodec;
+import com.jobappnetwork.protocol.Protocol;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Non-blocking server engine for the job application network.
+ * A single selector thread accepts connections and frames the newline based
+ * protocol used by {@link ClientHandler}; commands are executed on a bounded
+ * worker pool so idle connections do not each hold a thread.
+ */
+public class NioServer {
+    // Largest line or frame we are willing to buffer
+    private static final int MAX_INPUT_LENGTH = 4 + BinaryCodec.MAX_FRAME_LENGTH;
+    private static final int READ_BUFFER_SIZE = 8 * 1024;
+    // Binary requests one connection may have in flight before we stop reading
+    private static final int MAX_PIPELINED_REQUESTS = 128;
+    // Queued response buffers past which we stop reading from a connection
+    private static final int MAX_QUEUED_RESPONSES = 64;
+
+    private final int port;
+    private final DataManager dataManager;
+    private final CommandProcessor commandProcessor;
+    private final ServerMetrics metrics;
+    private final ThreadPoolExecutor workers;
+    // Work handed back to the selector thread by the workers
+    private final Queue<Runnable> selectorTasks;
+    // Connections holding commands the full worker queue could not take yet
+    private final Queue<Connection> starved;
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private volatile boolean running;
+
+    /**
+     * Creates a new NioServer instance.
+     *
+     * @param port          The port to listen on
+     * @param workerThreads The number of threads executing commands
+     * @param queueCapacity The maximum number of commands waiting for a worker
+     */
+    public NioServer(int port, int workerThreads, int queueCapacity) {
+        this(port, workerThreads, queueCapacity, Paths.get(DataManager.DEFAULT_DATA_DIRECTORY));
+    }
+
+    /**
+     * Creates a new NioServer instance.
+     *
+     * @param port          The port to listen on
+     * @param workerThreads The number of threads executing commands
+     * @param queueCapacity The maximum number of commands waiting for a worker
+     * @param dataDirectory Where the server's data is kept
+     */
+    public NioServer(int port, int workerThreads, int queueCapacity, Path dataDirectory) {
+        this.port = port;
+        // Data loads in the background while the server starts accepting connections
+        this.dataManager = new DataManager(dataDirectory, true);
+        this.commandProcessor = new CommandProcessor(dataManager);
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity));
+        this.metrics = commandProcessor.getMetrics();
+        metrics.registerGauge("Worker queue depth", () -> workers.getQueue().size());
+        metrics.registerGauge("Active workers", workers::getActiveCount);
+        this.selectorTasks = new ConcurrentLinkedQueue<>();
+        this.starved = new ArrayDeque<>();
+        this.running = false;
+    }
+
+    /**
+     * Starts the server and runs the selector loop until {@link #stop()} is
+     * called.
+     *
+     * @throws IOException If there's an error starting the server
+     */
+    public void start() throws IOException {
+        // Step 1: Listen on a specific port for a connection request
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.bind(new InetSocketAddress(port));
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        running = true;
+
+        System.out.println("Server (NIO) is now listening for connections on port " + port + " ("
+                + ManagementFactory.getRuntimeMXBean().getUptime() + " ms after startup)");
+
+        try {
+            while (running) {
+                selector.select();
+                runSelectorTasks();
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+
+                    try {
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else {
+                            Connection connection = (Connection) key.attachment();
+                            if (key.isReadable()) {
+                                connection.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.write();
+                            }
+                        }
+                    } catch (IOException e) {
+                        if (key.attachment() instanceof Connection) {
+                            ((Connection) key.attachment()).close();
+                        } else if (running) {
+                            System.err.println("Error accepting client connection: " + e.getMessage());
+                        }
+                    }
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            // stop() closed the selector while we were waiting
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    /**
+     * Stops the server and closes all resources.
+     */
+    public void stop() {
+        running = false;
+        try {
+            if (serverChannel != null && serverChannel.isOpen()) {
+                serverChannel.close();
+            }
+            if (selector != null && selector.isOpen()) {
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+                selector.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Error closing server socket: " + e.getMessage());
+        }
+        workers.shutdown();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        dataManager.close();
+    }
+
+    /**
+     * Accepts a pending connection and registers it for reads.
+     */
+    private void accept() throws IOException {
+        // Step 3: Accept connection request from client
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+        metrics.connectionOpened();
+        System.out.println("New connection accepted from: " + channel.socket().getInetAddress().getHostAddress());
+    }
+
+    /**
+     * Runs the work that worker threads queued for the selector thread.
+     */
+    private void runSelectorTasks() {
+        Runnable task;
+        while ((task = selectorTasks.poll()) != null) {
+            task.run();
+        }
+
+        // Completed commands freed room in the worker queue
+        while (!starved.isEmpty() && starved.peek().resubmit()) {
+            starved.poll();
+        }
+    }
+
+    /**
+     * Per-connection state owned by the selector thread.
+     * On the text protocol only one command per connection is executed at a
+     * time so responses go out in the order the commands were received. Binary
+     * requests carry a correlation ID, so up to MAX_PIPELINED_REQUESTS of them
+     * run concurrently and are answered as they complete.
+     */
+    private final class Connection {
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private ByteBuffer input;
+        // Bytes at the front of the input already searched for a newline
+        private int scanned;
+        private final Queue<ByteBuffer> output;
+        // Command read from the previous line that is still waiting for its data
+        private int pendingCommand;
+        private boolean awaitingData;
+        // Set once the client switches to binary frames
+        private boolean binary;
+        private int inFlight;
+        // Commands waiting for room in the worker queue, in arrival order
+        private final Queue<Runnable> deferred;
+        // Who each stream on the connection belongs to, and its subscription
+        private final StreamSessions streams;
+        // Set once the client sends USE_COMPRESSION
+        private boolean compress;
+        private boolean closed;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+            this.input = ByteBuffer.allocate(READ_BUFFER_SIZE);
+            this.output = new ArrayDeque<>();
+            this.deferred = new ArrayDeque<>();
+            this.streams = new StreamSessions(channel.socket().getInetAddress().isLoopbackAddress());
+        }
+
+        /**
+         * Reads whatever is available and processes complete lines.
+         */
+        void read() throws IOException {
+            if (!input.hasRemaining()) {
+                grow();
+            }
+            int read = channel.read(input);
+            if (read < 0) {
+                close();
+                return;
+            }
+            metrics.addBytesIn(read);
+            processLines();
+        }
+
+        /**
+         * Doubles the input buffer, up to the maximum input length.
+         */
+        private void grow() throws IOException {
+            if (input.capacity() >= MAX_INPUT_LENGTH) {
+                throw new IOException("Input exceeds " + MAX_INPUT_LENGTH + " bytes");
+            }
+            ByteBuffer larger = ByteBuffer.allocate(Math.min(input.capacity() * 2, MAX_INPUT_LENGTH));
+            input.flip();
+            larger.put(input);
+            input = larger;
+        }
+
+        /**
+         * Parses complete lines (or frames) from the input buffer until a command
+         * is handed to a worker or no complete one is left.
+         */
+        private void processLines() {
+            while (canDispatch() && !closed) {
+                if (binary) {
+                    if (!processFrame()) {
+                        break;
+                    }
+                    continue;
+                }
+
+                int newline = findNewline();
+                if (newline < 0) {
+                    break;
+                }
+                int length = (newline > 0 && input.get(newline - 1) == '\r') ? newline - 1 : newline;
+
+                if (awaitingData) {
+                    awaitingData = false;
+                    final int command = pendingCommand;
+                    final String data = new String(input.array(), 0, length, ResponseEncoder.CHARSET);
+                    final Session session = streams.get(0);
+                    consume(newline + 1);
+                    dispatch(() -> wrap(ResponseEncoder.encode(
+                            commandProcessor.processCommandWithData(command, data, session))));
+                    continue;
+                }
+
+                // The command is parsed in place, without turning the line into a String
+                final int command = Protocol.parseCommand(input.array(), 0, length);
+                consume(newline + 1);
+                if (command == Protocol.INVALID_COMMAND) {
+                    send("ERROR: Invalid command format");
+                    continue;
+                }
+                if (command == Protocol.USE_BINARY_PROTOCOL) {
+                    // Confirm in text; everything after this is framed
+                    send(BinaryCodec.SWITCH_CONFIRMATION);
+                    binary = true;
+                    continue;
+                }
+                // Only wait for additional data for commands that require it
+                if (commandProcessor.requiresData(command)) {
+                    pendingCommand = command;
+                    awaitingData = true;
+                } else {
+                    final Session session = streams.get(0);
+                    dispatch(() -> wrap(commandProcessor.processCommandEncoded(command, session)));
+                }
+            }
+            updateInterest();
+        }
+
+        /**
+         * Finds the end of the first complete line in the input buffer. Only
+         * the bytes that arrived since the last search are looked at, so a long
+         * line arriving in many reads is scanned once.
+         *
+         * @return The index of the line's newline, or -1 if none is complete
+         */
+        private int findNewline() {
+            byte[] buffered = input.array();
+            int end = input.position();
+            for (int i = scanned; i < end; i++) {
+                if (buffered[i] == '\n') {
+                    scanned = i;
+                    return i;
+                }
+            }
+            scanned = end;
+            return -1;
+        }
+
+        /**
+         * Removes bytes that have been processed from the front of the input
+         * buffer.
+         */
+        private void consume(int count) {
+            input.flip();
+            input.position(count);
+            input.compact();
+            scanned = 0;
+        }
+
+        /**
+         * Decodes and dispatches one binary request frame if it has fully arrived.
+         *
+         * @return true if a frame was consumed, false if more input is needed
+         */
+        private boolean processFrame() {
+            if (input.position() < 4) {
+                return false;
+            }
+            int length = input.getInt(0);
+            if (length < 0 || length > BinaryCodec.MAX_FRAME_LENGTH) {
+                System.err.println("Error handling client: invalid frame length " + length);
+                close();
+                return false;
+            }
+            if (input.position() < 4 + length) {
+                return false;
+            }
+
+            final BinaryCodec.Request request;
+            try {
+                request = BinaryCodec.decodeRequest(ByteBuffer.wrap(Arrays.copyOfRange(input.array(), 4, 4 + length)));
+            } catch (IOException e) {
+                System.err.println("Error handling client: " + e.getMessage());
+                close();
+                return false;
+            }
+            consume(4 + length);
+
+            final Session session = streams.get(request.streamId);
+            if (session == null) {
+                output.add(ByteBuffer.wrap(CommandProcessor.encodeResponse(request,
+                        "ERROR: Too many streams open, the limit is " + StreamSessions.MAX_STREAMS)));
+                return true;
+            }
+            if (request.command == Protocol.SUBSCRIBE) {
+                subscribe(request, session);
+                return true;
+            }
+            if (request.command == Protocol.CLOSE_STREAM) {
+                output.add(ByteBuffer.wrap(CommandProcessor.closeStream(request, streams)));
+                return true;
+            }
+            if (request.command == Protocol.USE_COMPRESSION) {
+                compress = true;
+                output.add(ByteBuffer.wrap(CommandProcessor.useCompression(request)));
+                return true;
+            }
+
+            // A resume is written from the blob store's mapping with a gathering write
+            final boolean compressed = compress;
+            dispatch(() -> commandProcessor.processRequestFrame(request, session, compressed));
+            return true;
+        }
+
+        /**
+         * Subscribes a stream to pushed events, replacing its earlier
+         * subscription. The subscription signals the selector thread, which
+         * moves events into the output queue as room allows.
+         */
+        private void subscribe(BinaryCodec.Request request, Session session) {
+            final int streamId = request.streamId;
+            NotificationHub.Subscription next = commandProcessor.subscribe(request, () -> {
+                selectorTasks.add(() -> drainEvents(streams.getSubscription(streamId)));
+                selector.wakeup();
+            }, session);
+            if (next != null) {
+                streams.subscribe(streamId, next);
+            }
+            output.add(ByteBuffer.wrap(CommandProcessor.encodeSubscribeResponse(request, next)));
+        }
+
+        /**
+         * Moves a subscription's waiting events into the output queue until it
+         * is full. Events left behind wait in the subscription's bounded queue,
+         * which drops the oldest once it fills up; writing more output drains
+         * them later.
+         */
+        private void drainEvents(NotificationHub.Subscription subscription) {
+            if (closed || subscription == null) {
+                return;
+            }
+            while (output.size() < MAX_QUEUED_RESPONSES) {
+                byte[] event = subscription.poll();
+                if (event == null) {
+                    subscription.idle();
+                    break;
+                }
+                output.add(ByteBuffer.wrap(event));
+            }
+            updateInterest();
+        }
+
+        /**
+         * Hands a command to the worker pool; the response is queued back on the
+         * selector thread when it is ready. If the worker queue is full the
+         * command waits on this connection until another command completes.
+         *
+         * @param command Produces the encoded response
+         */
+        private void dispatch(Callable<ByteBuffer[]> command) {
+            inFlight++;
+            Runnable task = () -> {
+                ByteBuffer[] response;
+                try {
+                    response = command.call();
+                } catch (Exception e) {
+                    response = wrap(ResponseEncoder.encode("ERROR: " + e.getMessage()));
+                }
+                final ByteBuffer[] buffers = response;
+                selectorTasks.add(() -> complete(buffers));
+                selector.wakeup();
+            };
+
+            if (!deferred.isEmpty() || !submit(task)) {
+                deferred.add(task);
+                if (deferred.size() == 1) {
+                    starved.add(this);
+                }
+            }
+        }
+
+        /**
+         * Offers a task to the worker pool.
+         *
+         * @return false if the worker queue is full
+         */
+        private boolean submit(Runnable task) {
+            try {
+                workers.execute(task);
+                return true;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+
+        /**
+         * Submits deferred commands until the worker queue is full again.
+         *
+         * @return true if nothing is left deferred on this connection
+         */
+        boolean resubmit() {
+            if (closed) {
+                deferred.clear();
+                return true;
+            }
+            while (!deferred.isEmpty()) {
+                if (!submit(deferred.peek())) {
+                    return false;
+                }
+                deferred.poll();
+            }
+            return true;
+        }
+
+        /**
+         * Called on the selector thread once a worker has produced a response.
+         */
+        private void complete(ByteBuffer[] response) {
+            if (closed) {
+                return;
+            }
+            inFlight--;
+            output.addAll(Arrays.asList(response));
+            // Lines that arrived while the command was running
+            processLines();
+        }
+
+        /**
+         * Wraps an encoded response for {@link #dispatch}.
+         */
+        private ByteBuffer[] wrap(byte[] response) {
+            return new ByteBuffer[] { ByteBuffer.wrap(response) };
+        }
+
+        /**
+         * Queues a response produced on the selector thread itself.
+         */
+        private void send(String response) {
+            output.add(ByteBuffer.wrap(ResponseEncoder.encode(response)));
+        }
+
+        /**
+         * Writes as much queued output as the socket accepts.
+         */
+        void write() throws IOException {
+            while (!output.isEmpty()) {
+                ByteBuffer buffer = output.peek();
+                metrics.addBytesOut(channel.write(buffer));
+                if (buffer.hasRemaining()) {
+                    break;
+                }
+                output.poll();
+            }
+            if (output.size() < MAX_QUEUED_RESPONSES) {
+                // Room for events that were held back
+                for (NotificationHub.Subscription subscription : streams.getSubscriptions()) {
+                    drainEvents(subscription);
+                }
+            }
+            updateInterest();
+        }
+
+        /**
+         * Checks whether another command may be handed to the workers.
+         */
+        private boolean canDispatch() {
+            return inFlight < (binary ? MAX_PIPELINED_REQUESTS : 1);
+        }
+
+        /**
+         * Reads only while more commands may be dispatched and writes only when
+         * output is pending, so a slow reader applies backpressure instead of
+         * growing our buffers.
+         */
+        private void updateInterest() {
+            if (closed || !key.isValid()) {
+                return;
+            }
+            int ops = 0;
+            boolean outputFull = binary ? output.size() >= MAX_QUEUED_RESPONSES : !output.isEmpty();
+            if (canDispatch() && !outputFull) {
+                ops |= SelectionKey.OP_READ;
+            }
+            if (!output.isEmpty()) {
+                ops |= SelectionKey.OP_WRITE;
+            }
+            key.interestOps(ops);
+        }
+
+        /**
+         * Closes the connection and releases its key.
+         */
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            metrics.connectionClosed();
+            streams.closeAll();
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing resources: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The main method to start the NIO server.
+     *
+     * @param args Command line arguments (not used)
+     */
+    public static void main(String[] args) {
+        int port = 8080; // Default port
+        int workers = Runtime.getRuntime().availableProcessors();
+
+        NioServer server = new NioServer(port, workers, workers * 64);
+        try {
+            server.start();
+        } catch (IOException e) {
+            System.err.println("Could not start server: " + e.getMessage());
+        }
+    }
+}
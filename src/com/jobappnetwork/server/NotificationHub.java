@@ -0,0 +1,193 @@
+package com.jobappnetwork.server;
+
+import com.jobappnetwork.protocol.BinaryCodec;
+import com.jobappnetwork.protocol.Protocol;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pushes changes to subscribed connections, so clients don't have to poll
+ * for new job postings and status changes.
+ *
+ * Every subscription has its own bounded queue. Publishing never blocks: when
+ * a subscriber's queue is full its oldest event is dropped, and the subscriber
+ * is told how many events it missed before its next event, so it knows to
+ * refresh. A subscription's connection is signalled when events are waiting
+ * and drains the queue at its own pace.
+ */
+public class NotificationHub {
+    // Events a subscriber may fall behind by before the oldest are dropped
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    /**
+     * The kinds of change a connection can subscribe to.
+     */
+    public enum Topic {
+        JOBS(Protocol.EVENT_JOB_POSTED),
+        STATUS(Protocol.EVENT_STATUS_CHANGED);
+
+        private final String eventType;
+
+        Topic(String eventType) {
+            this.eventType = eventType;
+        }
+    }
+
+    // Weakly consistent iteration lets publishers run while subscribers come and go
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * One connection's subscription. The connection is signalled when the
+     * queue goes from empty to non-empty and then polls until it is empty.
+     */
+    public final class Subscription {
+        private final Set<Topic> topics;
+        // Only events about this user (or about nobody in particular), if set
+        private final String userId;
+        private final int streamId;
+        private final BlockingQueue<byte[]> queue;
+        private final Runnable signal;
+        private final AtomicBoolean signalled = new AtomicBoolean();
+        private final AtomicLong dropped = new AtomicLong();
+
+        Subscription(Set<Topic> topics, String userId, int streamId, int capacity, Runnable signal) {
+            this.topics = topics;
+            this.userId = userId;
+            this.streamId = streamId;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.signal = signal;
+        }
+
+        /**
+         * Queues an event, dropping the oldest one if the queue is full.
+         */
+        void offer(String type, String text) {
+            byte[] frame = encode(type, text);
+            while (!queue.offer(frame)) {
+                if (queue.poll() != null) {
+                    dropped.incrementAndGet();
+                }
+            }
+            if (signalled.compareAndSet(false, true)) {
+                signal.run();
+            }
+        }
+
+        /**
+         * Takes the next event frame, preceded by a notice of any dropped events.
+         *
+         * @return The encoded event frame, or null if none is waiting
+         */
+        public byte[] poll() {
+            long missed = dropped.getAndSet(0);
+            if (missed > 0) {
+                return encode(Protocol.EVENT_DROPPED, missed + " notifications were dropped; refresh to catch up");
+            }
+            return queue.poll();
+        }
+
+        /**
+         * Called by the connection once {@link #poll} returned null. The
+         * connection is signalled again for the next event; if one slipped in
+         * meanwhile it is signalled straight away.
+         */
+        public void idle() {
+            signalled.set(false);
+            if ((!queue.isEmpty() || dropped.get() > 0) && signalled.compareAndSet(false, true)) {
+                signal.run();
+            }
+        }
+
+        /**
+         * Gets the topics this subscription receives.
+         *
+         * @return The topics
+         */
+        public Set<Topic> getTopics() {
+            return topics;
+        }
+
+        /**
+         * Stops delivering events to this subscription.
+         */
+        public void cancel() {
+            subscriptions.remove(this);
+            queue.clear();
+        }
+
+        private byte[] encode(String type, String text) {
+            return BinaryCodec.encodeResponse(0, streamId, Protocol.EVENT, type + "\n" + text);
+        }
+    }
+
+    /**
+     * Subscribes a connection to the given topics.
+     *
+     * @param topics   The topics to receive
+     * @param userId   Only receive events about this user, or null for all
+     * @param streamId The stream ID event frames are sent on
+     * @param capacity The most events to hold for the connection
+     * @param signal   Called when events are waiting; must not block
+     * @return The subscription
+     */
+    public Subscription subscribe(Set<Topic> topics, String userId, int streamId, int capacity, Runnable signal) {
+        Subscription subscription = new Subscription(topics, userId, streamId, capacity, signal);
+        subscriptions.add(subscription);
+        return subscription;
+    }
+
+    /**
+     * Publishes an event to every subscriber of its topic.
+     *
+     * @param topic  The event's topic
+     * @param text   The event's text
+     * @param userId The user the event is about, or null if it concerns
+     *               everyone
+     */
+    public void publish(Topic topic, String text, String userId) {
+        for (Subscription subscription : subscriptions) {
+            if (subscription.topics.contains(topic)
+                    && (userId == null || subscription.userId == null || subscription.userId.equals(userId))) {
+                subscription.offer(topic.eventType, text);
+            }
+        }
+    }
+
+    /**
+     * Gets the number of active subscriptions.
+     *
+     * @return The number of subscriptions
+     */
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    /**
+     * Parses a SUBSCRIBE command's topics.
+     *
+     * @param fields The command's fields; the first lists topics separated by
+     *               commas, and none or an empty list means every topic
+     * @return The topics, or null if one isn't known
+     */
+    public static Set<Topic> parseTopics(String[] fields) {
+        if (fields.length == 0 || fields[0].trim().isEmpty()) {
+            return Collections.unmodifiableSet(EnumSet.allOf(Topic.class));
+        }
+        Set<Topic> topics = EnumSet.noneOf(Topic.class);
+        for (String name : fields[0].split(",")) {
+            try {
+                topics.add(Topic.valueOf(name.trim().toUpperCase(Locale.ROOT)));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        return Collections.unmodifiableSet(topics);
+    }
+}
@@ -0,0 +1,79 @@
+package com.jobappnetwork.server;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * Frames responses for the text protocol.
+ * A response is sent one line at a time and terminated by an END_RESPONSE
+ * line, exactly as {@link ClientHandler} writes it with a PrintWriter.
+ */
+public final class ResponseEncoder {
+    public static final String END_RESPONSE = "END_RESPONSE";
+    public static final Charset CHARSET = Charset.defaultCharset();
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+    // Whether lines can be framed on the encoded bytes: newlines are sent as
+    // they are and encode to a byte that appears nowhere else
+    private static final boolean BYTE_FRAMING = LINE_SEPARATOR.equals("\n") && isAsciiCompatible(CHARSET);
+    private static final byte[] END_LINE = (END_RESPONSE + LINE_SEPARATOR).getBytes(CHARSET);
+
+    private ResponseEncoder() {
+    }
+
+    /**
+     * Encodes a response into the bytes sent to the client.
+     * The response is encoded once and the end marker appended to the bytes,
+     * without splitting it into lines or building a second string.
+     *
+     * @param response The response produced by the command processor
+     * @return The framed response, including the end marker
+     */
+    public static byte[] encode(String response) {
+        if (!BYTE_FRAMING) {
+            return encodeLines(response);
+        }
+        byte[] encoded = response.getBytes(CHARSET);
+        // Trailing blank lines are dropped, as String.split drops them
+        int end = encoded.length;
+        while (end > 0 && encoded[end - 1] == '\n') {
+            end--;
+        }
+        if (end == 0 && encoded.length > 0) {
+            return END_LINE.clone();
+        }
+        byte[] framed = Arrays.copyOf(encoded, end + 1 + END_LINE.length);
+        framed[end] = '\n';
+        System.arraycopy(END_LINE, 0, framed, end + 1, END_LINE.length);
+        return framed;
+    }
+
+    /**
+     * Encodes a response line by line, for a line separator other than a
+     * newline.
+     */
+    private static byte[] encodeLines(String response) {
+        StringBuilder framed = new StringBuilder(response.length() + 32);
+        for (String line : response.split("\n")) {
+            framed.append(line).append(LINE_SEPARATOR);
+        }
+        framed.append(END_RESPONSE).append(LINE_SEPARATOR);
+        return framed.toString().getBytes(CHARSET);
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        char[] ascii = new char[0x80];
+        for (int c = 0; c < ascii.length; c++) {
+            ascii[c] = (char) c;
+        }
+        byte[] encoded = new String(ascii).getBytes(charset);
+        if (encoded.length != ascii.length) {
+            return false;
+        }
+        for (int c = 0; c < encoded.length; c++) {
+            if (encoded[c] != c) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,303 @@
+package com.jobappnetwork.server;
+
+import com.jobappnetwork.server.model.ResumeHandle;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Content-addressed store for resume bytes.
+ * Resumes are appended to memory-mapped segment files, so they live in the
+ * page cache rather than on the Java heap, and identical resumes are stored
+ * once. Readers get read-only views of the mapping that can be written to a
+ * socket without copying the resume onto the heap.
+ *
+ * Appends are not synced one by one. Before a record that refers to a resume
+ * is logged, {@link #awaitDurable()} syncs everything appended so far, and
+ * callers that arrive while a sync is running share the next one, the same way
+ * the write-ahead log groups its commits.
+ */
+public class ResumeBlobStore {
+    // Size of each segment file; larger than the biggest resume we accept
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private final Path directory;
+    // Mapped segments, indexed by segment number
+    private final List<MappedByteBuffer> segments;
+    // Stored resumes by the hex SHA-256 of their content
+    private final Map<String, ResumeHandle> byDigest;
+    // Where the next resume goes in the last segment, guarded by this store's lock
+    private int tail;
+    // Resumes appended so far, and the segments written since the last sync;
+    // guarded by this store's lock
+    private long appended;
+    private final Set<Integer> dirty = new HashSet<>();
+    // Typed resumes no logged application refers to yet, with the number of
+    // requests waiting to refer to each; guarded by this store's lock
+    private final Map<ResumeHandle, Integer> unconfirmed = new IdentityHashMap<>();
+    // Resumes known to be on disk, guarded by syncLock
+    private long synced;
+    // Held while syncing, so concurrent callers wait for one sync instead of each running their own
+    private final Object syncLock = new Object();
+
+    /**
+     * Writes a resume's bytes into the space reserved for it.
+     */
+    private interface BlobWriter {
+        void writeTo(ByteBuffer target) throws IOException;
+    }
+
+    /**
+     * Opens a resume blob store in the given directory. Segments left by an
+     * earlier run are mapped so their resumes can be read; new resumes go to a
+     * new segment.
+     *
+     * @param directory Where segment files are kept
+     * @throws IOException If the directory can't be created or a segment can't
+     *                     be mapped
+     */
+    public ResumeBlobStore(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.segments = new CopyOnWriteArrayList<>();
+        this.byDigest = new ConcurrentHashMap<>();
+        this.tail = SEGMENT_SIZE; // The first store maps a segment
+
+        Path existing;
+        while (Files.exists(existing = segmentPath(segments.size()))) {
+            try (FileChannel channel = FileChannel.open(existing, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE)) {
+                segments.add(channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE));
+            }
+        }
+    }
+
+    /**
+     * Records a resume recovered from an earlier run, so identical uploads are
+     * still stored once.
+     *
+     * @param handle The recovered resume's handle
+     */
+    public void register(ResumeHandle handle) {
+        byDigest.putIfAbsent(handle.getDigest(), handle);
+    }
+
+    /**
+     * Stores a resume held in memory (a resume typed in as text). The caller
+     * must follow up with {@link #confirm} once a durable record refers to the
+     * resume, or {@link #release} if none ever will.
+     *
+     * @param resume The resume's bytes
+     * @return The handle of the stored resume
+     * @throws IOException If the resume is too large or a new segment can't
+     *                     be created
+     */
+    public ResumeHandle store(byte[] resume) throws IOException {
+        if (resume.length > SEGMENT_SIZE) {
+            throw new IOException("Resume exceeds " + SEGMENT_SIZE + " bytes");
+        }
+        return append(resume.length, target -> target.put(resume), false);
+    }
+
+    /**
+     * Stores a resume from a file, reading it straight into the mapped segment.
+     *
+     * @param source The file holding the resume
+     * @param size   The resume's size in bytes
+     * @return The handle of the stored resume
+     * @throws IOException If the resume is too large, the file can't be read
+     *                     or a new segment can't be created
+     */
+    public ResumeHandle store(FileChannel source, long size) throws IOException {
+        if (size > SEGMENT_SIZE) {
+            throw new IOException("Resume exceeds " + SEGMENT_SIZE + " bytes");
+        }
+        return append((int) size, target -> {
+            long position = 0;
+            while (target.hasRemaining()) {
+                int read = source.read(target, position);
+                if (read < 0) {
+                    throw new IOException("Resume file ended early");
+                }
+                position += read;
+            }
+        }, true);
+    }
+
+    /**
+     * Marks a resume as referred to by a durable record, so it is kept.
+     *
+     * @param handle The resume's handle
+     */
+    public synchronized void confirm(ResumeHandle handle) {
+        unconfirmed.remove(handle);
+    }
+
+    /**
+     * Gives back a typed resume whose record was never logged. Once no other
+     * request is waiting to refer to it, it is forgotten, and its space is
+     * reused if nothing has been stored after it.
+     *
+     * @param handle The resume's handle
+     */
+    public synchronized void release(ResumeHandle handle) {
+        Integer waiting = unconfirmed.get(handle);
+        if (waiting == null) {
+            // Already referred to by a durable record, or never typed
+            return;
+        }
+        if (waiting > 1) {
+            unconfirmed.put(handle, waiting - 1);
+            return;
+        }
+        unconfirmed.remove(handle);
+        byDigest.remove(handle.getDigest(), handle);
+        if (handle.getSegment() == segments.size() - 1 && handle.getOffset() + handle.getLength() == tail) {
+            tail = handle.getOffset();
+        }
+    }
+
+    /**
+     * Gets a read-only view of a stored resume.
+     *
+     * @param handle The resume's handle
+     * @return The resume's bytes, positioned at the start
+     */
+    public ByteBuffer read(ResumeHandle handle) {
+        ByteBuffer view = segments.get(handle.getSegment()).duplicate();
+        view.limit(handle.getOffset() + handle.getLength());
+        view.position(handle.getOffset());
+        return view.slice().asReadOnlyBuffer();
+    }
+
+    /**
+     * Writes a resume at the end of the last segment. If the same content is
+     * already stored, the space is reused and the existing handle returned.
+     * An unconfirmed resume stays unconfirmed until a durable record refers
+     * to it.
+     */
+    private synchronized ResumeHandle append(int length, BlobWriter writer, boolean confirmed)
+            throws IOException {
+        if (tail + length > SEGMENT_SIZE) {
+            addSegment();
+        }
+        int segment = segments.size() - 1;
+
+        ByteBuffer target = segments.get(segment).duplicate();
+        target.limit(tail + length);
+        target.position(tail);
+        writer.writeTo(target);
+
+        target.position(tail);
+        String digest = digest(target);
+        ResumeHandle existing = byDigest.get(digest);
+        if (existing != null) {
+            Integer waiting = unconfirmed.get(existing);
+            if (confirmed) {
+                unconfirmed.remove(existing);
+            } else if (waiting != null) {
+                unconfirmed.put(existing, waiting + 1);
+            }
+            return existing;
+        }
+
+        // Synced by awaitDurable, before an application referring to it is logged
+        dirty.add(segment);
+        appended++;
+        ResumeHandle handle = new ResumeHandle(segment, tail, length, digest);
+        tail += length;
+        byDigest.put(digest, handle);
+        if (!confirmed) {
+            unconfirmed.put(handle, 1);
+        }
+        return handle;
+    }
+
+    /**
+     * Waits until every resume stored so far is on disk. Callers waiting at the
+     * same time share one sync, which runs without blocking new stores.
+     *
+     * @throws IOException If a segment can't be synced
+     */
+    public void awaitDurable() throws IOException {
+        long target;
+        synchronized (this) {
+            target = appended;
+        }
+        synchronized (syncLock) {
+            if (synced >= target) {
+                // Covered by a sync that finished while we waited
+                return;
+            }
+            long covered;
+            List<Integer> toSync;
+            synchronized (this) {
+                covered = appended;
+                toSync = new ArrayList<>(dirty);
+                dirty.clear();
+            }
+            try {
+                for (int segment : toSync) {
+                    segments.get(segment).force();
+                }
+            } catch (UncheckedIOException e) {
+                // Left dirty, so the next caller tries again
+                synchronized (this) {
+                    dirty.addAll(toSync);
+                }
+                throw e.getCause();
+            }
+            synced = covered;
+        }
+    }
+
+    /**
+     * Maps a new, empty segment file and makes it the one appended to.
+     */
+    private void addSegment() throws IOException {
+        Path path = segmentPath(segments.size());
+        // The mapping stays valid after the channel is closed
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segments.add(channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_SIZE));
+        }
+        tail = 0;
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve("resumes-" + segment + ".seg");
+    }
+
+    /**
+     * Computes the hex SHA-256 digest of a buffer's remaining bytes.
+     */
+    private static String digest(ByteBuffer bytes) {
+        MessageDigest sha256;
+        try {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+        sha256.update(bytes);
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : sha256.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,243 @@
+package com.jobappnetwork.server;
+
+import com.jobappnetwork.server.model.ResumeHandle;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Receives uploaded resumes.
+ * A resume arrives as a series of chunks, each written straight to a staging
+ * file at its offset, so neither the whole file nor its Base64 text is ever
+ * held in memory and chunks may arrive in any order. Finished uploads are
+ * moved into the {@link ResumeBlobStore}.
+ *
+ * Upload IDs are random, since whoever knows one can apply with its resume.
+ * A finished upload can be applied with for a limited time.
+ */
+public class ResumeStore {
+    // Largest resume we accept
+    public static final long MAX_RESUME_SIZE = 16L * 1024 * 1024;
+    // Uploads that haven't been written to for this long are discarded
+    private static final long UPLOAD_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    // Finished uploads are forgotten after this long
+    private static final long FINISHED_TIMEOUT_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+    private final Path directory;
+    private final ResumeBlobStore blobs;
+    private final Map<String, Upload> uploads;
+    private final Map<String, Finished> finished;
+
+    /**
+     * An upload that is still receiving chunks.
+     */
+    private static final class Upload {
+        final Path path;
+        final FileChannel channel;
+        volatile long lastWrite;
+        // The byte ranges written so far, start to end, merged where they
+        // touch; guarded by the upload
+        final TreeMap<Long, Long> written = new TreeMap<>();
+
+        Upload(Path path, FileChannel channel) {
+            this.path = path;
+            this.channel = channel;
+            this.lastWrite = System.currentTimeMillis();
+        }
+
+        /**
+         * Records that a range has been written, merging it with the ranges
+         * it overlaps or touches.
+         */
+        synchronized void covered(long start, long end) {
+            Map.Entry<Long, Long> before = written.floorEntry(start);
+            if (before != null && before.getValue() >= start) {
+                start = before.getKey();
+                end = Math.max(end, before.getValue());
+            }
+            Map.Entry<Long, Long> after = written.ceilingEntry(start);
+            while (after != null && after.getKey() <= end) {
+                end = Math.max(end, after.getValue());
+                written.remove(after.getKey());
+                after = written.higherEntry(start);
+            }
+            written.put(start, end);
+        }
+
+        /**
+         * Checks that exactly the bytes from 0 up to size have been written.
+         */
+        synchronized boolean isComplete(long size) {
+            if (written.isEmpty()) {
+                return size == 0;
+            }
+            return written.size() == 1 && written.firstKey() == 0 && written.firstEntry().getValue() == size;
+        }
+
+        /**
+         * Counts the bytes written, for error messages.
+         */
+        synchronized long received() {
+            long received = 0;
+            for (Map.Entry<Long, Long> range : written.entrySet()) {
+                received += range.getValue() - range.getKey();
+            }
+            return received;
+        }
+    }
+
+    /**
+     * A finished upload's resume, kept until it expires.
+     */
+    private static final class Finished {
+        final ResumeHandle handle;
+        final long finishedAt;
+
+        Finished(ResumeHandle handle) {
+            this.handle = handle;
+            this.finishedAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Creates a resume store that stages uploads in the given directory.
+     *
+     * @param directory Where uploads are staged
+     * @param blobs     Where finished resumes are kept
+     * @throws IOException If the directory can't be created
+     */
+    public ResumeStore(Path directory, ResumeBlobStore blobs) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        this.blobs = blobs;
+        this.uploads = new ConcurrentHashMap<>();
+        this.finished = new ConcurrentHashMap<>();
+
+        // Uploads interrupted by a restart can't be resumed
+        try (DirectoryStream<Path> staged = Files.newDirectoryStream(directory, "*.part")) {
+            for (Path path : staged) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * Starts a new upload.
+     *
+     * @return The upload ID to send chunks to
+     * @throws IOException If the staging file can't be created
+     */
+    public String beginUpload() throws IOException {
+        discardStaleUploads();
+
+        String uploadId = "UPL" + UUID.randomUUID().toString().replace("-", "");
+        Path path = directory.resolve(uploadId + ".part");
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        uploads.put(uploadId, new Upload(path, channel));
+        return uploadId;
+    }
+
+    /**
+     * Writes one chunk of an upload at its offset.
+     *
+     * @param uploadId The upload ID
+     * @param offset   Where the chunk starts in the resume
+     * @param chunk    The chunk's bytes
+     * @throws IOException If the upload is unknown, too large or can't be written
+     */
+    public void writeChunk(String uploadId, long offset, byte[] chunk) throws IOException {
+        Upload upload = uploads.get(uploadId);
+        if (upload == null) {
+            throw new IOException("Upload not found: " + uploadId);
+        }
+        if (offset < 0 || offset + chunk.length > MAX_RESUME_SIZE) {
+            throw new IOException("Resume exceeds " + MAX_RESUME_SIZE + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            position += upload.channel.write(buffer, position);
+        }
+        if (chunk.length > 0) {
+            upload.covered(offset, offset + chunk.length);
+        }
+        upload.lastWrite = System.currentTimeMillis();
+    }
+
+    /**
+     * Completes an upload once all chunks have been written.
+     *
+     * @param uploadId     The upload ID
+     * @param expectedSize The resume's size in bytes, as the client read it
+     * @return The number of bytes stored
+     * @throws IOException If the upload is unknown, or its chunks don't cover
+     *                     exactly the expected size
+     */
+    public long finishUpload(String uploadId, long expectedSize) throws IOException {
+        Upload upload = uploads.remove(uploadId);
+        if (upload == null) {
+            throw new IOException("Upload not found: " + uploadId);
+        }
+
+        try {
+            if (!upload.isComplete(expectedSize)) {
+                throw new IOException("Upload incomplete: received " + upload.received() + " of " + expectedSize
+                        + " bytes");
+            }
+            finished.put(uploadId, new Finished(blobs.store(upload.channel, expectedSize)));
+            return expectedSize;
+        } finally {
+            upload.channel.close();
+            Files.deleteIfExists(upload.path);
+        }
+    }
+
+    /**
+     * Gets the stored resume of a finished upload.
+     *
+     * @param uploadId The upload ID
+     * @return The resume's handle, or null if there is no such resume
+     */
+    public ResumeHandle getHandle(String uploadId) {
+        Finished upload = finished.get(uploadId);
+        if (upload == null || upload.finishedAt < System.currentTimeMillis() - FINISHED_TIMEOUT_MILLIS) {
+            return null;
+        }
+        return upload.handle;
+    }
+
+    /**
+     * Deletes uploads abandoned by clients that disconnected mid-upload, and
+     * forgets finished uploads that have expired.
+     */
+    private void discardStaleUploads() {
+        long now = System.currentTimeMillis();
+        finished.values().removeIf(upload -> upload.finishedAt < now - FINISHED_TIMEOUT_MILLIS);
+
+        long cutoff = now - UPLOAD_TIMEOUT_MILLIS;
+        Iterator<Map.Entry<String, Upload>> it = uploads.entrySet().iterator();
+        while (it.hasNext()) {
+            Upload upload = it.next().getValue();
+            if (upload.lastWrite < cutoff) {
+                it.remove();
+                try {
+                    upload.channel.close();
+                    Files.deleteIfExists(upload.path);
+                } catch (IOException e) {
+                    System.err.println("Error discarding upload: " + e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -1,35 +1,141 @@
 package com.jobappnetwork.server;
 
 import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * The main server class for the job application network.
- * This class listens for client connections and creates a new thread
- * for each client to handle their requests.
+ * This class listens for client connections and hands each client's
+ * {@link ClientHandler} to an executor chosen by the {@link ExecutionMode}.
  */
 public class Server {
+    // How long stop() waits for sessions to finish their current command
+    private static final long DEFAULT_DRAIN_MILLIS = 5000;
+
+    /**
+     * How client handlers are executed.
+     */
+    public enum ExecutionMode {
+        /** One platform thread per connection. */
+        THREAD_PER_CONNECTION,
+        /** One virtual thread per connection (requires Java 21+). */
+        VIRTUAL,
+        /** A fixed-size pool of platform threads. */
+        BOUNDED
+    }
+
     private final int port;
+    private final DataManager dataManager;
     private final CommandProcessor commandProcessor;
+    private final ExecutionMode mode;
+    private final ExecutorService executor;
+    // Executes pipelined binary requests for all sessions
+    private final ThreadPoolExecutor requestWorkers;
+    private final int maxConnections;
+    private final Set<ClientHandler> sessions;
+    private final AtomicInteger activeSessions;
+    private final AtomicLong rejectedConnections;
     private ServerSocket serverSocket;
-    private boolean running;
+    private volatile boolean running;
 
     /**
-     * Creates a new Server instance.
-     * 
+     * Creates a new Server instance with one thread per connection and no
+     * connection limit.
+     *
      * @param port The port to listen on
      */
     public Server(int port) {
+        this(port, ExecutionMode.THREAD_PER_CONNECTION, 0, 0, Paths.get(DataManager.DEFAULT_DATA_DIRECTORY));
+    }
+
+    /**
+     * Creates a new Server instance.
+     *
+     * @param port           The port to listen on
+     * @param mode           How client handlers are executed
+     * @param poolSize       The number of threads for {@link ExecutionMode#BOUNDED}
+     * @param maxConnections The maximum number of concurrent sessions, or 0 for
+     *                       no limit. In {@link ExecutionMode#BOUNDED} a session
+     *                       holds a pool thread until it disconnects, so the
+     *                       limit is at most the pool size.
+     * @param dataDirectory  Where the server's data is kept
+     * @throws IllegalStateException If the mode is not supported by this JVM
+     */
+    public Server(int port, ExecutionMode mode, int poolSize, int maxConnections, Path dataDirectory) {
         this.port = port;
-        DataManager dataManager = new DataManager();
+        // Data loads in the background while the server starts accepting connections
+        this.dataManager = new DataManager(dataDirectory, true);
         this.commandProcessor = new CommandProcessor(dataManager);
+        this.mode = mode;
+        this.executor = createExecutor(mode, poolSize);
+        int requestThreads = Runtime.getRuntime().availableProcessors();
+        this.requestWorkers = new ThreadPoolExecutor(requestThreads, requestThreads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>());
+        if (mode == ExecutionMode.BOUNDED && (maxConnections <= 0 || maxConnections > poolSize)) {
+            // Sessions beyond the pool size would wait, unanswered, for a thread
+            // to free up; turning them away tells the client to try later
+            this.maxConnections = poolSize;
+        } else {
+            this.maxConnections = maxConnections;
+        }
+        this.sessions = ConcurrentHashMap.newKeySet();
+        this.activeSessions = new AtomicInteger();
+        this.rejectedConnections = new AtomicLong();
         this.running = false;
+
+        ServerMetrics metrics = commandProcessor.getMetrics();
+        metrics.registerGauge("Request queue depth", () -> requestWorkers.getQueue().size());
+        metrics.registerGauge("Rejected connections", rejectedConnections::get);
+        if (mode == ExecutionMode.BOUNDED) {
+            // Sessions never queue in BOUNDED mode, so show how full the pool is
+            ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+            metrics.registerGauge("Session threads busy", pool::getActiveCount);
+            metrics.registerGauge("Session threads", pool::getMaximumPoolSize);
+        }
+    }
+
+    /**
+     * Creates the executor that runs client handlers for the given mode.
+     */
+    private static ExecutorService createExecutor(ExecutionMode mode, int poolSize) {
+        switch (mode) {
+            case VIRTUAL:
+                try {
+                    // Looked up reflectively so the server still builds and runs on Java 8
+                    Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                    return (ExecutorService) factory.invoke(null);
+                } catch (ReflectiveOperationException e) {
+                    throw new IllegalStateException("Virtual threads require Java 21 or newer");
+                }
+            case BOUNDED:
+                if (poolSize <= 0) {
+                    throw new IllegalArgumentException("Pool size must be positive: " + poolSize);
+                }
+                return Executors.newFixedThreadPool(poolSize);
+            default:
+                return Executors.newCachedThreadPool();
+        }
     }
 
     /**
      * Starts the server and begins accepting client connections.
-     * 
+     *
      * @throws IOException If there's an error starting the server
      */
     public void start() throws IOException {
@@ -37,18 +143,48 @@ public class Server {
         serverSocket = new ServerSocket(port);
         running = true;
 
-        System.out.println("Server is now listening for connections on port " + port);
+        System.out.println("Server is now listening for connections on port " + port + " (" + mode + ", "
+                + ManagementFactory.getRuntimeMXBean().getUptime() + " ms after startup)");
 
         while (running) {
             try {
                 // Step 3: Accept connection request from client
                 Socket clientSocket = serverSocket.accept();
-                System.out.println("New connection accepted from: " + clientSocket.getInetAddress().getHostAddress());
 
-                // Create a new thread to handle the client
-                ClientHandler handler = new ClientHandler(clientSocket, commandProcessor);
-                Thread clientThread = new Thread(handler);
-                clientThread.start();
+                if (!admit()) {
+                    long rejected = rejectedConnections.incrementAndGet();
+                    System.out.println("Rejected connection from: " + clientSocket.getInetAddress().getHostAddress()
+                            + " (active sessions: " + activeSessions.get() + ", rejected: " + rejected + ")");
+                    reject(clientSocket);
+                    continue;
+                }
+
+                System.out.println("New connection accepted from: " + clientSocket.getInetAddress().getHostAddress()
+                        + " (active sessions: " + activeSessions.get() + ", rejected: "
+                        + rejectedConnections.get() + ")");
+
+                // Hand the client to the executor for this mode
+                ClientHandler handler = new ClientHandler(clientSocket, commandProcessor, requestWorkers);
+                sessions.add(handler);
+                try {
+                    executor.execute(() -> {
+                        try {
+                            handler.run();
+                        } finally {
+                            sessions.remove(handler);
+                            activeSessions.decrementAndGet();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    sessions.remove(handler);
+                    activeSessions.decrementAndGet();
+                    if (running) {
+                        rejectedConnections.incrementAndGet();
+                        reject(clientSocket);
+                    } else {
+                        clientSocket.close();
+                    }
+                }
             } catch (IOException e) {
                 if (running) {
                     System.err.println("Error accepting client connection: " + e.getMessage());
@@ -58,9 +194,52 @@ public class Server {
     }
 
     /**
-     * Stops the server and closes all resources.
+     * Reserves a session slot if the connection limit allows it.
+     *
+     * @return true if the connection may be served, false if it must be rejected
+     */
+    private boolean admit() {
+        int active = activeSessions.incrementAndGet();
+        if (maxConnections > 0 && active > maxConnections) {
+            activeSessions.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Tells a client the server is full and closes the connection.
+     */
+    private void reject(Socket clientSocket) {
+        try {
+            PrintWriter out = new PrintWriter(clientSocket.getOutputStream(), true);
+            out.println("ERROR: Server is at capacity, please try again later");
+            out.println("END_RESPONSE");
+            out.flush();
+            clientSocket.close();
+        } catch (IOException e) {
+            System.err.println("Error rejecting client connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stops the server, letting sessions finish their current command for up to
+     * the default drain period.
      */
     public void stop() {
+        stop(DEFAULT_DRAIN_MILLIS);
+    }
+
+    /**
+     * Stops accepting connections and drains the active sessions.
+     * Idle sessions are closed right away; sessions in the middle of a command
+     * close after sending its response. Sessions still running when the drain
+     * period ends are closed forcibly. Binary requests already handed to the
+     * request workers are waited for before the data is closed.
+     *
+     * @param drainMillis How long to wait for active sessions to finish
+     */
+    public void stop(long drainMillis) {
         running = false;
         try {
             if (serverSocket != null && !serverSocket.isClosed()) {
@@ -69,11 +248,59 @@ public class Server {
         } catch (IOException e) {
             System.err.println("Error closing server socket: " + e.getMessage());
         }
+
+        executor.shutdown();
+        for (ClientHandler handler : sessions) {
+            handler.drain();
+        }
+        try {
+            if (!executor.awaitTermination(drainMillis, TimeUnit.MILLISECONDS)) {
+                System.err.println("Drain timed out, closing " + sessions.size() + " remaining sessions");
+                for (ClientHandler handler : sessions) {
+                    handler.close();
+                }
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        // Pipelined requests still running must reach the journal before it closes
+        requestWorkers.shutdown();
+        try {
+            if (!requestWorkers.awaitTermination(drainMillis, TimeUnit.MILLISECONDS)) {
+                System.err.println("Drain timed out with " + requestWorkers.getActiveCount()
+                        + " requests still running");
+                requestWorkers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            requestWorkers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        dataManager.close();
+    }
+
+    /**
+     * Gets the number of sessions currently being served.
+     *
+     * @return The number of active sessions
+     */
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    /**
+     * Gets the number of connections rejected by the admission limit.
+     *
+     * @return The number of rejected connections
+     */
+    public long getRejectedConnections() {
+        return rejectedConnections.get();
     }
 
     /**
      * The main method to start the server.
-     * 
+     *
      * @param args Command line arguments (not used)
      */
     public static void main(String[] args) {
@@ -0,0 +1,178 @@
+package com.jobappnetwork.server;
+
+import com.jobappnetwork.protocol.Protocol;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters and latency histograms for the running server, reported by the
+ * METRICS command.
+ *
+ * Every command is counted under its code in {@link Protocol}, with its
+ * failures and a histogram of how long it took to process, so the command
+ * behind a slow p99 can be found. The engines add the bytes they read and
+ * write and the connections they serve; anything else worth watching, such as
+ * a queue's depth, is registered as a gauge that is read when the report is
+ * made.
+ */
+public class ServerMetrics {
+    // Commands outside the protocol's range are counted together
+    private static final int UNKNOWN_COMMAND = -1;
+
+    private final long startedAt = System.nanoTime();
+    private final Map<Integer, CommandStats> commands = new ConcurrentHashMap<>();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final AtomicInteger activeConnections = new AtomicInteger();
+    private final LongAdder totalConnections = new LongAdder();
+    // Sorted by name so the report is stable
+    private final Map<String, LongSupplier> gauges = new ConcurrentSkipListMap<>();
+
+    /**
+     * Counts and latencies of one command.
+     */
+    private static final class CommandStats {
+        final int command;
+        final LongAdder errors = new LongAdder();
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        CommandStats(int command) {
+            this.command = command;
+        }
+    }
+
+    /**
+     * One command's figures as read for a report. Each is read once, so the
+     * report can be sorted while commands keep being recorded.
+     */
+    private static final class ReportRow {
+        final String name;
+        final long count;
+        final long errors;
+        final double mean;
+        final long p50;
+        final long p90;
+        final long p99;
+        final long p999;
+        final long max;
+
+        ReportRow(CommandStats stats) {
+            LatencyHistogram latency = stats.latency;
+            this.name = stats.command == UNKNOWN_COMMAND ? "UNKNOWN" : Protocol.getCommandName(stats.command);
+            this.count = latency.getCount();
+            this.errors = stats.errors.sum();
+            this.mean = latency.getMean();
+            this.p50 = latency.getValueAtPercentile(50);
+            this.p90 = latency.getValueAtPercentile(90);
+            this.p99 = latency.getValueAtPercentile(99);
+            this.p999 = latency.getValueAtPercentile(99.9);
+            this.max = latency.getMax();
+        }
+    }
+
+    /**
+     * Records one processed command.
+     *
+     * @param command    The command's code
+     * @param startNanos When processing started, from {@link System#nanoTime()}
+     * @param failed     true if the command's response was an error
+     */
+    public void recordCommand(int command, long startNanos, boolean failed) {
+        int key = Protocol.isValidCommand(command) ? command : UNKNOWN_COMMAND;
+        CommandStats stats = commands.get(key);
+        if (stats == null) {
+            stats = commands.computeIfAbsent(key, CommandStats::new);
+        }
+        stats.latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos));
+        if (failed) {
+            stats.errors.increment();
+        }
+    }
+
+    /**
+     * Adds bytes read from clients.
+     *
+     * @param bytes The number of bytes read
+     */
+    public void addBytesIn(long bytes) {
+        bytesIn.add(bytes);
+    }
+
+    /**
+     * Adds bytes written to clients.
+     *
+     * @param bytes The number of bytes written
+     */
+    public void addBytesOut(long bytes) {
+        bytesOut.add(bytes);
+    }
+
+    /**
+     * Counts a newly served connection.
+     */
+    public void connectionOpened() {
+        activeConnections.incrementAndGet();
+        totalConnections.increment();
+    }
+
+    /**
+     * Counts a connection that has closed.
+     */
+    public void connectionClosed() {
+        activeConnections.decrementAndGet();
+    }
+
+    /**
+     * Registers a value that is read each time a report is made, replacing any
+     * gauge of the same name.
+     *
+     * @param name  The gauge's name in the report
+     * @param value Reads the current value; must be cheap and must not block
+     */
+    public void registerGauge(String name, LongSupplier value) {
+        gauges.put(name, value);
+    }
+
+    /**
+     * Formats every metric as a report, listing the commands with the slowest
+     * p99 first. Latencies are in microseconds.
+     *
+     * @return The formatted report
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder("Server Metrics:\n");
+        report.append("Uptime: ").append(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - startedAt))
+                .append(" s\n");
+        report.append("Connections: ").append(activeConnections.get()).append(" active, ")
+                .append(totalConnections.sum()).append(" total\n");
+        report.append("Bytes: ").append(bytesIn.sum()).append(" in, ").append(bytesOut.sum()).append(" out\n");
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            report.append(gauge.getKey()).append(": ").append(gauge.getValue().getAsLong()).append("\n");
+        }
+
+        // Read once before sorting; live values could change under the comparator
+        List<ReportRow> sorted = new ArrayList<>();
+        for (CommandStats stats : commands.values()) {
+            sorted.add(new ReportRow(stats));
+        }
+        sorted.sort((a, b) -> Long.compare(b.p99, a.p99));
+        report.append("Commands (latency in microseconds, slowest p99 first):\n");
+        report.append(String.format("%-28s %9s %7s %9s %9s %9s %9s %9s %9s%n", "Command", "Count", "Errors",
+                "Mean", "p50", "p90", "p99", "p99.9", "Max"));
+        for (ReportRow row : sorted) {
+            report.append(String.format("%-28s %9d %7d %9.1f %9d %9d %9d %9d %9d%n", row.name, row.count,
+                    row.errors, row.mean, row.p50, row.p90, row.p99, row.p999, row.max));
+        }
+        if (sorted.isEmpty()) {
+            report.append("No commands processed yet\n");
+        }
+        return report.toString();
+    }
+}
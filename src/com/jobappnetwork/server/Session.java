@@ -0,0 +1,100 @@
+package com.jobappnetwork.server;
+
+import com.jobappnetwork.protocol.Protocol;
+
+/**
+ * Who a connection belongs to. A connection starts anonymous and is bound to
+ * a user by the LOGIN command; commands about "my" data are then answered for
+ * that user alone. Binary requests on one connection may run concurrently, so
+ * the state is published through a single volatile reference.
+ */
+public class Session {
+    // Whether the client connected from the server's own host
+    private final boolean local;
+    private volatile Identity identity;
+
+    /**
+     * A logged in user and their role.
+     */
+    private static final class Identity {
+        final String userId;
+        final int role;
+
+        Identity(String userId, int role) {
+            this.userId = userId;
+            this.role = role;
+        }
+    }
+
+    /**
+     * Creates an anonymous session.
+     *
+     * @param local true if the client connected from the server's own host,
+     *              which allows admin commands
+     */
+    public Session(boolean local) {
+        this.local = local;
+    }
+
+    /**
+     * Binds the session to a user.
+     *
+     * @param userId The user's ID
+     * @param role   ROLE_JOB_SEEKER or ROLE_HIRING_MANAGER
+     * @return A confirmation, or an error if the session already belongs to
+     *         someone else or the login is malformed
+     */
+    public synchronized String login(String userId, int role) {
+        if (userId == null || userId.trim().isEmpty()) {
+            return "ERROR: Missing user ID";
+        }
+        if (role != Protocol.ROLE_JOB_SEEKER && role != Protocol.ROLE_HIRING_MANAGER) {
+            return "ERROR: Unknown role: " + role;
+        }
+        String id = userId.trim();
+        Identity current = identity;
+        if (current != null && (!current.userId.equals(id) || current.role != role)) {
+            return "ERROR: Already logged in as " + current.userId;
+        }
+        identity = new Identity(id, role);
+        return "Logged in as " + id;
+    }
+
+    /**
+     * Checks whether the session is bound to a user.
+     *
+     * @return true once LOGIN has succeeded
+     */
+    public boolean isLoggedIn() {
+        return identity != null;
+    }
+
+    /**
+     * Gets the logged in user's ID.
+     *
+     * @return The user ID, or null if nobody is logged in
+     */
+    public String getUserId() {
+        Identity current = identity;
+        return current == null ? null : current.userId;
+    }
+
+    /**
+     * Checks whether the session belongs to a job seeker.
+     *
+     * @return true if a job seeker is logged in
+     */
+    public boolean isJobSeeker() {
+        Identity current = identity;
+        return current != null && current.role == Protocol.ROLE_JOB_SEEKER;
+    }
+
+    /**
+     * Checks whether the client connected from the server's own host.
+     *
+     * @return true if admin commands are allowed
+     */
+    public boolean isLocal() {
+        return local;
+    }
+}
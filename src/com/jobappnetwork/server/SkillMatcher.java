@@ -0,0 +1,385 @@
+package com.jobappnetwork.server;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Matches job seekers to job postings by skill.
+ *
+ * Skill names are normalized and interned into dense integer IDs, so a set of
+ * skills is a bitset and the skills a seeker and a job have in common are the
+ * AND of their bitsets. A match is scored by the share of the job's skills the
+ * seeker has, and only the best K are kept while scanning.
+ *
+ * Large candidate pools are split across a pool of matcher threads, one chunk
+ * per core, and the per-chunk top K lists are merged.
+ */
+public class SkillMatcher implements Closeable {
+    // Candidates below this are scanned on the calling thread
+    private static final int PARALLEL_THRESHOLD = 20000;
+
+    private final Map<String, Integer> skillIds;
+    private final List<String> skillNames;
+    private final Pool jobs;
+    private final Pool seekers;
+    private final ExecutorService workers;
+    private final int parallelism;
+
+    /**
+     * A job's or job seeker's skills. Immutable, so a profile read without a
+     * lock is always complete.
+     */
+    private static final class Profile {
+        final String id;
+        final long[] bits;
+        final int count;
+
+        Profile(String id, long[] bits) {
+            this.id = id;
+            this.bits = bits;
+            int bitCount = 0;
+            for (long word : bits) {
+                bitCount += Long.bitCount(word);
+            }
+            this.count = bitCount;
+        }
+    }
+
+    /**
+     * Profiles stored densely in the order they were first added, so they can
+     * be scanned by index. Writers hold the lock; readers copy the array
+     * reference and size under it and scan without it.
+     */
+    private static final class Pool {
+        private final Map<String, Integer> numbers = new HashMap<>();
+        private Profile[] profiles = new Profile[16];
+        private int size;
+
+        synchronized void put(Profile profile) {
+            Integer number = numbers.get(profile.id);
+            if (number == null) {
+                if (size == profiles.length) {
+                    profiles = Arrays.copyOf(profiles, size * 2);
+                }
+                number = size++;
+                numbers.put(profile.id, number);
+            }
+            profiles[number] = profile;
+        }
+
+        synchronized Profile get(String id) {
+            Integer number = numbers.get(id);
+            return number == null ? null : profiles[number];
+        }
+    }
+
+    /**
+     * One ranked match.
+     */
+    public static final class Match {
+        private final String id;
+        private final int shared;
+        private final float score;
+
+        Match(String id, int shared, float score) {
+            this.id = id;
+            this.shared = shared;
+            this.score = score;
+        }
+
+        /**
+         * Gets the ID of the matched job posting or job seeker.
+         *
+         * @return The matched ID
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * Gets the number of skills the seeker and job have in common.
+         *
+         * @return The number of shared skills
+         */
+        public int getShared() {
+            return shared;
+        }
+
+        /**
+         * Gets the share of the job's skills the seeker has, from 0 to 1.
+         *
+         * @return The match score
+         */
+        public float getScore() {
+            return score;
+        }
+    }
+
+    // Weakest first, so the weakest of the best K is at the head of a heap
+    private static int compare(Match a, Match b) {
+        int byScore = Float.compare(a.score, b.score);
+        if (byScore != 0) {
+            return byScore;
+        }
+        int byShared = Integer.compare(a.shared, b.shared);
+        return byShared != 0 ? byShared : b.id.compareTo(a.id);
+    }
+
+    /**
+     * Creates an empty matcher with one matcher thread per core.
+     */
+    public SkillMatcher() {
+        this.skillIds = new ConcurrentHashMap<>();
+        this.skillNames = new ArrayList<>();
+        this.jobs = new Pool();
+        this.seekers = new Pool();
+        this.parallelism = Runtime.getRuntime().availableProcessors();
+        this.workers = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread thread = new Thread(r, "skill-matcher");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Sets a job posting's skills.
+     *
+     * @param jobId  The job posting ID
+     * @param skills The skills, comma separated
+     */
+    public void setJobSkills(String jobId, String skills) {
+        jobs.put(new Profile(jobId, toBits(skills)));
+    }
+
+    /**
+     * Sets a job seeker's skills, replacing any set before.
+     *
+     * @param jobSeekerId The job seeker ID
+     * @param skills      The skills, comma separated
+     */
+    public void setSeekerSkills(String jobSeekerId, String skills) {
+        seekers.put(new Profile(jobSeekerId, toBits(skills)));
+    }
+
+    /**
+     * Gets a job seeker's skills.
+     *
+     * @param jobSeekerId The job seeker ID
+     * @return The skills, comma separated, or null if none were set
+     */
+    public String getSeekerSkills(String jobSeekerId) {
+        Profile profile = seekers.get(jobSeekerId);
+        return profile == null ? null : toNames(profile.bits);
+    }
+
+    /**
+     * Gets every job seeker's skills, for snapshots.
+     *
+     * @return The skills of each job seeker, comma separated
+     */
+    public Map<String, String> getAllSeekerSkills() {
+        Profile[] profiles;
+        int size;
+        synchronized (seekers) {
+            profiles = seekers.profiles;
+            size = seekers.size;
+        }
+        Map<String, String> all = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            all.put(profiles[i].id, toNames(profiles[i].bits));
+        }
+        return all;
+    }
+
+    /**
+     * Finds the job postings that best match a job seeker's skills.
+     *
+     * @param jobSeekerId The job seeker ID
+     * @param k           The most matches to return
+     * @return The best matches, best first, or null if the seeker has no skills
+     *         on record
+     */
+    public List<Match> topJobsFor(String jobSeekerId, int k) {
+        Profile seeker = seekers.get(jobSeekerId);
+        return seeker == null ? null : topK(jobs, seeker, false, k);
+    }
+
+    /**
+     * Finds the job seekers whose skills best match a job posting.
+     *
+     * @param jobId The job posting ID
+     * @param k     The most matches to return
+     * @return The best matches, best first, or null if the job isn't known
+     */
+    public List<Match> topSeekersFor(String jobId, int k) {
+        Profile job = jobs.get(jobId);
+        return job == null ? null : topK(seekers, job, true, k);
+    }
+
+    /**
+     * Scores every candidate in a pool against one profile and keeps the best.
+     *
+     * @param candidatesAreSeekers true if the pool holds seekers and the target
+     *                             is a job, false the other way round
+     */
+    private List<Match> topK(Pool pool, Profile target, boolean candidatesAreSeekers, int k) {
+        Profile[] profiles;
+        int size;
+        synchronized (pool) {
+            profiles = pool.profiles;
+            size = pool.size;
+        }
+
+        PriorityQueue<Match> best;
+        if (size < PARALLEL_THRESHOLD || parallelism == 1) {
+            best = scan(profiles, 0, size, target, candidatesAreSeekers, k);
+        } else {
+            List<Callable<PriorityQueue<Match>>> chunks = new ArrayList<>(parallelism);
+            int chunkSize = (size + parallelism - 1) / parallelism;
+            for (int start = 0; start < size; start += chunkSize) {
+                int from = start;
+                int to = Math.min(size, start + chunkSize);
+                chunks.add(() -> scan(profiles, from, to, target, candidatesAreSeekers, k));
+            }
+            best = new PriorityQueue<>(k + 1, SkillMatcher::compare);
+            try {
+                for (Future<PriorityQueue<Match>> chunk : workers.invokeAll(chunks)) {
+                    for (Match match : chunk.get()) {
+                        offer(best, match, k);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while matching skills");
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Skill matching failed", e.getCause());
+            }
+        }
+
+        Match[] ranked = new Match[best.size()];
+        for (int i = ranked.length - 1; i >= 0; i--) {
+            ranked[i] = best.poll();
+        }
+        return Arrays.asList(ranked);
+    }
+
+    private static PriorityQueue<Match> scan(Profile[] profiles, int from, int to, Profile target,
+            boolean candidatesAreSeekers, int k) {
+        PriorityQueue<Match> best = new PriorityQueue<>(k + 1, SkillMatcher::compare);
+        long[] targetBits = target.bits;
+        for (int i = from; i < to; i++) {
+            Profile candidate = profiles[i];
+            long[] bits = candidate.bits;
+            int shared = 0;
+            for (int w = Math.min(bits.length, targetBits.length) - 1; w >= 0; w--) {
+                shared += Long.bitCount(bits[w] & targetBits[w]);
+            }
+            if (shared == 0) {
+                continue;
+            }
+            int jobSkills = candidatesAreSeekers ? target.count : candidate.count;
+            offer(best, new Match(candidate.id, shared, (float) shared / jobSkills), k);
+        }
+        return best;
+    }
+
+    private static void offer(PriorityQueue<Match> best, Match match, int k) {
+        if (best.size() < k) {
+            best.add(match);
+        } else if (compare(match, best.peek()) > 0) {
+            best.poll();
+            best.add(match);
+        }
+    }
+
+    /**
+     * Turns comma separated skills into a bitset of skill IDs, interning new
+     * skills.
+     */
+    private long[] toBits(String skills) {
+        List<Integer> ids = new ArrayList<>();
+        int max = -1;
+        for (String skill : skills == null ? new String[0] : skills.split(",")) {
+            String name = normalize(skill);
+            if (name.isEmpty()) {
+                continue;
+            }
+            int id = intern(name);
+            ids.add(id);
+            max = Math.max(max, id);
+        }
+        long[] bits = new long[(max >> 6) + 1];
+        for (int id : ids) {
+            bits[id >> 6] |= 1L << id;
+        }
+        return bits;
+    }
+
+    private int intern(String name) {
+        Integer id = skillIds.get(name);
+        if (id != null) {
+            return id;
+        }
+        synchronized (skillNames) {
+            return skillIds.computeIfAbsent(name, n -> {
+                skillNames.add(n);
+                return skillNames.size() - 1;
+            });
+        }
+    }
+
+    private String toNames(long[] bits) {
+        StringBuilder names = new StringBuilder();
+        synchronized (skillNames) {
+            for (int w = 0; w < bits.length; w++) {
+                long word = bits[w];
+                while (word != 0) {
+                    int id = (w << 6) + Long.numberOfTrailingZeros(word);
+                    word &= word - 1;
+                    if (names.length() > 0) {
+                        names.append(", ");
+                    }
+                    names.append(skillNames.get(id));
+                }
+            }
+        }
+        return names.toString();
+    }
+
+    /**
+     * Normalizes a skill so differently written forms ("Java ", "java")
+     * share an ID.
+     */
+    static String normalize(String skill) {
+        return skill.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Gets the number of distinct skills seen.
+     *
+     * @return The number of skills
+     */
+    public int getSkillCount() {
+        return skillIds.size();
+    }
+
+    /**
+     * Stops the matcher threads.
+     */
+    @Override
+    public void close() {
+        workers.shutdownNow();
+    }
+}
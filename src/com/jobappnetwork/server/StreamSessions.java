@@ -0,0 +1,110 @@
+package com.jobappnetwork.server;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The sessions multiplexed over one connection, one per stream ID.
+ *
+ * A pooled client shares a connection between many users, sending each user's
+ * requests on its own stream, so logins and subscriptions are kept per stream
+ * rather than per connection. Stream 0 is the connection's own session, and
+ * the only one the text protocol uses.
+ */
+public class StreamSessions {
+    // Streams one connection may have open, so a client can't exhaust memory
+    public static final int MAX_STREAMS = 4096;
+
+    // Whether the client connected from the server's own host
+    private final boolean local;
+    private final Map<Integer, Session> sessions = new ConcurrentHashMap<>();
+    private final Map<Integer, NotificationHub.Subscription> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * Creates the sessions of a new connection.
+     *
+     * @param local true if the client connected from the server's own host
+     */
+    public StreamSessions(boolean local) {
+        this.local = local;
+        sessions.put(0, new Session(local));
+    }
+
+    /**
+     * Gets a stream's session, starting an anonymous one on first use.
+     *
+     * @param streamId The stream ID
+     * @return The session, or null if the connection has too many streams open
+     */
+    public Session get(int streamId) {
+        Session session = sessions.get(streamId);
+        if (session == null) {
+            if (sessions.size() >= MAX_STREAMS) {
+                return null;
+            }
+            session = sessions.computeIfAbsent(streamId, id -> new Session(local));
+        }
+        return session;
+    }
+
+    /**
+     * Sets a stream's subscription, cancelling the one it replaces.
+     *
+     * @param streamId     The stream ID
+     * @param subscription The new subscription
+     */
+    public void subscribe(int streamId, NotificationHub.Subscription subscription) {
+        NotificationHub.Subscription previous = subscriptions.put(streamId, subscription);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    /**
+     * Gets a stream's subscription.
+     *
+     * @param streamId The stream ID
+     * @return The subscription, or null if the stream hasn't subscribed
+     */
+    public NotificationHub.Subscription getSubscription(int streamId) {
+        return subscriptions.get(streamId);
+    }
+
+    /**
+     * Gets the subscriptions of every stream.
+     *
+     * @return A live view of the subscriptions
+     */
+    public Collection<NotificationHub.Subscription> getSubscriptions() {
+        return subscriptions.values();
+    }
+
+    /**
+     * Ends a stream's session and cancels its subscription. Stream 0 starts
+     * over as an anonymous session.
+     *
+     * @param streamId The stream ID
+     */
+    public void close(int streamId) {
+        NotificationHub.Subscription subscription = subscriptions.remove(streamId);
+        if (subscription != null) {
+            subscription.cancel();
+        }
+        if (streamId == 0) {
+            sessions.put(0, new Session(local));
+        } else {
+            sessions.remove(streamId);
+        }
+    }
+
+    /**
+     * Cancels every subscription, once the connection has closed.
+     */
+    public void closeAll() {
+        for (NotificationHub.Subscription subscription : subscriptions.values()) {
+            subscription.cancel();
+        }
+        subscriptions.clear();
+    }
+}
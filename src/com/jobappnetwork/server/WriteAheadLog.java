@@ -0,0 +1,358 @@
+package com.jobappnetwork.server;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of changes, stored as numbered segment files.
+ *
+ * Records are group committed: callers queue records and a single writer
+ * thread writes everything queued so far and syncs it with one fsync, so
+ * concurrent writers share the cost of a sync instead of paying one each.
+ *
+ * Each record is framed as length | CRC32 | payload, so a record cut off by a
+ * crash is detected on replay and ignored.
+ */
+public class WriteAheadLog implements Closeable {
+    // Bytes before each record's payload
+    private static final int RECORD_HEADER = 4 + 4;
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    private final Path directory;
+    private final Thread writer;
+    // Everything below is guarded by lock
+    private final Object lock = new Object();
+    private List<byte[]> queued = new ArrayList<>();
+    private long appendedSequence;
+    private long durableSequence;
+    private int segment;
+    private boolean rotateRequested;
+    private boolean closed;
+    private IOException failure;
+    // Totals, for reporting how well records are being batched
+    private long batches;
+    private long records;
+
+    /**
+     * Opens the log in the given directory. New records go to a new segment
+     * after the existing ones, which are left for {@link #replay}.
+     *
+     * @param directory Where segment files are kept
+     * @throws IOException If the directory can't be created or read
+     */
+    public WriteAheadLog(Path directory) throws IOException {
+        this.directory = Files.createDirectories(directory);
+        List<Integer> existing = segments();
+        this.segment = existing.isEmpty() ? 1 : existing.get(existing.size() - 1) + 1;
+
+        FileChannel channel = openSegment(segment);
+        this.writer = new Thread(() -> writeLoop(channel), "wal-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Queues a record to be written.
+     *
+     * @param record The record's payload
+     * @return The record's sequence number, to pass to {@link #awaitDurable}
+     * @throws IOException If the log has failed or is closed
+     */
+    public long append(byte[] record) throws IOException {
+        synchronized (lock) {
+            if (failure != null) {
+                throw failure;
+            }
+            if (closed) {
+                throw new IOException("Write-ahead log is closed");
+            }
+            queued.add(record);
+            lock.notifyAll();
+            return ++appendedSequence;
+        }
+    }
+
+    /**
+     * Waits until a record, and every record appended before it, is on disk.
+     *
+     * @param sequence The sequence number returned by {@link #append}
+     * @throws IOException If the log failed before the record was synced
+     */
+    public void awaitDurable(long sequence) throws IOException {
+        boolean interrupted = false;
+        try {
+            synchronized (lock) {
+                while (durableSequence < sequence) {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Starts a new segment. Every record appended before this call is in an
+     * earlier segment or the new one; once a snapshot covers the state up to
+     * this point, the earlier segments can be deleted.
+     *
+     * @return The number of the new segment
+     * @throws IOException If the log has failed
+     */
+    public int rotate() throws IOException {
+        synchronized (lock) {
+            rotateRequested = true;
+            lock.notifyAll();
+            while (rotateRequested && failure == null) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while rotating the write-ahead log");
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return segment;
+        }
+    }
+
+    /**
+     * Writes queued records in batches until the log is closed.
+     */
+    private void writeLoop(FileChannel channel) {
+        try {
+            while (true) {
+                List<byte[]> batch;
+                long lastSequence;
+                boolean rotate;
+                synchronized (lock) {
+                    while (queued.isEmpty() && !rotateRequested && !closed) {
+                        lock.wait();
+                    }
+                    if (queued.isEmpty() && closed) {
+                        break;
+                    }
+                    batch = queued;
+                    queued = new ArrayList<>();
+                    lastSequence = appendedSequence;
+                    rotate = rotateRequested;
+                }
+
+                if (!batch.isEmpty()) {
+                    write(channel, batch);
+                    channel.force(false);
+                }
+                if (rotate) {
+                    channel.close();
+                    channel = openSegment(segment + 1);
+                }
+
+                synchronized (lock) {
+                    durableSequence = lastSequence;
+                    if (!batch.isEmpty()) {
+                        batches++;
+                        records += batch.size();
+                    }
+                    if (rotate) {
+                        segment++;
+                        rotateRequested = false;
+                    }
+                    lock.notifyAll();
+                }
+            }
+        } catch (IOException e) {
+            fail(e);
+        } catch (InterruptedException e) {
+            fail(new IOException("Write-ahead log writer interrupted"));
+        } finally {
+            synchronized (lock) {
+                if (failure == null) {
+                    // Anyone still waiting (e.g. a rotation) must not wait forever
+                    failure = new IOException("Write-ahead log is closed");
+                }
+                lock.notifyAll();
+            }
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error closing write-ahead log: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Writes a batch of records with as few writes as possible.
+     */
+    private static void write(FileChannel channel, List<byte[]> batch) throws IOException {
+        int size = 0;
+        for (byte[] record : batch) {
+            size += RECORD_HEADER + record.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        CRC32 crc = new CRC32();
+        for (byte[] record : batch) {
+            crc.reset();
+            crc.update(record, 0, record.length);
+            buffer.putInt(record.length);
+            buffer.putInt((int) crc.getValue());
+            buffer.put(record);
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Marks the log as failed and wakes every waiting writer.
+     */
+    private void fail(IOException e) {
+        System.err.println("Write-ahead log failed: " + e.getMessage());
+        synchronized (lock) {
+            failure = e;
+            lock.notifyAll();
+        }
+    }
+
+    /**
+     * Replays the records of every segment from the given one onwards, in the
+     * order they were written. A segment ends at its first incomplete or
+     * corrupt record.
+     *
+     * @param fromSegment The first segment to replay
+     * @param consumer    Receives each record's payload
+     * @throws IOException If a segment can't be read
+     */
+    public void replay(int fromSegment, Consumer<ByteBuffer> consumer) throws IOException {
+        for (int number : segments()) {
+            if (number < fromSegment || number >= segment) {
+                continue;
+            }
+            ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(segmentPath(number)));
+            CRC32 crc = new CRC32();
+            while (log.remaining() >= RECORD_HEADER) {
+                int length = log.getInt();
+                int checksum = log.getInt();
+                if (length < 0 || length > log.remaining()) {
+                    System.err.println("Ignoring incomplete record at the end of " + segmentPath(number));
+                    break;
+                }
+                crc.reset();
+                crc.update(log.array(), log.position(), length);
+                if ((int) crc.getValue() != checksum) {
+                    System.err.println("Ignoring corrupt record at the end of " + segmentPath(number));
+                    break;
+                }
+                ByteBuffer record = log.slice();
+                record.limit(length);
+                consumer.accept(record);
+                log.position(log.position() + length);
+            }
+        }
+    }
+
+    /**
+     * Deletes the segments before the given one.
+     *
+     * @param beforeSegment The first segment to keep
+     * @throws IOException If a segment can't be deleted
+     */
+    public void deleteSegmentsBefore(int beforeSegment) throws IOException {
+        for (int number : segments()) {
+            if (number < beforeSegment) {
+                Files.deleteIfExists(segmentPath(number));
+            }
+        }
+    }
+
+    /**
+     * Gets the number of batches synced so far.
+     *
+     * @return The number of fsyncs of records
+     */
+    public long getBatches() {
+        synchronized (lock) {
+            return batches;
+        }
+    }
+
+    /**
+     * Gets the number of records synced so far.
+     *
+     * @return The number of records
+     */
+    public long getRecords() {
+        synchronized (lock) {
+            return records;
+        }
+    }
+
+    /**
+     * Syncs the records queued so far and stops the writer.
+     */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Lists the existing segment numbers in ascending order.
+     */
+    private List<Integer> segments() throws IOException {
+        List<Integer> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    numbers.add(Integer.parseInt(
+                            name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        Collections.sort(numbers);
+        return numbers;
+    }
+
+    private Path segmentPath(int number) {
+        return directory.resolve(String.format("%s%06d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private FileChannel openSegment(int number) throws IOException {
+        return FileChannel.open(segmentPath(number), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+}
@@ -4,11 +4,13 @@ package com.jobappnetwork.server.model;
  * Represents a job application in the system.
  */
 public class Application {
-    private String id;
-    private String jobSeekerId;
-    private String jobPostingId;
-    private int status;
-    private String resume;
+    private final String id;
+    private final String jobSeekerId;
+    private final String jobPostingId;
+    // Updated by hiring managers while job seekers read it from other threads
+    private volatile int status;
+    // Where the resume is kept in the resume blob store
+    private final ResumeHandle resume;
 
     /**
      * Creates a new application.
@@ -17,10 +19,10 @@ public class Application {
      * @param jobSeekerId  The job seeker ID
      * @param jobPostingId The job posting ID
      * @param status       The application status
-     * @param resume       The resume content
+     * @param resume       The handle of the stored resume
      */
     public Application(String id, String jobSeekerId, String jobPostingId,
-            int status, String resume) {
+            int status, ResumeHandle resume) {
         this.id = id;
         this.jobSeekerId = jobSeekerId;
         this.jobPostingId = jobPostingId;
@@ -74,11 +76,11 @@ public class Application {
     }
 
     /**
-     * Gets the resume content.
+     * Gets the handle of the stored resume.
      * 
-     * @return The resume content
+     * @return The resume handle
      */
-    public String getResume() {
+    public ResumeHandle getResume() {
         return resume;
     }
 
@@ -90,7 +92,7 @@ public class Application {
     @Override
     public String toString() {
         String statusText;
-        switch (status) {
+        switch (status) { // volatile, read once
             case 300:
                 statusText = "Pending";
                 break;
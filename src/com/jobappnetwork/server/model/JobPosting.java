@@ -1,16 +1,24 @@
 package com.jobappnetwork.server.model;
 
+import java.util.function.Supplier;
+
 /**
  * Represents a job posting in the system.
  */
 public class JobPosting {
-    private String id;
+    private final String id;
+    // Set once, either here or by load()
     private String title;
     private String company;
     private String location;
     private String description;
     private String skills;
     private String salary;
+    // Decodes the other fields for a posting loaded from a snapshot; null once
+    // they are set
+    private volatile Supplier<String[]> loader;
+    // Rendered once on first use; the posting never changes
+    private String text;
 
     /**
      * Step 4: Hiring Manager selects 'Create a job posting' (GUI triggers this
@@ -29,6 +37,39 @@ public class JobPosting {
         this.salary = salary;
     }
 
+    /**
+     * Creates a job posting whose fields are decoded on first use, so loading
+     * a large snapshot doesn't have to build every posting's strings up front.
+     * 
+     * @param id     The job posting ID
+     * @param loader Decodes title, company, location, description, skills and
+     *               salary, in that order
+     */
+    public JobPosting(String id, Supplier<String[]> loader) {
+        this.id = id;
+        this.loader = loader;
+    }
+
+    /**
+     * Decodes the fields of a lazily loaded posting.
+     */
+    private void load() {
+        if (loader != null) {
+            synchronized (this) {
+                if (loader != null) {
+                    String[] fields = loader.get();
+                    title = fields[0];
+                    company = fields[1];
+                    location = fields[2];
+                    description = fields[3];
+                    skills = fields[4];
+                    salary = fields[5];
+                    loader = null;
+                }
+            }
+        }
+    }
+
     /**
      * Gets the job posting ID.
      * 
@@ -44,6 +85,7 @@ public class JobPosting {
      * @return The job title
      */
     public String getTitle() {
+        load();
         return title;
     }
 
@@ -53,6 +95,7 @@ public class JobPosting {
      * @return The company name
      */
     public String getCompany() {
+        load();
         return company;
     }
 
@@ -62,6 +105,7 @@ public class JobPosting {
      * @return The job location
      */
     public String getLocation() {
+        load();
         return location;
     }
 
@@ -71,6 +115,7 @@ public class JobPosting {
      * @return The job description
      */
     public String getDescription() {
+        load();
         return description;
     }
 
@@ -80,6 +125,7 @@ public class JobPosting {
      * @return The required skills
      */
     public String getSkills() {
+        load();
         return skills;
     }
 
@@ -89,6 +135,7 @@ public class JobPosting {
      * @return The salary range
      */
     public String getSalary() {
+        load();
         return salary;
     }
 
@@ -103,8 +150,15 @@ public class JobPosting {
      */
     @Override
     public String toString() {
-        return String.format(
-                "ID: %s\nTitle: %s\nCompany: %s\nLocation: %s\nDescription: %s\nSkills: %s\nSalary: %s",
-                id, title, company, location, description, skills, salary);
+        String rendered = text;
+        if (rendered == null) {
+            load();
+            // Benign race: concurrent callers render identical strings
+            rendered = "ID: " + id + "\nTitle: " + title + "\nCompany: " + company
+                    + "\nLocation: " + location + "\nDescription: " + description
+                    + "\nSkills: " + skills + "\nSalary: " + salary;
+            text = rendered;
+        }
+        return rendered;
     }
 }
\ No newline at end of file
@@ -0,0 +1,64 @@
+package com.jobappnetwork.server.model;
+
+/**
+ * Locates a resume's bytes in the resume blob store.
+ * Applications hold a handle instead of the resume itself, so resumes stay
+ * off the Java heap.
+ */
+public class ResumeHandle {
+    private final int segment;
+    private final int offset;
+    private final int length;
+    private final String digest;
+
+    /**
+     * Creates a new resume handle.
+     * 
+     * @param segment The segment file holding the resume
+     * @param offset  Where the resume starts in the segment
+     * @param length  The resume's size in bytes
+     * @param digest  The SHA-256 digest of the resume, in hex
+     */
+    public ResumeHandle(int segment, int offset, int length, String digest) {
+        this.segment = segment;
+        this.offset = offset;
+        this.length = length;
+        this.digest = digest;
+    }
+
+    /**
+     * Gets the segment file holding the resume.
+     * 
+     * @return The segment number
+     */
+    public int getSegment() {
+        return segment;
+    }
+
+    /**
+     * Gets where the resume starts in its segment.
+     * 
+     * @return The offset in bytes
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Gets the resume's size.
+     * 
+     * @return The size in bytes
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Gets the digest that identifies the resume's content.
+     * 
+     * @return The SHA-256 digest, in hex
+     */
+    public String getDigest() {
+        return digest;
+    }
+}